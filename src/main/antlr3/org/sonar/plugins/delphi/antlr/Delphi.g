@@ -2,8 +2,8 @@ grammar Delphi;
 
 options {
 //    k = 0;
-    backtrack=true;
-    memoize=true;
+    backtrack=true;     // used only where LL(*) cannot decide, hot decisions use explicit predicates
+    superClass=DelphiBaseParser;    // bounded memoization of the rules declared with memoize=true, see DelphiBaseParser
     output=AST;
 }
 
@@ -124,12 +124,14 @@ namespaceNameList            : namespaceName (',' namespaceName)* ';' -> namespa
 //****************************
 //section declaration
 //****************************
-block                        : (declSection)* (blockBody)?
+block                        options {memoize=true;}
+                             : (declSection)* (('begin' | 'asm')=> blockBody)?		//CHANGED, predicted by its first token instead of a speculative parse of the whole body
                              ;
 blockBody                    : compoundStatement
                              | assemblerStatement
                              ;
-declSection                  : labelDeclSection
+declSection                  options {memoize=true;}
+                             : labelDeclSection
                              | constSection
                              | typeSection
                              | varSection
@@ -167,7 +169,8 @@ varKey                       : 'var'
                              | 'threadvar'
                              ;
 // threadvar geen initializations alleen globaal
-varDeclaration               : (customAttribute)? identListFlat ':' typeDecl (varValueSpec)? (hintingDirective)* ';' -> (customAttribute)? ^(TkVariableIdents identListFlat) ^(TkVariableType typeDecl)
+varDeclaration               options {memoize=true;}
+                             : (customAttribute)? identListFlat ':' typeDecl (varValueSpec)? (hintingDirective)* ';' -> (customAttribute)? ^(TkVariableIdents identListFlat) ^(TkVariableType typeDecl)
                              ;
 varValueSpec                 : 'absolute' ident
                              | 'absolute' constExpression
@@ -180,7 +183,8 @@ exportItem                   : ('(' (formalParameterList)? ')')? (INDEX expressi
 //****************************
 //section type
 //****************************
-typeDecl                     : strucType
+typeDecl                     options {memoize=true;}
+                             : strucType
                              | pointerType
                              | stringType
                              | procedureType 
@@ -188,7 +192,8 @@ typeDecl                     : strucType
                              | ('type')? typeId (genericPostfix)?
                              | simpleType
                              ;
-strucType                    : ('packed')? strucTypePart -> strucTypePart		//CHANGED we dont need info if struct is packed or not for AST parsing
+strucType                    options {memoize=true;}
+                             : ('packed')? strucTypePart -> strucTypePart		//CHANGED we dont need info if struct is packed or not for AST parsing
                              ;
 strucTypePart                : arrayType
                              | setType
@@ -213,25 +218,31 @@ setType                      : 'set' 'of' typeDecl -> typeDecl					//CHANGED we
 // set type alleen ordinal of subrange type
 fileType                     : 'file' ('of' typeDecl)?
                              ;
-pointerType                  : '^' typeDecl
+pointerType                  options {memoize=true;}
+                             : '^' typeDecl
                              | 'pointer'
                              ;
-stringType                   : 'string' ('[' expression ']')? -> 'string'
+stringType                   options {memoize=true;}
+                             : 'string' ('[' expression ']')? -> 'string'
      //                        | typeId (codePageNumber)?
                              ;
 codePageNumber               : '(' constExpression ')'
                              ;
-procedureType                : methodType
+procedureType                options {memoize=true;}
+                             : methodType
 							 | simpleProcedureType
                              | procedureReference
                              ;
-methodType					 : procedureTypeHeading 'of' 'object'
+methodType					 options {memoize=true;}
+                             : procedureTypeHeading 'of' 'object'
 							 ;
-simpleProcedureType          : procedureTypeHeading ( (';')? callConventionNoSemi)?
+simpleProcedureType          options {memoize=true;}
+                             : procedureTypeHeading ( (';')? callConventionNoSemi)?
                              ;
 procedureReference           : 'reference' 'to' procedureTypeHeading
                              ;
-procedureTypeHeading         : 'function' (formalParameterSection)? ':' (customAttribute)? typeDecl -> 'function' (formalParameterSection)? ^(TkFunctionReturn typeDecl)
+procedureTypeHeading         options {memoize=true;}
+                             : 'function' (formalParameterSection)? ':' (customAttribute)? typeDecl -> 'function' (formalParameterSection)? ^(TkFunctionReturn typeDecl)
                              | 'procedure' (formalParameterSection)?
                              ;
 variantType                  : 'variant' // SzJ TODO TEMP
@@ -240,11 +251,13 @@ simpleType                   : ident
                              | subRangeType
                              | enumType
                              ;
-subRangeType                 : constExpression ('..' constExpression)?
+subRangeType                 options {memoize=true;}
+                             : constExpression ('..' constExpression)?
                              ;
 enumType                     : '(' ident ('=' expression)? (',' ident ('=' expression)? )* ')'
                              ;
-typeId                       : namespacedQualifiedIdent
+typeId                       options {memoize=true;}
+                             : namespacedQualifiedIdent
                              ;
 //****************************
 //section generics
@@ -254,7 +267,8 @@ genericTypeIdent             : ident (genericDefinition)? -> ident		//CHANGED we
 genericDefinition            : simpleGenericDefinition
                              | constrainedGenericDefinition
                              ;
-simpleGenericDefinition      : '<' ident (',' ident)* '>'
+simpleGenericDefinition      options {memoize=true;}
+                             : '<' ident (',' ident)* '>'
                              ;
 constrainedGenericDefinition : '<' constrainedGeneric (';' constrainedGeneric)* '>'
                              ;
@@ -286,9 +300,11 @@ classTypeDecl                : 'class' (classState)? (classParent)? (classItem)*
 classState                   : 'sealed'
                              | 'abstract'
                              ;
-classParent                  : '(' genericTypeIdent (',' genericTypeIdent)* ')' -> genericTypeIdent (genericTypeIdent)*		//CHANGEd from typeId to classParentId
+classParent                  options {memoize=true;}
+                             : '(' genericTypeIdent (',' genericTypeIdent)* ')' -> genericTypeIdent (genericTypeIdent)*		//CHANGEd from typeId to classParentId
 							 ;
-classItem                    : visibility
+classItem                    options {memoize=true;}
+                             : visibility
                              | classMethod
                              | classMethodResolution
                              | classField
@@ -312,9 +328,11 @@ interfaceTypeDecl            : interfaceKey (classParent)? (interfaceGuid)? (int
 interfaceKey                 : 'interface'
                              | 'dispinterface'
                              ;
-interfaceGuid                : '[' QuotedString ']' -> QuotedString
+interfaceGuid                options {memoize=true;}
+                             : '[' QuotedString ']' -> QuotedString
                              ;
-interfaceItem                : classMethod
+interfaceItem                options {memoize=true;}
+                             : classMethod
                              | ('class')? classProperty
                              ;
 objectDecl                   : 'object' (classParent)? (objectItem)* 'end'
@@ -326,7 +344,8 @@ objectItem                   : visibility
 recordDecl                   : simpleRecord
                              | variantRecord
                              ;
-simpleRecord                 : 'record' (recordField)* (recordItem)* 'end'
+simpleRecord                 options {memoize=true;}
+                             : 'record' (recordField)* (recordItem)* 'end'
                              ;
 variantRecord                : 'record' (recordField)* recordVariantSection 'end'
                              ;
@@ -338,7 +357,8 @@ recordItem                   : visibility			//ADDED
                              | recordField
                              | ('class')? varSection
                              ;
-recordField                  : identList ':' typeDecl (hintingDirective)* (';')?	//CHANGED not needed ; at the end
+recordField                  options {memoize=true;}
+                             : identList ':' typeDecl (hintingDirective)* (';')?	//CHANGED not needed ; at the end
 							 -> identList ^(TkVariableType typeDecl)					
                              ;
 recordVariantField           : identList ':' typeDecl (hintingDirective)* (';') ?
@@ -353,7 +373,8 @@ recordHelperDecl             : 'record' 'helper' 'for' typeId (recordHelperItem)
 recordHelperItem             : classMethod
                              | classProperty
                              ;
-classMethod                  : methodKey ident (genericDefinition)? (formalParameterSection)? ';' (methodDirective)* 
+classMethod                  options {memoize=true;}
+                             : methodKey ident (genericDefinition)? (formalParameterSection)? ';' (methodDirective)* 
 			     			 ->  ^(methodKey ^(TkFunctionName ident) (genericDefinition)? ^(TkFunctionArgs (formalParameterSection)?) (methodDirective)*)
                              | ('class')? 'function' ident (genericDefinition)? (formalParameterSection)? ':' (customAttribute)? typeDecl ';' (methodDirective)*
                              -> ^('function' ^(TkFunctionName ident) (genericDefinition)? ^(TkFunctionArgs (formalParameterSection)?) (customAttribute)? ^(TkFunctionReturn typeDecl) (methodDirective)*)
@@ -408,10 +429,12 @@ visibility                   : ('strict')? 'protected'
 //****************************
 //section procedure
 //****************************
-exportedProcHeading          : 'procedure' ident (formalParameterSection)? ':' (customAttribute)? typeDecl ';' (functionDirective)*
+exportedProcHeading          options {memoize=true;}
+                             : 'procedure' ident (formalParameterSection)? ':' (customAttribute)? typeDecl ';' (functionDirective)*
                              | 'function' ident (formalParameterSection)? ';' (functionDirective)*
                              ;
-methodDecl                   : methodDeclHeading ';' (methodDirective)* (methodBody)? -> methodDeclHeading (methodBody)?
+methodDecl                   options {memoize=true;}
+                             : methodDeclHeading ';' (methodDirective)* (methodBody)? -> methodDeclHeading (methodBody)?
                              ;
 methodDeclHeading            : (customAttribute)? methodKey qualifiedIdent (genericDefinition ('.' ident)? )? (formalParameterSection)?
 							 -> (customAttribute)? ^(methodKey ^(TkFunctionName qualifiedIdent (genericDefinition ('.' ident)? )?) ^(TkFunctionArgs (formalParameterSection)?) )
@@ -434,7 +457,8 @@ procDeclHeading              : (customAttribute)? 'procedure' ident (formalParam
 procKey                      : 'function'
                              | 'procedure'
                              ;
-formalParameterSection       : '(' (formalParameterList)? ')' -> (formalParameterList)?
+formalParameterSection       options {memoize=true;}
+                             : '(' (formalParameterList)? ')' -> (formalParameterList)?
                              ;
 formalParameterList          : formalParameter (';' formalParameter)* -> formalParameter (formalParameter)*
                              ;
@@ -445,9 +469,11 @@ parmType                     : 'const'
                              | 'var'
                              | 'out'
                              ;
-methodBody                   : block ';' -> block
+methodBody                   options {memoize=true;}
+                             : block ';' -> block
                              ;
-procBody                     : 'forward' ';' (functionDirective)*   // CHECKEN ; en directive plaats!
+procBody                     options {memoize=true;}
+                             : 'forward' ';' (functionDirective)*   // CHECKEN ; en directive plaats!
                              | 'external' ('name' expression | 'index' expression)* (functionDirective)* // CHECKEN directive plaats
                              | block ';'
                              ;
@@ -464,17 +490,21 @@ customAttributeDecl          :  namespacedQualifiedIdent '(' expressionList ')'
 //****************************
 //section expression
 //****************************
-expression                   : simpleExpression (relOp simpleExpression)? ('=' expression)? 	//CHANGED, added expression for: "if( functionCall(x, 7+66) = true ) then" syntax
+expression                   options {memoize=true;}
+                             : simpleExpression (relOp simpleExpression)? ('=' expression)? 	//CHANGED, added expression for: "if( functionCall(x, 7+66) = true ) then" syntax
                              | closureExpression
                              ;                           
 closureExpression            : 'procedure' (formalParameterSection)? block
                              | 'function' (formalParameterSection)? ':' typeDecl block
                              ;
-simpleExpression             : term (addOp term)*
+simpleExpression             options {memoize=true;}
+                             : term (addOp term)*
                              ;
-term                         : factor (mulOp factor)*
+term                         options {memoize=true;}
+                             : factor (mulOp factor)*
                              ;
-factor                       : '@' factor
+factor                       options {memoize=true;}
+                             : '@' factor
                              | '@@' factor       // used to get address of proc var
                              | 'not' factor
                              | '+' factor
@@ -492,15 +522,19 @@ factor                       : '@' factor
                              | designator
                              | typeId '(' expression ')'
                              ;
-stringFactor                 : ControlString (QuotedString ControlString)* (QuotedString)?
+stringFactor                 options {memoize=true;}
+                             : ControlString (QuotedString ControlString)* (QuotedString)?
                              | QuotedString (ControlString QuotedString)* (ControlString)?
                              ;
-setSection                   : '[' (expression ((',' | '..') expression)*)? ']'
+setSection                   options {memoize=true;}
+                             : '[' (expression ((',' | '..') expression)*)? ']'
                              ;
 
-designator                   : ('inherited')? ( (namespacedQualifiedIdent | typeId) )? (designatorItem)*
+designator                   options {memoize=true;}
+                             : ('inherited')? ( (namespacedQualifiedIdent | typeId) )? (designatorItem)*
                              ;
-designatorItem               : '^'
+designatorItem               options {memoize=true;}
+                             : '^'
                              | ('.' | '@') ident 							//CHANGED added '@'
                              | ('<' ident (',' ident)* '>')				//ADDED for proc<sth, sth>.foo;
                              | '[' expressionList ']'
@@ -538,7 +572,8 @@ relOp                        : '<'
 //section statement
 //****************************
 
-statement                    :  statementPart
+statement                    options {memoize=true;}
+                             :  statementPart
 			     			 |	label ':' 					//CHANGED
                              ;
 statementPart                : ifStatement
@@ -576,28 +611,27 @@ withItem					 : designator 'as' designator 			//ADDED
 							 ;
 compoundStatement            : 'begin' (statementList)? 'end' -> ^('begin' (statementList)? 'end')
                              ;
-statementList                : (statement)? (';' (statement)?)*
+statementList                options {memoize=true;}
+                             : (statement)? ((';')=> ';' (statement)?)*		//CHANGED, predicted by ';' instead of a speculative parse of the next statement
                              ;
-simpleStatement              : designator ':=' expression			//CHANGED the order of the rules, gotoStatement was first but produced 'continue' errors
-                             | designator // call
-                             | designator ':=' newStatement // .NET only
-                             | gotoStatement
+simpleStatement              : designator (':=' expression)?		//CHANGED left-factored assignment and call; gotoStatement was first but produced 'continue' errors
+                             | gotoStatement						// 'new' (.NET only) is parsed as a call in the expression
                              ;
 gotoStatement                : 'goto' label
                              | 'exit' ('(' expression ')')?  	
                              | 'break'                          
                              | 'continue'
                              ;
-newStatement                 : 'new' '(' (expression)? (',' (expression)?)* (',' constExpression)? ')'
-                             ;
 //****************************
 //section constExpression
 //****************************
-constExpression              : '(' recordConstExpression (';' recordConstExpression)* ')'	//CHANGED reversed order
+constExpression              options {memoize=true;}
+                             : '(' recordConstExpression (';' recordConstExpression)* ')'	//CHANGED reversed order
                              | '(' constExpression (',' constExpression)* ')'
                              | expression
                              ;
-recordConstExpression        : ident ':' constExpression
+recordConstExpression        options {memoize=true;}
+                             : ident ':' constExpression
                              ;
 //****************************
 //section exceptionStatement
@@ -605,7 +639,8 @@ recordConstExpression        : ident ':' constExpression
 tryStatement                 : 'try' (statementList)? 'except' handlerList 'end'  
                              | 'try' (statementList)? 'finally' (statementList)? 'end'
                              ;
-handlerList                  : (handler)* ('else' statementList)?
+handlerList                  options {memoize=true;}
+                             : (handler)* ('else' statementList)?
                              | statementList
                              ;
 handler                      : 'on' (handlerIdent)? typeId 'do' handlerStatement 	//CHANGED - ; is not required ; handlerIdent not required, example:  "on einvalidoperation do;"
@@ -635,7 +670,8 @@ methodDirective              : reintroduceDirective       	// 1
                              | oldCallConventionDirective 	// 1
                              | dispIDDirective
                              ;
-functionDirective            : overloadDirective          // 1
+functionDirective            options {memoize=true;}
+                             : overloadDirective          // 1
                              | inlineDirective            // 1
                              | callConvention             // 1
                              | oldCallConventionDirective // 1
@@ -739,9 +775,11 @@ intNum                       : TkIntNum
                              ;                             
 realNum                      : TkRealNum
                              ;                             
-namespacedQualifiedIdent     : (namespaceName '.')? qualifiedIdent
+namespacedQualifiedIdent     options {memoize=true;}
+                             : (namespaceName '.')? qualifiedIdent
                              ;
-namespaceName                : ident ('.' ident)*
+namespaceName                options {memoize=true;}
+                             : ident ('.' ident)*
                              ;
 qualifiedIdent               :  (ident '.')*  ident 	//must stay the way it is, with '.' for proper class method identyfication
           		     		 ;
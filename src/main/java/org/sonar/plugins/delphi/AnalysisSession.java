@@ -0,0 +1,462 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.resources.Directory;
+import org.sonar.api.resources.DuplicatedSourceException;
+import org.sonar.api.resources.Project;
+import org.sonar.plugins.delphi.antlr.analyzer.ASTAnalyzer;
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCache;
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
+import org.sonar.plugins.delphi.antlr.analyzer.DelphiASTAnalyzer;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.metrics.BasicMetrics;
+import org.sonar.plugins.delphi.project.DelphiProject;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+import org.sonar.plugins.delphi.utils.ProgressReporter;
+import org.sonar.plugins.delphi.utils.ProgressReporterLogger;
+
+/**
+ * Analysis of a single DelphiLanguage project (.dproj) of the workgroup. A
+ * session owns everything the parsing of its project needs: the preprocessor
+ * context (include directories, definitions, included files), the cache of
+ * units and function calls, and the parsed files with their classes and
+ * functions. Sessions share only thread-safe stores (parsed files and include
+ * files), so the projects of a workgroup can be parsed concurrently. Files
+ * of the project having the same content are analysed once, and the classes
+ * and functions found are reported for each of them.
+ * 
+ * Every file is analysed on its own: its units, classes, functions, function
+ * calls and basic metrics do not depend on other files, so they are kept in
+ * the analysis cache between analyses and an unchanged file is neither read
+ * for metrics nor parsed. Only calls and class parents are resolved across
+ * files, once all of them were analysed or loaded.
+ */
+class AnalysisSession {
+
+    private static final int PARSE_AHEAD_FACTOR = 4; // files analysed ahead
+                                                     // per thread
+    private static final String CACHE_SECTION = "model";
+
+    private final DelphiProject delphiProject;
+    private final DelphiProjectHelper delphiProjectHelper;
+    private final DelphiASTCache astCache;
+    private final DelphiAnalysisCache analysisCache;
+    private final Project project;
+    private final List<File> testDirectories;
+    private final PreprocessorContext context;
+    private final CodeAnalysisCache cache = new CodeAnalysisCache();
+
+    private final Map<Directory, Integer> filesCount = new LinkedHashMap<Directory, Integer>();
+    // list of resources to process for metrics
+    private final List<InputFile> resourceList = new ArrayList<InputFile>();
+    private final Map<InputFile, List<ClassInterface>> fileClasses = new HashMap<InputFile, List<ClassInterface>>();
+    private final Map<InputFile, List<FunctionInterface>> fileFunctions = new HashMap<InputFile, List<FunctionInterface>>();
+    private final Map<InputFile, Map<String, Double>> fileMetrics = new HashMap<InputFile, Map<String, Double>>();
+    // results of analysed files by content key, without their trees
+    private final Map<String, AnalysedFile> analysedContents = new HashMap<String, AnalysedFile>();
+    private List<UnitInterface> units = new ArrayList<UnitInterface>(); // project
+                                                                        // units
+    private int scannedFiles = 0; // number of scanned files
+
+    /**
+     * Ctor
+     * 
+     * @param delphiProject DelphiLanguage project to analyse
+     * @param delphiProjectHelper Project helper
+     * @param astCache Store of parsed files, shared with other sessions
+     * @param analysisCache Results of files analysed by previous analyses
+     * @param project Sonar project
+     * @param testDirectories Test directories
+     */
+    AnalysisSession(DelphiProject delphiProject, DelphiProjectHelper delphiProjectHelper, DelphiASTCache astCache,
+            DelphiAnalysisCache analysisCache, Project project, List<File> testDirectories) {
+        this.delphiProject = delphiProject;
+        this.delphiProjectHelper = delphiProjectHelper;
+        this.astCache = astCache;
+        this.analysisCache = analysisCache;
+        this.project = project;
+        this.testDirectories = testDirectories;
+        // metrics are computed with the primary build configuration
+        this.context = new PreprocessorContext(delphiProject.getIncludeDirectories(), delphiProject
+                .getConfigurationDefinitions().get(0), astCache.getIncludeCache());
+    }
+
+    /**
+     * Parse files with ANTLR. Files are parsed and analysed by worker threads,
+     * then calls and class parents are resolved across units in a single link
+     * pass, so results do not depend on the number of threads.
+     * 
+     * @param threads Number of threads parsing the files of the project
+     */
+    void parseFiles(int threads) {
+        // project properties
+        List<File> includedDirs = delphiProject.getIncludeDirectories();
+        List<File> excludedDirs = delphiProjectHelper.getExcludedSources();
+        List<File> sourceFiles = delphiProject.getSourceFiles();
+        boolean importSources = delphiProjectHelper.getImportSources();
+
+        printFileList("Included: ", includedDirs);
+        printFileList("Excluded: ", excludedDirs);
+
+        // for every source file
+        DelphiUtils.LOG.info("Parsing project " + delphiProject.getName());
+
+        ProgressReporter progressReporter = new ProgressReporter(sourceFiles.size(), 10, new ProgressReporterLogger(
+                DelphiUtils.LOG));
+        DelphiUtils.LOG.info("Files to parse: " + sourceFiles.size());
+
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Map<File, Future<AnalysedFile>> analysing = new HashMap<File, Future<AnalysedFile>>();
+        Set<String> submittedContents = new HashSet<String>();
+        try {
+            int submitted = 0;
+            for (int i = 0; i < sourceFiles.size(); ++i) {
+                if (executor != null) {
+                    int window = Math.min(sourceFiles.size(), i + threads * PARSE_AHEAD_FACTOR);
+                    for (; submitted < window; ++submitted) {
+                        File delphiFile = sourceFiles.get(submitted);
+                        if (!delphiProjectHelper.isExcluded(delphiFile, excludedDirs)) {
+                            String contentKey = getContentKey(delphiFile);
+                            if (contentKey == null || submittedContents.add(contentKey)) {
+                                analysing.put(delphiFile, executor.submit(new FileAnalysis(delphiFile, importSources)));
+                            }
+                        }
+                    }
+                }
+                File delphiFile = sourceFiles.get(i);
+                parseSourceFile(delphiFile, excludedDirs, new FileAnalysis(delphiFile, importSources),
+                        analysing.remove(delphiFile));
+                progressReporter.progress();
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        new DelphiASTAnalyzer(delphiProjectHelper, cache).link();
+        units = new CodeAnalysisResults(cache).getCachedUnitsAsList();
+        DelphiUtils.LOG.info("Done");
+    }
+
+    // for debugging, prints file paths with message to debug file
+    private void printFileList(String msg, List<File> list) {
+        for (File f : list) {
+            DelphiUtils.LOG.info(msg + f.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Parses a source file
+     * 
+     * @param sourceFile Source file to parse
+     * @param excludedDirs List of excluded dirs
+     * @param analysis Parsing and analysis of the file
+     * @param analysing Analysis running in a worker thread, null if none
+     */
+    private void parseSourceFile(File sourceFile, List<File> excludedDirs, FileAnalysis analysis,
+            Future<AnalysedFile> analysing) {
+        if (delphiProjectHelper.isExcluded(sourceFile, excludedDirs)) {
+            return; // in excluded, return
+        }
+
+        boolean isTest = delphiProjectHelper.isTestFile(sourceFile, testDirectories);
+
+        DelphiUtils.LOG.debug(">> PARSING " + sourceFile.getAbsolutePath() + " test: " + isTest + " directory: "
+                + sourceFile.getParentFile());
+
+        // adding file to package
+        InputFile resource = delphiProjectHelper.getFile(sourceFile);
+
+        Directory pack = delphiProjectHelper.getDirectory(sourceFile.getParentFile(), project);
+
+        if (pack == null) {
+            throw new IllegalArgumentException("Directory: " + sourceFile.getParentFile() + " not found.");
+        }
+
+        if (filesCount.containsKey(pack)) {
+            filesCount.put(pack, filesCount.get(pack) + 1); // files count
+        } else {
+            filesCount.put(pack, Integer.valueOf(1));
+        }
+        resourceList.add(resource);
+
+        String contentKey = getContentKey(sourceFile);
+        AnalysedFile analysed = contentKey == null ? null : analysedContents.get(contentKey);
+        if (analysed != null) {
+            DelphiUtils.LOG.debug("Same content as an analysed file, reusing its results");
+            if (analysing != null) {
+                analysing.cancel(true);
+            }
+            if (analysed.error == null) {
+                ++scannedFiles;
+            }
+        } else {
+            analysed = analyseSourceFile(analysis, analysing);
+            if (contentKey != null) {
+                analysedContents.put(contentKey, analysed);
+            }
+            // merged in order of files, so linking does not depend on threads
+            cache.getUnits().addAll(analysed.results.getCachedUnits());
+            cache.getUnresolvedCalls().addAll(analysed.results.getUnresolvedCalls());
+        }
+
+        fileClasses.put(resource, analysed.results.getClasses());
+        fileFunctions.put(resource, analysed.results.getFunctions());
+        fileMetrics.put(resource, analysed.basicMetrics);
+    }
+
+    private String getContentKey(File sourceFile) {
+        return astCache.getContentKey(sourceFile, Collections.singletonList(context));
+    }
+
+    /**
+     * Analysing a source file with ANTLR
+     * 
+     * @param analysis Parsing and analysis of the file
+     * @param analysing Analysis running in a worker thread, null if none
+     * @return Analysed file
+     */
+    private AnalysedFile analyseSourceFile(FileAnalysis analysis, Future<AnalysedFile> analysing) {
+        AnalysedFile analysed;
+        if (analysing == null) {
+            analysed = analysis.call();
+        } else {
+            try {
+                analysed = analysing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while analysing " + analysis.sourceFile, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error analysing " + analysis.sourceFile, e.getCause());
+            }
+        }
+
+        if (analysed.error == null) {
+            ++scannedFiles;
+        } else {
+            DelphiUtils.LOG.debug("Error parsing file: " + analysed.error.getMessage() + " "
+                    + analysis.sourceFile.getAbsolutePath());
+        }
+        return analysed;
+    }
+
+    /**
+     * @return DelphiLanguage project of the session
+     */
+    DelphiProject getDelphiProject() {
+        return delphiProject;
+    }
+
+    /**
+     * @return Preprocessor context of the project
+     */
+    PreprocessorContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return Number of files of every package of the project
+     */
+    Map<Directory, Integer> getFilesCount() {
+        return filesCount;
+    }
+
+    /**
+     * @return Parsed resources, in order of parsing
+     */
+    List<InputFile> getResources() {
+        return resourceList;
+    }
+
+    /**
+     * @param resource Parsed resource
+     * @return Classes of the resource
+     */
+    List<ClassInterface> getClasses(InputFile resource) {
+        return fileClasses.get(resource);
+    }
+
+    /**
+     * @param resource Parsed resource
+     * @return Functions of the resource
+     */
+    List<FunctionInterface> getFunctions(InputFile resource) {
+        return fileFunctions.get(resource);
+    }
+
+    /**
+     * @param resource Parsed resource
+     * @return Basic metrics of the resource, by key
+     */
+    Map<String, Double> getBasicMetrics(InputFile resource) {
+        return fileMetrics.get(resource);
+    }
+
+    /**
+     * @return Units of the project
+     */
+    List<UnitInterface> getUnits() {
+        return units;
+    }
+
+    /**
+     * @return Number of files parsed without error
+     */
+    int getScannedFiles() {
+        return scannedFiles;
+    }
+
+    /**
+     * Parses a file (through the cache shared with other sensors) and extracts
+     * its units, classes, functions and function calls, in a cache of its own.
+     * Results of a file unchanged since a previous analysis are loaded from
+     * the analysis cache instead. Can run in a worker thread.
+     */
+    private class FileAnalysis implements Callable<AnalysedFile> {
+
+        private final File sourceFile;
+        private final boolean importSources;
+
+        FileAnalysis(File sourceFile, boolean importSources) {
+            this.sourceFile = sourceFile;
+            this.importSources = importSources;
+        }
+
+        public AnalysedFile call() {
+            AnalysedFile cached = load();
+            if (cached != null) {
+                return cached;
+            }
+
+            BasicMetrics basicMetrics = new BasicMetrics(project);
+            basicMetrics.analyse(sourceFile);
+            CodeAnalysisCache fileCache = new CodeAnalysisCache();
+            ASTAnalyzer analyzer = new DelphiASTAnalyzer(delphiProjectHelper, fileCache);
+            DelphiAST ast = null;
+            try {
+                ast = astCache.getAST(sourceFile, context); // ast tree for
+                                                            // file, shared
+                                                            // with other
+                                                            // sensors
+                analyzer.analyze(ast); // parsing with ANTLR
+                if (importSources) {
+                    importSource(ast);
+                }
+                if (!ast.isError()) {
+                    store(analyzer.getResults(), basicMetrics.getMetrics(), ast);
+                }
+                return new AnalysedFile(analyzer.getResults(), basicMetrics.getMetrics(), null);
+            } catch (Exception e) {
+                CodeAnalysisResults results = analyzer.getResults();
+                return new AnalysedFile(results == null ? new CodeAnalysisResults(fileCache) : results,
+                        basicMetrics.getMetrics(), e);
+            }
+        }
+
+        private AnalysedFile load() {
+            if (!isCacheEnabled()) {
+                return null;
+            }
+            byte[] data = analysisCache.load(CACHE_SECTION, sourceFile, context);
+            if (data == null) {
+                return null;
+            }
+            Map<String, Double> basicMetrics = new HashMap<String, Double>();
+            try {
+                return new AnalysedFile(DelphiModelCodec.decode(data, basicMetrics, delphiProjectHelper),
+                        basicMetrics, null);
+            } catch (IOException e) {
+                DelphiUtils.LOG.debug("Could not decode analysis of " + sourceFile + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        private void store(CodeAnalysisResults results, Map<String, Double> basicMetrics, DelphiAST ast) {
+            if (!isCacheEnabled()) {
+                return;
+            }
+            try {
+                analysisCache.store(CACHE_SECTION, sourceFile, context, ast.getIncludedFiles(),
+                        DelphiModelCodec.encode(results, basicMetrics));
+            } catch (IOException e) {
+                DelphiUtils.LOG.debug("Could not encode analysis of " + sourceFile + ": " + e.getMessage());
+            }
+        }
+
+        private void importSource(DelphiAST ast) {
+            try {
+                ast.getFileSource();
+            } catch (DuplicatedSourceException e) {
+                DelphiUtils.LOG.debug("Source already saved, skipping...");
+            }
+        }
+    }
+
+    private boolean isCacheEnabled() {
+        return analysisCache != null && analysisCache.isEnabled();
+    }
+
+    /**
+     * Result of a file analysis. The tree is not kept, it stays in the cache
+     * shared with other sensors only as long as the cache bound allows.
+     */
+    private static class AnalysedFile {
+
+        private final CodeAnalysisResults results;
+        private final Map<String, Double> basicMetrics;
+        private final Exception error;
+
+        AnalysedFile(CodeAnalysisResults results, Map<String, Double> basicMetrics, Exception error) {
+            this.results = results;
+            this.basicMetrics = basicMetrics;
+            this.error = error;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.serialization.DelphiModelReader;
+import org.sonar.plugins.delphi.serialization.DelphiModelWriter;
+
+/**
+ * Encodes the analysis of a file, so it can be kept in the analysis cache: its
+ * basic metrics, then its results before calls are linked, as a results record
+ * of the model format
+ */
+final class DelphiModelCodec {
+
+    private DelphiModelCodec() {
+    }
+
+    /**
+     * Encodes the analysis of a file
+     * 
+     * @param results results of the file, its calls not resolved yet
+     * @param basicMetrics basic metrics of the file, by key
+     * @return encoded analysis
+     * @throws IOException if the results refer to other files
+     */
+    static byte[] encode(CodeAnalysisResults results, Map<String, Double> basicMetrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(basicMetrics.size());
+        for (Map.Entry<String, Double> metric : basicMetrics.entrySet()) {
+            out.writeUTF(metric.getKey());
+            out.writeDouble(metric.getValue());
+        }
+        out.flush();
+        DelphiModelWriter writer = new DelphiModelWriter(bytes);
+        writer.write(results);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the analysis of a file
+     * 
+     * @param data encoded analysis
+     * @param basicMetrics map the basic metrics of the file are put in
+     * @param delphiProjectHelper project helper, used by read statements
+     * @return results of the file, in their own analysis cache
+     * @throws IOException if data is not valid
+     */
+    static CodeAnalysisResults decode(byte[] data, Map<String, Double> basicMetrics,
+            DelphiProjectHelper delphiProjectHelper) throws IOException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        int metrics = in.readInt();
+        for (int i = 0; i < metrics; ++i) {
+            String key = in.readUTF();
+            basicMetrics.put(key, in.readDouble());
+        }
+        CodeAnalysisResults results = new DelphiModelReader(bytes, delphiProjectHelper).readResults();
+        if (results == null) {
+            throw new IOException("No results");
+        }
+        return results;
+    }
+
+}
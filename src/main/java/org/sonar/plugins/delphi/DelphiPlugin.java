@@ -29,6 +29,8 @@ import org.sonar.api.Extension;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.SonarPlugin;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.codecoverage.CodeCoverageSensor;
 import org.sonar.plugins.delphi.colorizer.DelphiColorizerFormat;
 import org.sonar.plugins.delphi.core.DelphiLanguage;
@@ -57,6 +59,21 @@ import org.sonar.plugins.delphi.surefire.SurefireSensor;
         @Property(key = DelphiPlugin.INCLUDE_EXTEND_KEY, defaultValue = "true", name = "Include extend option",
                 description = "Include extend options, can be: 'true' (include files will be processed) or 'false' (turn the feature off)",
                 global = true, project = true),
+        @Property(key = DelphiPlugin.PARSE_CACHE_SIZE_KEY, defaultValue = "10000", name = "Parse cache size",
+                description = "Maximum number of parsed files kept in memory and shared between the analysis, PMD and CPD.",
+                global = true, project = true),
+        @Property(key = DelphiPlugin.PMD_XML_REPORT_KEY, defaultValue = "false", name = "PMD XML report",
+                description = "Write PMD violations to pmd-report.xml in the working directory, for debugging purposes.",
+                global = true, project = true),
+        @Property(key = DelphiPlugin.ANALYSIS_THREADS_KEY, defaultValue = "1", name = "Analysis threads",
+                description = "Number of threads used to parse and analyse source files. Use 1 to analyse files sequentially.",
+                global = true, project = true),
+        @Property(key = DelphiPlugin.ANALYSIS_CACHE_KEY, defaultValue = "false", name = "Incremental analysis cache",
+                description = "Keep analysis results of files on disk, and reuse them for files which did not change since the previous analysis.",
+                global = true, project = true),
+        @Property(key = DelphiPlugin.ANALYSIS_CACHE_DIR_KEY, defaultValue = "", name = "Incremental analysis cache directory",
+                description = "Directory of the incremental analysis cache. Leave empty to use the 'delphi-cache' directory in the working directory.",
+                global = true, project = true),
         @Property(
                 key = DelphiPlugin.PROJECT_FILE_KEY,
                 defaultValue = "",
@@ -66,6 +83,10 @@ import org.sonar.plugins.delphi.surefire.SurefireSensor;
         @Property(key = DelphiPlugin.WORKGROUP_FILE_KEY, defaultValue = "", name = "Workgroup file",
                 description = "Workgroup file. If provided, will be parsed, then all *.dproj files found in workgroup file will be parsed.",
                 global = true, project = true),
+        @Property(key = DelphiPlugin.CONFIGURATIONS_KEY, defaultValue = "", name = "Build configurations",
+                description = "Build configurations analysed in a single pass, each given as 'Name:DEF1;DEF2' and added to the project definitions. "
+                    + "Metrics are computed with the first configuration, PMD violations are the union of the violations of all configurations.",
+                global = true, project = true),
         @Property(key = DelphiPlugin.CODECOVERAGE_TOOL_KEY, defaultValue = "delphi code coverage", name = "Code coverage tool",
                 description = "Used code coverage tool (AQTime or Delphi Code Coverage)", global = false, project = true),
         @Property(key = DelphiPlugin.CODECOVERAGE_REPORT_KEY, defaultValue = "delphi code coverage report", name = "Code coverage report file",
@@ -86,8 +107,14 @@ public class DelphiPlugin extends SonarPlugin {
     public static final String CC_EXCLUDED_KEY = "sonar.delphi.codecoverage.excluded";
     public static final String INCLUDED_DIRECTORIES_KEY = "sonar.delphi.sources.include";
     public static final String INCLUDE_EXTEND_KEY = "sonar.delphi.sources.include.extend";
+    public static final String PARSE_CACHE_SIZE_KEY = "sonar.delphi.parse.cache.size";
+    public static final String ANALYSIS_THREADS_KEY = "sonar.delphi.analysis.threads";
+    public static final String PMD_XML_REPORT_KEY = "sonar.delphi.pmd.report.xml";
+    public static final String ANALYSIS_CACHE_KEY = "sonar.delphi.analysis.cache";
+    public static final String ANALYSIS_CACHE_DIR_KEY = "sonar.delphi.analysis.cache.dir";
     public static final String PROJECT_FILE_KEY = "sonar.delphi.sources.project";
     public static final String WORKGROUP_FILE_KEY = "sonar.delphi.sources.workgroup";
+    public static final String CONFIGURATIONS_KEY = "sonar.delphi.sources.configurations";
     public static final String CODECOVERAGE_TOOL_KEY = "sonar.delphi.codecoverage.tool";
     public static final String CODECOVERAGE_REPORT_KEY = "sonar.delphi.codecoverage.report";
     public static final String JDBC_DRIVER_KEY = "sonar.delphi.codecoverage.aqtime.jdbc.driver";
@@ -110,6 +137,8 @@ public class DelphiPlugin extends SonarPlugin {
         list.add(DelphiCpdMapping.class);
         // Core helpers
         list.add(DelphiProjectHelper.class);
+        list.add(DelphiASTCache.class);
+        list.add(DelphiAnalysisCache.class);
         // Colorizer
         list.add(DelphiColorizerFormat.class);
         // Code Coverage Sensor
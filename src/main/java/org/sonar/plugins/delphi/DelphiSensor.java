@@ -24,11 +24,16 @@ package org.sonar.plugins.delphi;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -36,19 +41,11 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Directory;
-import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
-import org.sonar.plugins.delphi.antlr.analyzer.ASTAnalyzer;
-import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCacheResults;
-import org.sonar.plugins.delphi.antlr.analyzer.DelphiASTAnalyzer;
-import org.sonar.plugins.delphi.antlr.ast.ASTTree;
-import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
-import org.sonar.plugins.delphi.antlr.sanitizer.DelphiSourceSanitizer;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
-import org.sonar.plugins.delphi.core.language.ClassInterface;
-import org.sonar.plugins.delphi.core.language.FunctionInterface;
-import org.sonar.plugins.delphi.core.language.UnitInterface;
 import org.sonar.plugins.delphi.metrics.BasicMetrics;
 import org.sonar.plugins.delphi.metrics.ComplexityMetrics;
 import org.sonar.plugins.delphi.metrics.DeadCodeMetrics;
@@ -67,25 +64,23 @@ public class DelphiSensor implements Sensor {
 
     private int scannedFiles = 0; // number of scanned files
     private Project project = null; // project
-    private Set<Directory> packageList = new HashSet<Directory>(); // package
-                                                                   // list
-    private Map<Directory, Integer> filesCount = new HashMap<Directory, Integer>();
-    // list of resources to process for metrics
-    private List<InputFile> resourceList = new ArrayList<InputFile>();
-    private Map<InputFile, List<ClassInterface>> fileClasses = new HashMap<InputFile, List<ClassInterface>>();
-    private Map<InputFile, List<FunctionInterface>> fileFunctions = new HashMap<InputFile, List<FunctionInterface>>();
-    private List<UnitInterface> units = null; // project units
+    // files count of every package
+    private Map<Directory, Integer> filesCount = new LinkedHashMap<Directory, Integer>();
     private List<File> testDirectories = null; // test directories
 
     private final DelphiProjectHelper delphiProjectHelper;
     private final RuleFinder ruleFinder;
     private final ResourcePerspectives perspectives;
+    private final DelphiASTCache astCache;
+    private final DelphiAnalysisCache analysisCache;
 
     public DelphiSensor(DelphiProjectHelper delphiProjectHelper, RuleFinder ruleFinder,
-            ResourcePerspectives perspectives) {
+            ResourcePerspectives perspectives, DelphiASTCache astCache, DelphiAnalysisCache analysisCache) {
         this.delphiProjectHelper = delphiProjectHelper;
         this.ruleFinder = ruleFinder;
         this.perspectives = perspectives;
+        this.astCache = astCache;
+        this.analysisCache = analysisCache;
     }
 
     /**
@@ -99,7 +94,10 @@ public class DelphiSensor implements Sensor {
     }
 
     /**
-     * Analyses whole project with all metrics
+     * Analyses whole project with all metrics. Every .dproj file of the
+     * workgroup is parsed in its own analysis session, concurrently when more
+     * than one analysis thread is configured, then metrics are computed and
+     * saved project by project.
      */
 
     public void analyse(Project sonarProject, SensorContext sensorContext) {
@@ -108,39 +106,114 @@ public class DelphiSensor implements Sensor {
         printFileList("Source dir: ", project.getFileSystem().getSourceDirs());
         printFileList("Test dir: ", testDirectories);
 
-        // creates and resets analyser
-        ASTAnalyzer analyzer = new DelphiASTAnalyzer(delphiProjectHelper);
+        List<AnalysisSession> sessions = new ArrayList<AnalysisSession>();
         List<DelphiProject> projects = delphiProjectHelper.getWorkgroupProjects();
         for (DelphiProject delphiProject : projects) // for every .dproj file
         {
-            CodeAnalysisCacheResults.resetCache();
-            parseFiles(analyzer, delphiProject);
-            parsePackages(sensorContext);
+            sessions.add(new AnalysisSession(delphiProject, delphiProjectHelper, astCache, analysisCache, project,
+                    testDirectories));
+        }
+        // counters are shared with the other sensors using the cache
+        int hits = analysisCache.getHits();
+        int misses = analysisCache.getMisses();
+        parseProjects(sessions);
+        if (analysisCache.isEnabled()) {
+            DelphiUtils.LOG.info("Analysis cache: " + (analysisCache.getHits() - hits) + " files reused, "
+                    + (analysisCache.getMisses() - misses) + " files analysed");
+        }
+
+        Set<String> processed = new HashSet<String>();
+        for (AnalysisSession session : sessions) {
+            scannedFiles += session.getScannedFiles();
+            for (Map.Entry<Directory, Integer> entry : session.getFilesCount().entrySet()) {
+                Integer count = filesCount.get(entry.getKey());
+                filesCount.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
 
             MetricsInterface metrics[] = {new BasicMetrics(project), new ComplexityMetrics(project),
                     new LCOM4Metrics(project),
                     new DeadCodeMetrics(project, ruleFinder, perspectives)};
-            processFiles(metrics, sensorContext);
+            processFiles(session, metrics, sensorContext, processed);
         }
+        parsePackages(sensorContext);
+        astCache.logStatistics();
     }
 
     /**
-     * Calculate metrics for project files
+     * Parses the projects of the workgroup. With several projects and
+     * analysis threads, projects are parsed concurrently and share the
+     * threads.
      * 
+     * @param sessions Analysis sessions of the projects
+     */
+    private void parseProjects(List<AnalysisSession> sessions) {
+        int threads = delphiProjectHelper.getAnalysisThreads();
+        int concurrentProjects = Math.min(threads, sessions.size());
+        if (concurrentProjects <= 1) {
+            for (AnalysisSession session : sessions) {
+                session.parseFiles(threads);
+            }
+            return;
+        }
+
+        int threadsPerProject = Math.max(1, threads / concurrentProjects);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentProjects);
+        try {
+            List<Future<Void>> parsing = new ArrayList<Future<Void>>();
+            for (AnalysisSession session : sessions) {
+                parsing.add(executor.submit(new ProjectParsing(session, threadsPerProject)));
+            }
+            for (int i = 0; i < parsing.size(); ++i) {
+                waitFor(parsing.get(i), sessions.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void waitFor(Future<Void> parsing, AnalysisSession session) {
+        try {
+            parsing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing " + session.getDelphiProject().getName(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error parsing " + session.getDelphiProject().getName(), e.getCause());
+        }
+    }
+
+    /**
+     * Calculate metrics for project files, files already processed for
+     * another project of the workgroup are skipped
+     * 
+     * @param session Analysis session of the project
      * @param metrics Metrics to calculate
      * @param sensorContext Sensor context (provided by Sonar)
+     * @param processed Absolute paths of the files already processed
      */
-    private void processFiles(MetricsInterface[] metrics, SensorContext sensorContext) {
+    private void processFiles(AnalysisSession session, MetricsInterface[] metrics, SensorContext sensorContext,
+            Set<String> processed) {
         DelphiUtils.LOG.info("Processing metrics...");
+        List<InputFile> resourceList = session.getResources();
         ProgressReporter progressReporter = new ProgressReporter(resourceList.size(), 10, new ProgressReporterLogger(
                 DelphiUtils.LOG));
 
         for (InputFile resource : resourceList) { // for every resource
+            if (!processed.add(resource.file().getAbsolutePath())) {
+                progressReporter.progress();
+                continue;
+            }
             DelphiUtils.LOG.debug(">> PROCESSING " + resource.file().getPath());
+            Map<String, Double> basicMetrics = session.getBasicMetrics(resource);
             for (MetricsInterface metric : metrics) { // for every metric
                 if (metric.executeOnResource(resource)) {
-                    metric.analyse(resource, sensorContext, fileClasses.get(resource), fileFunctions.get(resource),
-                            units);
+                    if (metric instanceof BasicMetrics && basicMetrics != null) {
+                        // measured, or loaded from cache, when the file was parsed
+                        ((BasicMetrics) metric).setMetrics(basicMetrics);
+                    } else {
+                        metric.analyse(resource, sensorContext, session.getClasses(resource),
+                                session.getFunctions(resource), session.getUnits());
+                    }
                     InputFile inputFile = delphiProjectHelper.getFile(resource.file().getAbsolutePath());
                     metric.save(inputFile, sensorContext);
                 }
@@ -167,9 +240,9 @@ public class DelphiSensor implements Sensor {
      */
     private void parsePackages(SensorContext sensorContext) {
         // for every package
-        for (Directory pack : packageList) {
-            sensorContext.saveMeasure(pack, CoreMetrics.DIRECTORIES, 1.0);
-            sensorContext.saveMeasure(pack, CoreMetrics.FILES, (double) filesCount.get(pack));
+        for (Map.Entry<Directory, Integer> pack : filesCount.entrySet()) {
+            sensorContext.saveMeasure(pack.getKey(), CoreMetrics.DIRECTORIES, 1.0);
+            sensorContext.saveMeasure(pack.getKey(), CoreMetrics.FILES, (double) pack.getValue());
         }
     }
 
@@ -181,115 +254,22 @@ public class DelphiSensor implements Sensor {
     }
 
     /**
-     * Parse files with ANTLR
-     * 
-     * @param analyser Analyser to use
-     * @param delphiProject DelphiLanguage project to parse
-     */
-    protected void parseFiles(ASTAnalyzer analyser, DelphiProject delphiProject) {
-        // project properties
-        List<File> includedDirs = delphiProject.getIncludeDirectories();
-        List<File> excludedDirs = delphiProjectHelper.getExcludedSources();
-        List<File> sourceFiles = delphiProject.getSourceFiles();
-        List<String> definitions = delphiProject.getDefinitions();
-        boolean importSources = delphiProjectHelper.getImportSources();
-
-        DelphiSourceSanitizer.setIncludeDirectories(includedDirs);
-        DelphiSourceSanitizer.setDefinitions(definitions);
-
-        printFileList("Included: ", includedDirs);
-        printFileList("Excluded: ", excludedDirs);
-
-        // for every source file
-        DelphiUtils.LOG.info("Parsing project " + delphiProject.getName());
-
-        ProgressReporter progressReporter = new ProgressReporter(sourceFiles.size(), 10, new ProgressReporterLogger(
-                DelphiUtils.LOG));
-        DelphiUtils.LOG.info("Files to parse: " + sourceFiles.size());
-
-        for (File delphiFile : sourceFiles) {
-            parseSourceFile(delphiFile, excludedDirs, importSources, analyser);
-            progressReporter.progress();
-        }
-
-        units = analyser.getResults().getCachedUnitsAsList();
-        DelphiUtils.LOG.info("Done");
-    }
-
-    /**
-     * Parses a source file
-     * 
-     * @param sourceFile Source file to parse
-     * @param excludedDirs List of excluded dirs
-     * @param importSources Should we import sources to Sonar
-     * @param analyzer Source code analyser
+     * Parses the files of a project in a worker thread
      */
-    private void parseSourceFile(File sourceFile, List<File> excludedDirs, boolean importSources, ASTAnalyzer analyzer) {
-        if (delphiProjectHelper.isExcluded(sourceFile, excludedDirs)) {
-            return; // in excluded, return
-        }
-
-        boolean isTest = delphiProjectHelper.isTestFile(sourceFile, testDirectories);
-
-        DelphiUtils.LOG.debug(">> PARSING " + sourceFile.getAbsolutePath() + " test: " + isTest + " directory: "
-                + sourceFile.getParentFile());
-
-        // adding file to package
-        InputFile resource = delphiProjectHelper.getFile(sourceFile);
-        // DelphiFile resource = DelphiFile.fromIOFile(sourceFile,
-        // project.getFileSystem().getSourceDirs(), isTest);
+    private static class ProjectParsing implements Callable<Void> {
 
-        Directory pack = delphiProjectHelper.getDirectory(sourceFile.getParentFile(), project);
+        private final AnalysisSession session;
+        private final int threads;
 
-        if (pack == null) {
-            throw new IllegalArgumentException("Directory: " + sourceFile.getParentFile() + " not found.");
-            // DelphiUtils.LOG.debug("Directory: " + sourceFile.getParentFile()
-            // + " not found.");
-            // return;
+        ProjectParsing(AnalysisSession session, int threads) {
+            this.session = session;
+            this.threads = threads;
         }
 
-        packageList.add(pack); // new pack
-
-        if (filesCount.containsKey(pack)) {
-            filesCount.put(pack, filesCount.get(pack) + 1); // files count
-        } else {
-            filesCount.put(pack, Integer.valueOf(1));
-        }
-        resourceList.add(resource);
-
-        // sonarIndex.index(resource);
-        ASTTree ast = analyseSourceFile(sourceFile, analyzer);
-        if (importSources && ast != null) {
-
-            try {
-                ast.getFileSource();
-            } catch (DuplicatedSourceException e) {
-                DelphiUtils.LOG.debug("Source already saved, skipping...");
-            }
-        }
-
-        fileClasses.put(resource, analyzer.getResults().getClasses());
-        fileFunctions.put(resource, analyzer.getResults().getFunctions());
-    }
-
-    /**
-     * Analysing a source file with ANTLR
-     * 
-     * @param sourceFile File to analyse
-     * @param analyser Source code analyser
-     * @return AST Tree
-     */
-    private ASTTree analyseSourceFile(File sourceFile, ASTAnalyzer analyser) {
-        // analysing file
-        DelphiAST ast = null;
-        try {
-            ast = new DelphiAST(sourceFile); // ast tree for file
-            analyser.analyze(ast); // parsing with ANTLR
-            ++scannedFiles;
-        } catch (Exception e) {
-            DelphiUtils.LOG.debug("Error parsing file: " + e.getMessage() + " " + sourceFile.getAbsolutePath());
+        public Void call() {
+            session.parseFiles(threads);
+            return null;
         }
-        return ast;
     }
 
     /**
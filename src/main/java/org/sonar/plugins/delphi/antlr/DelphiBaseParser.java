@@ -0,0 +1,137 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.runtime.IntStream;
+import org.antlr.runtime.Parser;
+import org.antlr.runtime.RecognizerSharedState;
+import org.antlr.runtime.TokenStream;
+
+/**
+ * Base class of the generated {@link DelphiParser}, replaces the memoization
+ * of ANTLR (a hash map of boxed integers per rule, growing for the whole file)
+ * by a bounded {@link RuleMemo} table. Only the rules declared with the
+ * memoize option in the grammar, those whose speculative parse is actually
+ * repeated while backtracking, are memoized. Memoization lookups and stores
+ * are counted in {@link #getStatistics()}.
+ */
+public abstract class DelphiBaseParser extends Parser {
+
+    /**
+     * Default maximum number of memoized rule results per parsed file
+     */
+    public static final int DEFAULT_MEMO_CAPACITY = 1 << 16;
+
+    private static final Map<Integer, String> RULE_NAMES = new ConcurrentHashMap<Integer, String>();
+
+    private RuleMemo memo = new RuleMemo(DEFAULT_MEMO_CAPACITY);
+    private final ParserStatistics statistics = new ParserStatistics();
+
+    /**
+     * ctor
+     * 
+     * @param input token stream
+     * @param state recognizer state
+     */
+    public DelphiBaseParser(TokenStream input, RecognizerSharedState state) {
+        super(input, state);
+    }
+
+    /**
+     * Sets the maximum number of memoized rule results, the memoization table
+     * is emptied when it is full
+     * 
+     * @param capacity maximum number of entries
+     */
+    public void setMemoCapacity(int capacity) {
+        memo = new RuleMemo(capacity);
+    }
+
+    /**
+     * @return memoization counters of the parsed file
+     */
+    public ParserStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean alreadyParsedRule(IntStream input, int ruleIndex) {
+        if (!statistics.isNamed(ruleIndex)) {
+            statistics.setName(ruleIndex, getRuleName(ruleIndex));
+        }
+        int stopIndex = memo.get(ruleIndex, input.index());
+        statistics.lookup(ruleIndex, state.backtracking, stopIndex != MEMO_RULE_UNKNOWN);
+        if (stopIndex == MEMO_RULE_UNKNOWN) {
+            return false;
+        }
+        if (stopIndex == MEMO_RULE_FAILED) {
+            state.failed = true;
+        } else {
+            input.seek(stopIndex + 1);
+        }
+        return true;
+    }
+
+    @Override
+    public void memoize(IntStream input, int ruleIndex, int ruleStartIndex) {
+        int stopIndex = state.failed ? MEMO_RULE_FAILED : input.index() - 1;
+        boolean kept = memo.put(ruleIndex, ruleStartIndex, stopIndex);
+        statistics.store(ruleIndex, memo.size(), kept);
+    }
+
+    @Override
+    public int getRuleMemoization(int ruleIndex, int ruleStartIndex) {
+        return memo.get(ruleIndex, ruleStartIndex);
+    }
+
+    @Override
+    public int getRuleMemoizationCacheSize() {
+        return memo.size();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (memo != null) {
+            memo.clear();
+        }
+    }
+
+    /**
+     * Name of a rule, the generated rule method calling
+     * {@link #alreadyParsedRule(IntStream, int)}. Resolved once per rule.
+     */
+    private static String getRuleName(int ruleIndex) {
+        String name = RULE_NAMES.get(ruleIndex);
+        if (name == null) {
+            StackTraceElement[] stack = new Throwable().getStackTrace();
+            name = stack.length > 2 ? stack[2].getMethodName() : "rule " + ruleIndex;
+            RULE_NAMES.put(ruleIndex, name);
+        }
+        return name;
+    }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+/**
+ * All tokens of a source lexed once, stored in parallel arrays (type, channel,
+ * start and stop offsets, line and column) over the char stream instead of a
+ * token object per token. Token text is read from the char stream when it is
+ * asked for, identifiers are interned so every occurrence of a name shares
+ * the same string.
+ * 
+ * Tokens are visited by index, from 0 to {@link #size()} - 1, the last token
+ * being the EOF token. {@link DelphiTokenStream} feeds the parser from a
+ * buffer, creating token objects only for the tokens the parser reads. The
+ * buffer does not change once the source is lexed and can be read
+ * concurrently.
+ */
+public class DelphiTokenBuffer {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MARGIN = 16;
+    private static final String READ_ONLY = "Lexed tokens are read only";
+
+    private final CharStream input;
+    private int size = 0;
+    private int[] types;
+    private int[] channels;
+    private int[] starts;
+    private int[] stops;
+    private int[] lines;
+    private int[] columns;
+    private Map<Integer, String> texts = null; // set by lexer actions
+    private final Map<String, String> identifiers = new HashMap<String, String>();
+
+    /**
+     * Lexes the whole char stream
+     * 
+     * @param input char stream, e.g. a sanitized source
+     */
+    public DelphiTokenBuffer(CharStream input) {
+        this.input = input;
+        allocate(Math.max(MIN_CAPACITY, input.size() / CHARS_PER_TOKEN));
+        Recorder recorder = new Recorder(input);
+        Token eof;
+        do {
+            eof = recorder.nextToken();
+        } while (eof.getType() != Token.EOF);
+        add(Token.EOF, eof.getChannel(), input.index(), input.index(), eof.getLine(),
+                eof.getCharPositionInLine(), null);
+        if (size < types.length - types.length / MARGIN) {
+            allocate(size); // trimmed, the buffer is kept with the parsed file
+        }
+    }
+
+    /**
+     * @return lexed char stream
+     */
+    public CharStream getInput() {
+        return input;
+    }
+
+    /**
+     * @return number of tokens, including hidden channel tokens and the EOF
+     *         token
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index token index
+     * @return token type
+     */
+    public int getType(int index) {
+        return types[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return token channel
+     */
+    public int getChannel(int index) {
+        return channels[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return index of the first char of the token
+     */
+    public int getStartIndex(int index) {
+        return starts[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return index of the last char of the token
+     */
+    public int getStopIndex(int index) {
+        return stops[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return line of the token, in the original source
+     */
+    public int getLine(int index) {
+        return lines[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return column of the token in its line, starting from 0
+     */
+    public int getColumn(int index) {
+        return columns[check(index)];
+    }
+
+    /**
+     * @param index token index
+     * @return token text, "&lt;EOF&gt;" for the EOF token
+     */
+    public String getText(int index) {
+        check(index);
+        if (texts != null && texts.containsKey(index)) {
+            return texts.get(index);
+        }
+        if (types[index] == Token.EOF) {
+            return "<EOF>";
+        }
+        String text = input.substring(starts[index], stops[index]);
+        if (types[index] == DelphiLexer.TkIdentifier) {
+            synchronized (identifiers) {
+                String identifier = identifiers.get(text);
+                if (identifier == null) {
+                    identifiers.put(text, text);
+                } else {
+                    text = identifier;
+                }
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Creates a read only token object, a view of the buffered token. Its
+     * text is read from the char stream when it is asked for (identifiers are
+     * interned).
+     * 
+     * @param index token index
+     * @return new token
+     */
+    public Token getToken(int index) {
+        return new BufferedToken(this, check(index));
+    }
+
+    /**
+     * Finds the index of a token object created by this buffer
+     *
+     * @param token token
+     * @return token index, or -1 if the token was not created by this buffer
+     *         or its text was changed
+     */
+    public int indexOf(Token token) {
+        if (!(token instanceof BufferedToken) || ((BufferedToken) token).buffer != this) {
+            return -1;
+        }
+        BufferedToken buffered = (BufferedToken) token;
+        if (buffered.text != null
+                && (types[buffered.index] != DelphiLexer.TkIdentifier || buffered.text != getText(buffered.index))) {
+            return -1;
+        }
+        return buffered.index;
+    }
+
+    /**
+     * @return List view of the tokens, token objects are created when they
+     *         are read
+     */
+    public List<Token> getTokens() {
+        return new AbstractList<Token>() {
+
+            @Override
+            public Token get(int index) {
+                return getToken(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index " + index + " out of range 0.." + (size - 1));
+        }
+        return index;
+    }
+
+    private void add(int type, int channel, int start, int stop, int line, int column, String text) {
+        if (size == types.length) {
+            // estimated from the chars lexed so far
+            long estimate = (long) size * input.size() / Math.max(1, input.index());
+            allocate((int) Math.max(size + MIN_CAPACITY, estimate + estimate / MARGIN));
+        }
+        types[size] = type;
+        channels[size] = channel;
+        starts[size] = start;
+        stops[size] = stop;
+        lines[size] = line;
+        columns[size] = column;
+        if (text != null) {
+            if (texts == null) {
+                texts = new HashMap<Integer, String>();
+            }
+            texts.put(size, text);
+        }
+        ++size;
+    }
+
+    private void allocate(int capacity) {
+        if (types == null) {
+            types = new int[capacity];
+            channels = new int[capacity];
+            starts = new int[capacity];
+            stops = new int[capacity];
+            lines = new int[capacity];
+            columns = new int[capacity];
+        } else {
+            types = Arrays.copyOf(types, capacity);
+            channels = Arrays.copyOf(channels, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+    }
+
+    /**
+     * Read only token of the buffer, a view of its arrays. The interned text
+     * of an identifier is kept once read.
+     */
+    private static class BufferedToken implements Token {
+
+        private final DelphiTokenBuffer buffer;
+        private final int index;
+        private String text = null;
+
+        BufferedToken(DelphiTokenBuffer buffer, int index) {
+            this.buffer = buffer;
+            this.index = index;
+        }
+
+        @Override
+        public String getText() {
+            if (text != null) {
+                return text;
+            }
+            String result = buffer.getText(index);
+            if (buffer.types[index] == DelphiLexer.TkIdentifier) {
+                text = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int getType() {
+            return buffer.types[index];
+        }
+
+        @Override
+        public int getLine() {
+            return buffer.lines[index];
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return buffer.columns[index];
+        }
+
+        @Override
+        public int getChannel() {
+            return buffer.channels[index];
+        }
+
+        @Override
+        public int getTokenIndex() {
+            return index;
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return buffer.input;
+        }
+
+        @Override
+        public void setType(int type) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setLine(int line) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setCharPositionInLine(int position) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setChannel(int channel) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setTokenIndex(int index) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setInputStream(CharStream input) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public String toString() {
+            return "[@" + index + "," + buffer.starts[index] + ":" + buffer.stops[index] + "='" + getText() + "',<"
+                    + getType() + ">" + (getChannel() > 0 ? ",channel=" + getChannel() : "") + "," + getLine() + ":"
+                    + getCharPositionInLine() + "]";
+        }
+    }
+
+    /**
+     * Lexer adding its tokens to the buffer instead of creating token objects
+     */
+    private class Recorder extends DelphiLexer {
+
+        private final Token recorded = new CommonToken(Token.INVALID_TOKEN_TYPE);
+
+        Recorder(CharStream input) {
+            super(input);
+        }
+
+        @Override
+        public Token emit() {
+            add(state.type, state.channel, state.tokenStartCharIndex, getCharIndex() - 1, state.tokenStartLine,
+                    state.tokenStartCharPositionInLine, state.text);
+            emit(recorded);
+            return recorded;
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenSource;
+import org.antlr.runtime.TokenStream;
+
+/**
+ * Token stream of the parser over a {@link DelphiTokenBuffer}, skipping the
+ * hidden channel tokens like CommonTokenStream does. Token types are read from
+ * the buffer, so token objects are only created for the tokens the parser
+ * matches or reports. The tokens created for the last {@link #CACHE_SIZE}
+ * token indexes are reused, as the parser backtracks over a few tokens. A
+ * stream is used by one parser, in one thread.
+ */
+public class DelphiTokenStream implements TokenStream {
+
+    /**
+     * Number of cached token objects
+     */
+    public static final int CACHE_SIZE = 256;
+
+    private final DelphiTokenBuffer buffer;
+    private final Token[] cache = new Token[CACHE_SIZE];
+    private final int last;
+    private int p;
+    private int lastMarker = 0;
+    private int range = -1;
+
+    /**
+     * ctor
+     * 
+     * @param buffer lexed tokens
+     */
+    public DelphiTokenStream(DelphiTokenBuffer buffer) {
+        this.buffer = buffer;
+        this.last = buffer.size() - 1;
+        this.p = skipHidden(0);
+    }
+
+    /**
+     * @return lexed tokens
+     */
+    public DelphiTokenBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int LA(int i) {
+        int index = lookup(i);
+        return index < 0 ? Token.INVALID_TOKEN_TYPE : buffer.getType(index);
+    }
+
+    @Override
+    public Token LT(int k) {
+        int index = lookup(k);
+        if (index < 0) {
+            return null;
+        }
+        range = Math.max(range, index);
+        Token token = cache[index % CACHE_SIZE];
+        if (token == null || token.getTokenIndex() != index) {
+            token = buffer.getToken(index);
+            cache[index % CACHE_SIZE] = token;
+        }
+        return token;
+    }
+
+    @Override
+    public Token get(int i) {
+        return buffer.getToken(i);
+    }
+
+    @Override
+    public void consume() {
+        if (p < last) {
+            p = skipHidden(p + 1);
+        }
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public int range() {
+        return range;
+    }
+
+    @Override
+    public int mark() {
+        lastMarker = p;
+        return lastMarker;
+    }
+
+    @Override
+    public void release(int marker) {
+        // no resources to release
+    }
+
+    @Override
+    public void rewind(int marker) {
+        seek(marker);
+    }
+
+    @Override
+    public void rewind() {
+        seek(lastMarker);
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.min(index, last);
+    }
+
+    @Override
+    public int size() {
+        return buffer.size();
+    }
+
+    @Override
+    public String getSourceName() {
+        return buffer.getInput().getSourceName();
+    }
+
+    @Override
+    public TokenSource getTokenSource() {
+        return new TokenSource() {
+
+            private int next = 0;
+
+            @Override
+            public Token nextToken() {
+                return buffer.getToken(Math.min(next++, last));
+            }
+
+            @Override
+            public String getSourceName() {
+                return DelphiTokenStream.this.getSourceName();
+            }
+        };
+    }
+
+    @Override
+    public String toString(int start, int stop) {
+        if (start < 0 || stop < 0) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i <= Math.min(stop, last) && buffer.getType(i) != Token.EOF; ++i) {
+            text.append(buffer.getText(i));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString(Token start, Token stop) {
+        if (start == null || stop == null) {
+            return null;
+        }
+        return toString(start.getTokenIndex(), stop.getTokenIndex());
+    }
+
+    @Override
+    public String toString() {
+        return toString(0, last);
+    }
+
+    /**
+     * Index of the k-th default channel token from the current one (k &gt; 0)
+     * or before it (k &lt; 0), the EOF token is repeated past the end
+     */
+    private int lookup(int k) {
+        if (k == 0) {
+            return -1;
+        }
+        int index = p;
+        if (k > 0) {
+            for (int n = 1; n < k && index < last; ++n) {
+                index = skipHidden(index + 1);
+            }
+        } else {
+            for (int n = 1; n <= -k && index >= 0; ++n) {
+                index = skipHiddenReverse(index - 1);
+            }
+        }
+        return index;
+    }
+
+    private int skipHidden(int index) {
+        int i = index;
+        while (i < last && buffer.getChannel(i) != Token.DEFAULT_CHANNEL) {
+            ++i;
+        }
+        return i;
+    }
+
+    private int skipHiddenReverse(int index) {
+        int i = index;
+        while (i >= 0 && buffer.getChannel(i) != Token.DEFAULT_CHANNEL) {
+            --i;
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Memoization counters of the parser: per memoized rule, the number of
+ * lookups made while backtracking, the number of hits (the rule was not parsed
+ * again), the number of stored results and the speculation depth (backtracking
+ * level) of the lookups. Statistics of several parsed files can be added
+ * together.
+ */
+public class ParserStatistics {
+
+    private String[] names = new String[0];
+    private long[] lookups = new long[0];
+    private long[] hits = new long[0];
+    private long[] stores = new long[0];
+    private long[] depths = new long[0];
+    private int[] maxDepths = new int[0];
+    private long resets = 0;
+    private int peakSize = 0;
+
+    /**
+     * Counts a memoization lookup
+     * 
+     * @param ruleIndex rule index
+     * @param depth backtracking level
+     * @param hit true if the rule result was memoized
+     */
+    void lookup(int ruleIndex, int depth, boolean hit) {
+        ensureRule(ruleIndex);
+        ++lookups[ruleIndex];
+        if (hit) {
+            ++hits[ruleIndex];
+        }
+        depths[ruleIndex] += depth;
+        maxDepths[ruleIndex] = Math.max(maxDepths[ruleIndex], depth);
+    }
+
+    /**
+     * Counts a stored rule result
+     * 
+     * @param ruleIndex rule index
+     * @param size number of entries of the memoization table
+     * @param kept false if the table was emptied because it was full
+     */
+    void store(int ruleIndex, int size, boolean kept) {
+        ensureRule(ruleIndex);
+        ++stores[ruleIndex];
+        if (!kept) {
+            ++resets;
+        }
+        peakSize = Math.max(peakSize, size);
+    }
+
+    /**
+     * @param ruleIndex rule index
+     * @return true if the name of the rule is known
+     */
+    boolean isNamed(int ruleIndex) {
+        return ruleIndex < names.length && names[ruleIndex] != null;
+    }
+
+    /**
+     * @param ruleIndex rule index
+     * @param name rule name
+     */
+    void setName(int ruleIndex, String name) {
+        ensureRule(ruleIndex);
+        names[ruleIndex] = name;
+    }
+
+    /**
+     * Adds the counters of other statistics
+     * 
+     * @param other statistics to add
+     */
+    public synchronized void add(ParserStatistics other) {
+        synchronized (other) {
+            ensureRule(other.lookups.length - 1);
+            for (int rule = 0; rule < other.lookups.length; ++rule) {
+                if (other.names[rule] != null) {
+                    names[rule] = other.names[rule];
+                }
+                lookups[rule] += other.lookups[rule];
+                hits[rule] += other.hits[rule];
+                stores[rule] += other.stores[rule];
+                depths[rule] += other.depths[rule];
+                maxDepths[rule] = Math.max(maxDepths[rule], other.maxDepths[rule]);
+            }
+            resets += other.resets;
+            peakSize = Math.max(peakSize, other.peakSize);
+        }
+    }
+
+    /**
+     * @return number of memoization lookups
+     */
+    public synchronized long getLookups() {
+        return sum(lookups);
+    }
+
+    /**
+     * @return number of memoization hits
+     */
+    public synchronized long getHits() {
+        return sum(hits);
+    }
+
+    /**
+     * @return number of stored rule results
+     */
+    public synchronized long getStores() {
+        return sum(stores);
+    }
+
+    /**
+     * @return number of times a memoization table was emptied because it was
+     *         full
+     */
+    public synchronized long getResets() {
+        return resets;
+    }
+
+    /**
+     * @return greatest number of entries of a memoization table
+     */
+    public synchronized int getPeakSize() {
+        return peakSize;
+    }
+
+    /**
+     * @param name rule name
+     * @return number of memoization lookups of the rule
+     */
+    public synchronized long getLookups(String name) {
+        int rule = Arrays.asList(names).indexOf(name);
+        return rule < 0 ? 0 : lookups[rule];
+    }
+
+    /**
+     * @param name rule name
+     * @return number of memoization hits of the rule
+     */
+    public synchronized long getHits(String name) {
+        int rule = Arrays.asList(names).indexOf(name);
+        return rule < 0 ? 0 : hits[rule];
+    }
+
+    /**
+     * Describes the counters of the rules having the most lookups, e.g.
+     * "designator: 29091 lookups, 16242 hits, depth 1.3 (max 4)"
+     * 
+     * @param count maximum number of rules
+     * @return one line per rule
+     */
+    public synchronized List<String> describeRules(int count) {
+        List<Integer> rules = new ArrayList<Integer>();
+        for (int rule = 0; rule < lookups.length; ++rule) {
+            if (lookups[rule] > 0) {
+                rules.add(rule);
+            }
+        }
+        Collections.sort(rules, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Long.valueOf(lookups[second]).compareTo(lookups[first]);
+            }
+        });
+        List<String> result = new ArrayList<String>();
+        for (int rule : rules.subList(0, Math.min(count, rules.size()))) {
+            String name = names[rule] == null ? "rule " + rule : names[rule];
+            double depth = Math.round(10.0 * depths[rule] / lookups[rule]) / 10.0;
+            result.add(name + ": " + lookups[rule] + " lookups, " + hits[rule] + " hits, depth " + depth + " (max "
+                    + maxDepths[rule] + ")");
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getLookups() + " lookups, " + getHits() + " hits, " + getStores() + " stores, " + resets
+                + " resets, peak " + peakSize + " entries";
+    }
+
+    private void ensureRule(int ruleIndex) {
+        if (ruleIndex >= lookups.length) {
+            int length = Math.max(ruleIndex + 1, 2 * lookups.length);
+            names = Arrays.copyOf(names, length);
+            lookups = Arrays.copyOf(lookups, length);
+            hits = Arrays.copyOf(hits, length);
+            stores = Arrays.copyOf(stores, length);
+            depths = Arrays.copyOf(depths, length);
+            maxDepths = Arrays.copyOf(maxDepths, length);
+        }
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import java.util.Arrays;
+
+import org.antlr.runtime.BaseRecognizer;
+
+/**
+ * Memoization table of a parser, maps a rule index and a start token index to
+ * the stop token index of the rule (or {@link BaseRecognizer#MEMO_RULE_FAILED}
+ * ). Entries are stored in open addressing arrays, without boxing. The table
+ * holds at most {@link #getCapacity()} entries and is emptied when it is full:
+ * memoized results only save parsing time, so dropping them is always safe.
+ */
+class RuleMemo {
+
+    private static final long FREE = -1L;
+    private static final int INITIAL_LENGTH = 256;
+
+    private final int capacity;
+    private long[] keys;
+    private int[] stops;
+    private int size = 0;
+
+    /**
+     * ctor
+     * 
+     * @param capacity maximum number of entries
+     */
+    RuleMemo(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        allocate(Math.min(INITIAL_LENGTH, tableLength(this.capacity)));
+    }
+
+    /**
+     * @return maximum number of entries
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the memoized stop token index of a rule
+     * 
+     * @param ruleIndex rule index
+     * @param startIndex start token index
+     * @return stop token index, {@link BaseRecognizer#MEMO_RULE_FAILED} if the
+     *         rule failed, {@link BaseRecognizer#MEMO_RULE_UNKNOWN} if not
+     *         memoized
+     */
+    int get(int ruleIndex, int startIndex) {
+        long key = key(ruleIndex, startIndex);
+        int mask = keys.length - 1;
+        for (int i = slot(key); keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return stops[i];
+            }
+        }
+        return BaseRecognizer.MEMO_RULE_UNKNOWN;
+    }
+
+    /**
+     * Memoizes the stop token index of a rule, the table is emptied first if
+     * it is full
+     * 
+     * @param ruleIndex rule index
+     * @param startIndex start token index
+     * @param stopIndex stop token index or
+     *            {@link BaseRecognizer#MEMO_RULE_FAILED}
+     * @return false if the table was emptied, true otherwise
+     */
+    boolean put(int ruleIndex, int startIndex, int stopIndex) {
+        long key = key(ruleIndex, startIndex);
+        int mask = keys.length - 1;
+        int i = slot(key);
+        for (; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                stops[i] = stopIndex;
+                return true;
+            }
+        }
+        if (size < capacity && 2 * (size + 1) <= keys.length) {
+            keys[i] = key;
+            stops[i] = stopIndex;
+            ++size;
+            return true;
+        }
+        boolean kept = size < capacity;
+        if (kept) {
+            grow();
+        } else {
+            clear();
+        }
+        insert(key, stopIndex);
+        return kept;
+    }
+
+    /**
+     * Removes all entries, keeps the allocated table
+     */
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private void insert(long key, int stopIndex) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        stops[i] = stopIndex;
+        ++size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldStops = stops;
+        allocate(2 * oldKeys.length);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != FREE) {
+                insert(oldKeys[i], oldStops[i]);
+            }
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        stops = new int[length];
+        Arrays.fill(keys, FREE);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+    }
+
+    private static long key(int ruleIndex, int startIndex) {
+        return ((long) ruleIndex << 32) | (startIndex & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Length of a table holding the given number of entries at a load factor
+     * of at most 0.5
+     */
+    private static int tableLength(int entries) {
+        return Integer.highestOneBit(Math.max(1, entries - 1)) << 2;
+    }
+
+}
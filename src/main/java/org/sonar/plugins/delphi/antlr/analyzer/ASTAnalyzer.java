@@ -36,6 +36,12 @@ public interface ASTAnalyzer {
      */
     void analyze(ASTTree ast);
 
+    /**
+     * Resolves references between analysed trees (function calls, class
+     * parents), must be called once all trees were analysed
+     */
+    void link();
+
     /**
      * @return Results of code analysis
      */
@@ -0,0 +1,73 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
+
+/**
+ * Units and function call sites found while analysing a single project. One
+ * instance is created per analysis and shared by the results of every file of
+ * that analysis, so files can be analysed concurrently and several analyses
+ * can run without interfering with each other. All collections are
+ * synchronized. Calls are resolved once every file was analysed, see
+ * {@link CodeAnalysisLinker}.
+ */
+public class CodeAnalysisCache {
+
+    private static final int INITIAL_CAPACITY = 100;
+
+    private final Set<UnitInterface> allUnits = Collections.synchronizedSet(new HashSet<UnitInterface>(
+            INITIAL_CAPACITY));
+    private final List<UnresolvedFunctionCall> unresolvedCalls = Collections
+            .synchronizedList(new ArrayList<UnresolvedFunctionCall>(INITIAL_CAPACITY));
+
+    /**
+     * @return all parsed units
+     */
+    public Set<UnitInterface> getUnits() {
+        return allUnits;
+    }
+
+    /**
+     * @return function calls waiting to be resolved
+     */
+    public List<UnresolvedFunctionCall> getUnresolvedCalls() {
+        return unresolvedCalls;
+    }
+
+    /**
+     * Removes all cached entries
+     */
+    public void clear() {
+        allUnits.clear();
+        unresolvedCalls.clear();
+    }
+
+}
@@ -24,7 +24,6 @@ package org.sonar.plugins.delphi.antlr.analyzer;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,67 +34,68 @@ import org.sonar.plugins.delphi.core.language.UnitInterface;
 import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
 
 /**
- * Holds cached results in static variables
+ * Holds cached results: classes and functions of the file being analysed, and
+ * units and function calls of the whole analysis the file belongs to
  */
 public class CodeAnalysisCacheResults {
 
-    private static final int INITIAL_CAPACITY = 100;
-    protected static final Set<UnitInterface> allUnits = new HashSet<UnitInterface>(INITIAL_CAPACITY); // all
-                                                                                                       // parsed
-                                                                                                       // units
-    protected static final Map<String, ClassInterface> allClasses = new HashMap<String, ClassInterface>(
-            INITIAL_CAPACITY); // all parsed classes in
-    // // a project
-    protected static final Map<String, FunctionInterface> allFunctions = new HashMap<String, FunctionInterface>(
-            INITIAL_CAPACITY); // all parsed
-    // functions in a
-    // project
-    protected static final Map<String, UnresolvedFunctionCall> unresolvedCalls = new HashMap<String, UnresolvedFunctionCall>(
-            INITIAL_CAPACITY); // unresolved
-
-    // calls
+    private final CodeAnalysisCache cache;
+    private final Map<String, ClassInterface> fileClasses = new HashMap<String, ClassInterface>();
+    private final Map<String, FunctionInterface> fileFunctions = new HashMap<String, FunctionInterface>();
 
     /**
-     * resets results chache
+     * ctor, results are cached in a new analysis cache
      */
-    public static void resetCache() {
-        allClasses.clear();
-        allFunctions.clear();
-        allUnits.clear();
-        unresolvedCalls.clear();
+    public CodeAnalysisCacheResults() {
+        this(new CodeAnalysisCache());
     }
 
     /**
-     * @return map of unresolved function calls
+     * ctor
+     * 
+     * @param cache cache of the analysis
+     */
+    public CodeAnalysisCacheResults(CodeAnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return cache of the analysis
+     */
+    public CodeAnalysisCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return list of function calls waiting to be resolved
      */
-    public Map<String, UnresolvedFunctionCall> getUnresolvedCalls() {
-        return unresolvedCalls;
+    public List<UnresolvedFunctionCall> getUnresolvedCalls() {
+        return cache.getUnresolvedCalls();
     }
 
     /**
-     * Adds a unresolved function call
+     * Adds a function call, resolved once all files were analysed
      * 
-     * @param name unresolved function name
      * @param call the unresolved call
      */
-    public void addUnresolvedCall(String name, UnresolvedFunctionCall call) {
-        unresolvedCalls.put(name, call);
+    public void addUnresolvedCall(UnresolvedFunctionCall call) {
+        cache.getUnresolvedCalls().add(call);
     }
 
     /**
      * @param className class name
-     * @return cached class if found, null otherwise
+     * @return class cached in current file if found, null otherwise
      */
     public ClassInterface getCachedClass(String className) {
-        return allClasses.get(className);
+        return fileClasses.get(className);
     }
 
     /**
      * @param funcName function name
-     * @return cached function if found, null otherwise
+     * @return function cached in current file if found, null otherwise
      */
     public FunctionInterface getCachedFunction(String funcName) {
-        return allFunctions.get(funcName);
+        return fileFunctions.get(funcName);
     }
 
     /**
@@ -103,14 +103,14 @@ public class CodeAnalysisCacheResults {
      * @return true if unit was cached
      */
     public boolean hasCachedUnit(UnitInterface unit) {
-        return allUnits.contains(unit);
+        return cache.getUnits().contains(unit);
     }
 
     /**
      * @return set of cached units
      */
     public Set<UnitInterface> getCachedUnits() {
-        return allUnits;
+        return cache.getUnits();
     }
 
     /**
@@ -118,7 +118,9 @@ public class CodeAnalysisCacheResults {
      */
     public List<UnitInterface> getCachedUnitsAsList() {
         List<UnitInterface> result = new ArrayList<UnitInterface>();
-        result.addAll(allUnits);
+        synchronized (cache.getUnits()) {
+            result.addAll(cache.getUnits());
+        }
         return result;
     }
 
@@ -128,27 +130,27 @@ public class CodeAnalysisCacheResults {
      * @param unit unit to add
      */
     public void cacheUnit(UnitInterface unit) {
-        allUnits.add(unit);
+        cache.getUnits().add(unit);
     }
 
     /**
-     * add new class to cache
+     * add new class to current file cache
      * 
      * @param className class name
      * @param clazz class
      */
     public void cacheClass(String className, ClassInterface clazz) {
-        allClasses.put(className, clazz);
+        fileClasses.put(className, clazz);
     }
 
     /**
-     * add new function to cache
+     * add new function to current file cache
      * 
      * @param funcName function name
      * @param function function
      */
     public void cacheFunction(String funcName, FunctionInterface function) {
-        allFunctions.put(funcName, function);
+        fileFunctions.put(funcName, function);
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
+
+/**
+ * Second analysis phase. Once every file of a project was analysed (possibly
+ * concurrently), resolves function calls and class parents against an index
+ * of all parsed units. A name is looked up in the unit it is used in, then in
+ * the units it includes, so results do not depend on the order files were
+ * analysed in.
+ */
+public class CodeAnalysisLinker {
+
+    private final CodeAnalysisCache cache;
+    private final Map<String, UnitInterface> unitsByName = new HashMap<String, UnitInterface>();
+    private final Map<UnitInterface, Map<String, FunctionInterface>> unitFunctions =
+            new IdentityHashMap<UnitInterface, Map<String, FunctionInterface>>();
+    private final Map<ClassInterface, Boolean> declaredClasses = new IdentityHashMap<ClassInterface, Boolean>();
+
+    /**
+     * ctor
+     * 
+     * @param cache cache of the analysis to link
+     */
+    public CodeAnalysisLinker(CodeAnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Resolves class parents and function calls of the analysis. Resolved calls
+     * are removed from the cache, calls to functions outside of the project
+     * (like 'writeln') are left unresolved.
+     */
+    public void link() {
+        List<UnitInterface> units;
+        synchronized (cache.getUnits()) {
+            units = new ArrayList<UnitInterface>(cache.getUnits());
+        }
+        Collections.sort(units, new Comparator<UnitInterface>() {
+            public int compare(UnitInterface u1, UnitInterface u2) {
+                return u1.toString().compareTo(u2.toString());
+            }
+        });
+        indexUnits(units);
+        resolveParents(units);
+        resolveCalls();
+    }
+
+    private void indexUnits(List<UnitInterface> units) {
+        for (UnitInterface unit : units) {
+            String name = unit.getName().toLowerCase();
+            if (!unitsByName.containsKey(name)) {
+                unitsByName.put(name, unit);
+            }
+            for (ClassInterface clazz : unit.getClasses()) {
+                declaredClasses.put(clazz, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Replaces parents created only from their name by the classes declared in
+     * included units
+     */
+    private void resolveParents(List<UnitInterface> units) {
+        for (UnitInterface unit : units) {
+            for (ClassInterface clazz : unit.getClasses()) {
+                for (ClassInterface parent : clazz.getParents()) {
+                    if (declaredClasses.containsKey(parent)) {
+                        continue;
+                    }
+                    ClassInterface resolved = findClass(parent.getShortName(), unit);
+                    if (resolved != null && resolved != clazz) {
+                        clazz.replaceParent(parent, resolved);
+                    }
+                }
+            }
+        }
+    }
+
+    private ClassInterface findClass(String name, UnitInterface unit) {
+        for (UnitInterface included : getIncludedUnits(unit)) {
+            ClassInterface found = included.findClass(name);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private void resolveCalls() {
+        List<UnresolvedFunctionCall> unresolved = new ArrayList<UnresolvedFunctionCall>();
+        synchronized (cache.getUnresolvedCalls()) {
+            for (UnresolvedFunctionCall call : cache.getUnresolvedCalls()) {
+                FunctionInterface called = findFunction(call.getCalled().getName(), call.getCallerUnit());
+                if (called == null) {
+                    unresolved.add(call);
+                } else {
+                    call.getCaller().addCalledFunction(called);
+                }
+            }
+            cache.getUnresolvedCalls().clear();
+            cache.getUnresolvedCalls().addAll(unresolved);
+        }
+    }
+
+    private FunctionInterface findFunction(String name, UnitInterface unit) {
+        if (unit == null) {
+            return null;
+        }
+        FunctionInterface found = getFunctions(unit).get(name);
+        if (found != null) {
+            return found;
+        }
+        for (UnitInterface included : getIncludedUnits(unit)) {
+            found = getFunctions(included).get(name);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return included units, sorted by name
+     */
+    private List<UnitInterface> getIncludedUnits(UnitInterface unit) {
+        List<String> names = new ArrayList<String>();
+        for (String include : unit.getIncludes()) {
+            names.add(include.toLowerCase());
+        }
+        Collections.sort(names);
+
+        List<UnitInterface> result = new ArrayList<UnitInterface>();
+        for (String name : names) {
+            UnitInterface included = unitsByName.get(name);
+            if (included != null && included != unit) {
+                result.add(included);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return unit global and class functions by lowercase short name, global
+     *         functions first
+     */
+    private Map<String, FunctionInterface> getFunctions(UnitInterface unit) {
+        Map<String, FunctionInterface> functions = unitFunctions.get(unit);
+        if (functions == null) {
+            functions = new HashMap<String, FunctionInterface>();
+            for (FunctionInterface function : unit.getFunctions()) {
+                addFunction(function, functions);
+            }
+            for (ClassInterface clazz : unit.getClasses()) {
+                for (FunctionInterface function : clazz.getFunctions()) {
+                    addFunction(function, functions);
+                }
+            }
+            unitFunctions.put(unit, functions);
+        }
+        return functions;
+    }
+
+    private void addFunction(FunctionInterface function, Map<String, FunctionInterface> functions) {
+        String name = function.getShortName().toLowerCase();
+        if (!functions.containsKey(name)) {
+            functions.put(name, function);
+        }
+    }
+
+}
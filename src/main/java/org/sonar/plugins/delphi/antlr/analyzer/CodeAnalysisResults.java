@@ -42,6 +42,22 @@ public class CodeAnalysisResults extends CodeAnalysisState {
                                                                               // current
                                                                               // file
 
+    /**
+     * ctor, results are cached in a new analysis cache
+     */
+    public CodeAnalysisResults() {
+        super();
+    }
+
+    /**
+     * ctor
+     * 
+     * @param cache cache of the analysis
+     */
+    public CodeAnalysisResults(CodeAnalysisCache cache) {
+        super(cache);
+    }
+
     /**
      * @return class list in current file
      */
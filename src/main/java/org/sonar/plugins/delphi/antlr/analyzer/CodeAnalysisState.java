@@ -46,6 +46,22 @@ public class CodeAnalysisState extends CodeAnalysisCacheResults {
                                                                   // interface
                                                                   // are public
 
+    /**
+     * ctor, state is cached in a new analysis cache
+     */
+    public CodeAnalysisState() {
+        super();
+    }
+
+    /**
+     * ctor
+     * 
+     * @param cache cache of the analysis
+     */
+    public CodeAnalysisState(CodeAnalysisCache cache) {
+        super(cache);
+    }
+
     /**
      * @return unit currently being processed
      */
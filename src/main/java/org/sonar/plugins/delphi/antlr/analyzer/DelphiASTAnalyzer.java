@@ -46,13 +46,25 @@ public class DelphiASTAnalyzer implements ASTAnalyzer {
     private CodeAnalysisResults result;
     private CodeTree code;
     private DelphiProjectHelper delphiProjectHelper;
+    private final CodeAnalysisCache cache;
 
     public DelphiASTAnalyzer(DelphiProjectHelper delphiProjectHelper) {
+        this(delphiProjectHelper, new CodeAnalysisCache());
+    }
+
+    /**
+     * ctor
+     * 
+     * @param delphiProjectHelper project helper
+     * @param cache cache shared by all files of the analysis
+     */
+    public DelphiASTAnalyzer(DelphiProjectHelper delphiProjectHelper, CodeAnalysisCache cache) {
         this.delphiProjectHelper = delphiProjectHelper;
+        this.cache = cache;
     }
 
     public void analyze(ASTTree tree) {
-        result = new CodeAnalysisResults();
+        result = new CodeAnalysisResults(cache);
         code = new CodeTree(new CodeNode<ASTTree>(tree), new CodeNode<Tree>(tree.getChild(0)));
 
         CodeAnalyzer analyzer = new UnitAnalyzer();
@@ -71,6 +83,10 @@ public class DelphiASTAnalyzer implements ASTAnalyzer {
         }
     }
 
+    public void link() {
+        new CodeAnalysisLinker(cache).link();
+    }
+
     public CodeAnalysisResults getResults() {
         return result;
     }
@@ -37,7 +37,6 @@ import org.sonar.plugins.delphi.core.language.FunctionInterface;
 import org.sonar.plugins.delphi.core.language.UnitInterface;
 import org.sonar.plugins.delphi.core.language.impl.DelphiFunction;
 import org.sonar.plugins.delphi.core.language.impl.DelphiUnit;
-import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
 
 /**
  * Class used for function analysis
@@ -189,12 +188,6 @@ public class FunctionAnalyzer extends CodeAnalyzer {
                                                                  // functions
                                                                  // (ALL
                                                                  // functions)
-
-            // check for unresolved function calls
-            UnresolvedFunctionCall unresolved = results.getUnresolvedCalls().get(activeFunction.getShortName());
-            if (unresolved != null && unresolved.resolve(activeFunction, results.getCachedUnits())) {
-                results.getUnresolvedCalls().remove(activeFunction.getShortName());
-            }
         }
         return activeFunction;
     }
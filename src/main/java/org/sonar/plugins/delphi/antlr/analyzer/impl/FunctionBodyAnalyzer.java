@@ -110,20 +110,16 @@ public class FunctionBodyAnalyzer extends CodeAnalyzer {
     }
 
     /**
+     * Records every call site, calls are resolved once all files were analysed.
      * Only functions existing in your project and in include directories are
      * counted, so system functions like 'writeln' are NOT counted.
      */
     private void countCalledFunctions(Tree node, FunctionInterface function, CodeAnalysisResults results) {
         CalledFunctionVerifier verifyer = new CalledFunctionVerifier(results);
-        if (verifyer.verify(node)) {
-            FunctionInterface calledFunction = verifyer.fetchCalledFunction();
-            if (verifyer.isUnresolvedFunctionCall()) {
-                UnresolvedFunctionCall unresolvedCall = new UnresolvedFunctionCall(function, calledFunction,
-                        results.getActiveUnit());
-                results.addUnresolvedCall(calledFunction.getName(), unresolvedCall);
-            } else {
-                function.addCalledFunction(calledFunction);
-            }
+        String calledName = verifyer.getCalledFunctionName(node);
+        if (calledName != null) {
+            results.addUnresolvedCall(new UnresolvedFunctionCall(function, new DelphiFunction(calledName), results
+                    .getActiveUnit()));
         }
 
         for (int i = 0; i < node.getChildCount(); ++i) { // do the same for all
@@ -28,7 +28,6 @@ import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalyzer;
 import org.sonar.plugins.delphi.antlr.analyzer.CodeTree;
 import org.sonar.plugins.delphi.antlr.analyzer.LexerMetrics;
 import org.sonar.plugins.delphi.core.language.ClassInterface;
-import org.sonar.plugins.delphi.core.language.UnitInterface;
 import org.sonar.plugins.delphi.core.language.impl.DelphiClass;
 
 /**
@@ -47,11 +46,9 @@ public class TypeInheritanceAnalyzer extends CodeAnalyzer {
             CommonTree parentNode = (CommonTree) codeTree.getCurrentCodeNode().getNode().getChild(i);
             String parentName = parentNode.getText().toLowerCase();
             ClassInterface parentClass = checkParentInFile(parentName, results);
-            if (parentClass == null) {
-                parentClass = checkParentInUnits(parentName, results);
-            }
-
-            if (parentClass == null) { // not found, create a new one
+            if (parentClass == null) { // not found, create a new one, resolved
+                                       // against other units once all files
+                                       // were analysed
                 parentClass = new DelphiClass(parentName);
             }
 
@@ -65,24 +62,6 @@ public class TypeInheritanceAnalyzer extends CodeAnalyzer {
         return codeTree.getCurrentCodeNode().getNode().getType() == LexerMetrics.CLASS_PARENTS.toMetrics();
     }
 
-    /**
-     * check if parent is in one of the parsed units
-     */
-    private ClassInterface checkParentInUnits(String parentName, CodeAnalysisResults results) {
-        for (UnitInterface unit : results.getCachedUnits()) {
-            if (!results.getActiveUnit().isIncluding(unit)) {
-                continue; // if not in this unit, continue
-            }
-            ClassInterface found = unit.findClass(parentName); // check for
-                                                               // class in a
-                                                               // unit
-            if (found != null) {
-                return found;
-            }
-        }
-        return null;
-    }
-
     /**
      * check if parent is in one of classes in current file
      */
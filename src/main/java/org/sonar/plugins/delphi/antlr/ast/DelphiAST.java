@@ -24,6 +24,9 @@ package org.sonar.plugins.delphi.antlr.ast;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -39,13 +42,17 @@ import javax.xml.transform.stream.StreamResult;
 import lombok.SneakyThrows;
 
 import org.antlr.runtime.RecognitionException;
-import org.antlr.runtime.TokenRewriteStream;
+import org.antlr.runtime.Token;
 import org.antlr.runtime.tree.CommonTree;
 import org.antlr.runtime.tree.Tree;
-import org.sonar.plugins.delphi.antlr.DelphiLexer;
 import org.sonar.plugins.delphi.antlr.DelphiParser;
-import org.sonar.plugins.delphi.antlr.ast.exceptions.NodeNameForCodeDoesNotExistException;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
+import org.sonar.plugins.delphi.antlr.DelphiTokenStream;
+import org.sonar.plugins.delphi.antlr.ParserStatistics;
 import org.sonar.plugins.delphi.antlr.sanitizer.DelphiSourceSanitizer;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.antlr.sanitizer.SourceMap;
+import org.sonar.plugins.delphi.antlr.sanitizer.SourceScan;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
@@ -59,24 +66,102 @@ public class DelphiAST extends CommonTree implements ASTTree {
     private String fileName = null;
     private boolean isError = false;
     private DelphiSourceSanitizer fileStream = null;
-    private String[] codeLines = null;
+    private String[] codeLines = null; // preprocessed lines, by original
+                                       // line
+    private DelphiTokenBuffer tokenBuffer = null;
+    private DelphiTreeBuffer treeBuffer = null;
+
+    /**
+     * Constructor, no include directories and no definitions are used to
+     * preprocess the file.
+     * 
+     * @param file File from which to read data for AST tree
+     * @throws RecognitionException At parsing exception
+     * @throws IOException When no file found
+     */
+    public DelphiAST(File file) {
+        this(file, new PreprocessorContext());
+    }
 
     /**
      * Constructor.
      * 
-     * @param inputStream Input from which to read data for AST tree
+     * @param file File from which to read data for AST tree
+     * @param context Preprocessor context (include directories and
+     *            definitions)
      * @throws RecognitionException At parsing exception
      * @throws IOException When no file found
      */
     @SneakyThrows
-    public DelphiAST(File file) {
-        fileStream = new DelphiSourceSanitizer(file.getAbsolutePath());
-        DelphiParser parser = new DelphiParser(new TokenRewriteStream(new DelphiLexer(fileStream)));
-        parser.setTreeAdaptor(new DelphiTreeAdaptor(this));
-        children = ((CommonTree) parser.file().getTree()).getChildren();
+    public DelphiAST(File file, PreprocessorContext context) {
+        parse(file, new DelphiSourceSanitizer(file.getAbsolutePath(), context), null);
+    }
+
+    /**
+     * Constructor of a file already read and scanned for compiler directives,
+     * used to parse a file with several preprocessor contexts.
+     * 
+     * @param file File of the scan
+     * @param context Preprocessor context (include directories and
+     *            definitions)
+     * @param scan File content and directives
+     */
+    public DelphiAST(File file, PreprocessorContext context, SourceScan scan) {
+        this(file, context, scan, null);
+    }
+
+    /**
+     * Constructor of a file already read and scanned for compiler directives,
+     * counting the parser memoization.
+     * 
+     * @param file File of the scan
+     * @param context Preprocessor context (include directories and
+     *            definitions)
+     * @param scan File content and directives
+     * @param statistics Statistics the parser memoization counters are added
+     *            to, may be null
+     */
+    public DelphiAST(File file, PreprocessorContext context, SourceScan scan, ParserStatistics statistics) {
+        parse(file, new DelphiSourceSanitizer(scan, context), statistics);
+    }
+
+    @SneakyThrows
+    private void parse(File file, DelphiSourceSanitizer stream, ParserStatistics statistics) {
+        fileStream = stream;
+        tokenBuffer = new DelphiTokenBuffer(fileStream);
+        DelphiParser parser = new DelphiParser(new DelphiTokenStream(tokenBuffer));
+        parser.setTreeAdaptor(new DelphiTreeAdaptor(this, parser));
+        // nodes built by the parser are copied to arrays and dropped
+        treeBuffer = new DelphiTreeBuffer((CommonTree) parser.file().getTree(), tokenBuffer, this);
+        children = treeBuffer.getChildren(0);
         fileName = file.getAbsolutePath();
         isError = parser.getNumberOfSyntaxErrors() != 0;
-        codeLines = fileStream.toString().split("\n");
+        if (statistics != null) {
+            statistics.add(parser.getStatistics());
+        }
+        codeLines = alignLines(fileStream.toString().split("\n"), fileStream.getSourceMap());
+    }
+
+    /**
+     * Places every preprocessed line at its original line, lines of cut code
+     * are empty
+     */
+    private static String[] alignLines(String[] lines, SourceMap sourceMap) {
+        if (lines.length == 0) {
+            return lines;
+        }
+        int[] originalLines = new int[lines.length];
+        int offset = 0;
+        for (int i = 0; i < lines.length; ++i) {
+            originalLines[i] = sourceMap.getOriginalLine(offset, i + 1);
+            offset += lines[i].length() + 1;
+        }
+        String[] aligned = new String[originalLines[lines.length - 1]];
+        Arrays.fill(aligned, "");
+        for (int i = 0; i < lines.length; ++i) {
+            aligned[originalLines[i] - 1] = lines[i];
+        }
+        return aligned;
     }
 
     /**
@@ -193,14 +278,7 @@ public class DelphiAST extends CommonTree implements ASTTree {
      * @return Fixed string
      */
     private String processNodeName(Tree node) {
-        String code = node.getText();
-        try {
-            NodeName nodeName = NodeName.findByCode(code);
-            return nodeName.getName();
-        } catch (NodeNameForCodeDoesNotExistException e) {
-
-        }
-        return code;
+        return NodeName.getNameForCode(node.getText());
     }
 
     /**
@@ -211,6 +289,44 @@ public class DelphiAST extends CommonTree implements ASTTree {
         return fileStream.toString();
     }
 
+    /**
+     * @return Absolute paths of files included by the parsed file, directly
+     *         or by other included files
+     */
+    public List<String> getIncludedFiles() {
+        if (fileStream == null) {
+            return new ArrayList<String>();
+        }
+        return fileStream.getIncludedFiles();
+    }
+
+    /**
+     * Gets all tokens produced by the lexer, including hidden channel tokens
+     * and the EOF token
+     * 
+     * @return List of tokens
+     */
+    public List<Token> getTokens() {
+        return tokenBuffer == null ? null : tokenBuffer.getTokens();
+    }
+
+    /**
+     * Gets all tokens produced by the lexer, including hidden channel tokens
+     * and the EOF token, without creating token objects
+     * 
+     * @return Token buffer
+     */
+    public DelphiTokenBuffer getTokenBuffer() {
+        return tokenBuffer;
+    }
+
+    /**
+     * @return Nodes of the parsed file, null if the tree was not parsed
+     */
+    DelphiTreeBuffer getTreeBuffer() {
+        return treeBuffer;
+    }
+
     public String getFileSourceLine(int lineNr) {
         if (lineNr < 1) {
             throw new IllegalArgumentException(toString() + " Source code line cannot be less than 1");
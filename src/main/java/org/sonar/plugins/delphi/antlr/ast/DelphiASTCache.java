@@ -0,0 +1,439 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.ast;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.BatchExtension;
+import org.sonar.plugins.delphi.antlr.ParserStatistics;
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirective;
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirectiveType;
+import org.sonar.plugins.delphi.antlr.sanitizer.IncludeFileCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.antlr.sanitizer.SourceScan;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Project scoped store of parsed files. Every file is preprocessed, lexed and
+ * parsed once per analysis, and the resulting {@link DelphiAST} (with its
+ * sanitized source and token stream) is shared by the DelphiSensor, the PMD
+ * sensor and the CPD tokenizer.
+ * 
+ * Entries are keyed by file and preprocessor context (definitions and include
+ * directories), so a file parsed with another preprocessor configuration is
+ * parsed again. The store keeps at most {@link #getMaxSize()} entries (least
+ * recently used are evicted first) and holds them through soft references, so
+ * the garbage collector may reclaim them when memory runs low.
+ * 
+ * Files having the same content key (see
+ * {@link #getContentKey(File, List)}) are parsed and analysed the same way,
+ * so sensors analyse only one of them and report its results for all. The
+ * digest of a file is computed from the content read for its parsing, a file
+ * read for its content key first is kept (softly) until it is parsed, so every
+ * file is read once.
+ */
+public class DelphiASTCache implements BatchExtension {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    private static final int MEMO_RULES_LOGGED = 10;
+
+    private final int maxSize;
+    private final Map<Key, SoftReference<DelphiAST>> entries;
+    private final Map<String, PreprocessorContext> fileContexts = new HashMap<String, PreprocessorContext>();
+    private final IncludeFileCache includeCache;
+    private final Map<String, String> contentDigests = new ConcurrentHashMap<String, String>();
+    // files read for their content key, not parsed yet
+    private final Map<String, SoftReference<SourceScan>> pendingScans = new ConcurrentHashMap<String, SoftReference<SourceScan>>();
+    private final ParserStatistics parserStatistics = new ParserStatistics();
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * ctor used by Sonar
+     * 
+     * @param delphiProjectHelper project helper, provides the cache size
+     */
+    public DelphiASTCache(DelphiProjectHelper delphiProjectHelper) {
+        this(delphiProjectHelper.getParseCacheSize(), delphiProjectHelper.getEncoding());
+    }
+
+    /**
+     * ctor
+     * 
+     * @param maxSize maximum number of cached files, default size is used if
+     *            not positive
+     */
+    public DelphiASTCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * ctor
+     * 
+     * @param maxSize maximum number of cached files, default size is used if
+     *            not positive
+     * @param encoding source encoding, null for the platform default
+     */
+    public DelphiASTCache(int maxSize, String encoding) {
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        this.includeCache = new IncludeFileCache(encoding);
+        this.entries = new LinkedHashMap<Key, SoftReference<DelphiAST>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<DelphiAST>> eldest) {
+                return size() > DelphiASTCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the AST of a file parsed with the preprocessor context it was last
+     * parsed with, or with an empty context if it was never parsed
+     * 
+     * @param file file to parse
+     * @return AST tree of a file
+     */
+    public DelphiAST getAST(File file) {
+        PreprocessorContext context;
+        synchronized (entries) {
+            context = fileContexts.get(file.getAbsolutePath());
+        }
+        return getAST(file, context == null ? new PreprocessorContext() : context);
+    }
+
+    /**
+     * Gets the AST of a file parsed with given preprocessor context (include
+     * directories and definitions), parses the file if it was not cached or
+     * was evicted. Can be called concurrently.
+     * 
+     * @param file file to parse
+     * @param context preprocessor context
+     * @return AST tree of a file
+     */
+    public DelphiAST getAST(File file, PreprocessorContext context) {
+        Key key = new Key(file, context);
+        DelphiAST ast = lookup(key);
+        if (ast == null) {
+            SourceScan scan = scan(file, context.getEncoding());
+            ast = store(key, scan == null ? new DelphiAST(file, context) : new DelphiAST(file, context, scan,
+                    parserStatistics));
+        }
+        return ast;
+    }
+
+    /**
+     * Gets the ASTs of a file parsed with several preprocessor contexts
+     * (build configurations). The file is read and scanned for compiler
+     * directives once, then preprocessed and parsed for every context which
+     * was not cached. The first context is kept as the context of the file
+     * for {@link #getAST(File)}. Can be called concurrently.
+     * 
+     * @param file file to parse
+     * @param contexts preprocessor contexts
+     * @return AST trees of the file, in order of contexts
+     */
+    public List<DelphiAST> getASTs(File file, List<PreprocessorContext> contexts) {
+        List<DelphiAST> result = new ArrayList<DelphiAST>();
+        SourceScan scan = null;
+        for (PreprocessorContext context : contexts) {
+            Key key = new Key(file, context);
+            DelphiAST ast = lookup(key);
+            if (ast == null) {
+                if (scan == null) {
+                    scan = scan(file, context.getEncoding());
+                }
+                ast = store(key, scan == null ? new DelphiAST(file, context) : new DelphiAST(file, context, scan,
+                        parserStatistics));
+            }
+            result.add(ast);
+        }
+        if (!contexts.isEmpty()) {
+            synchronized (entries) {
+                fileContexts.put(file.getAbsolutePath(), contexts.get(0)); // primary configuration
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a file to parse, the file read for its content key if any
+     */
+    private SourceScan scan(File file, String encoding) {
+        String path = file.getAbsolutePath();
+        if (!StringUtils.equals(encoding, includeCache.getEncoding())) {
+            return read(file, encoding); // not the content the digest is made of
+        }
+        SoftReference<SourceScan> pending = pendingScans.remove(path);
+        SourceScan scan = pending == null ? null : pending.get();
+        if (scan == null) {
+            scan = read(file, encoding);
+            if (scan != null && !contentDigests.containsKey(path)) {
+                contentDigests.put(path, digest(file, scan));
+            }
+        }
+        return scan;
+    }
+
+    private SourceScan read(File file, String encoding) {
+        try {
+            return SourceScan.read(file.getAbsolutePath(), encoding);
+        } catch (IOException e) {
+            return null; // reported by the AST parsing
+        }
+    }
+
+    private DelphiAST lookup(Key key) {
+        synchronized (entries) {
+            PreprocessorContext previous = fileContexts.get(key.path);
+            if (previous == null || !previous.equals(key.context)) {
+                fileContexts.put(key.path, key.context);
+            }
+            SoftReference<DelphiAST> reference = entries.get(key);
+            DelphiAST ast = reference == null ? null : reference.get();
+            if (ast != null) {
+                ++hits;
+                return ast;
+            }
+            ++misses;
+            return null;
+        }
+    }
+
+    private DelphiAST store(Key key, DelphiAST ast) {
+        synchronized (entries) {
+            entries.put(key, new SoftReference<DelphiAST>(ast));
+        }
+        return ast;
+    }
+
+    /**
+     * Gets the content key of a file analysed with given preprocessor
+     * contexts. Files with the same key have the same content, extension and
+     * contexts, and include files from the same directory if they include
+     * any, so their analysis results are the same. The content digest of a
+     * file is computed once per analysis, from the content read to parse it if
+     * it was already parsed. Can be called concurrently.
+     * 
+     * @param file file to analyse
+     * @param contexts preprocessor contexts the file is analysed with
+     * @return content key, null if the file could not be read
+     */
+    public String getContentKey(File file, List<PreprocessorContext> contexts) {
+        String path = file.getAbsolutePath();
+        String digest = contentDigests.get(path);
+        if (digest == null) {
+            SourceScan scan = read(file, includeCache.getEncoding());
+            if (scan != null) {
+                pendingScans.put(path, new SoftReference<SourceScan>(scan));
+            }
+            digest = digest(file, scan);
+            contentDigests.put(path, digest);
+        }
+        if (digest.isEmpty()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(digest);
+        key.append('/').append(FilenameUtils.getExtension(path).toLowerCase());
+        for (PreprocessorContext context : contexts) {
+            key.append('/').append(context.getDigest());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Digest of the file content, followed by the file directory if the file
+     * includes other files (they are resolved relative to it)
+     */
+    private static String digest(File file, SourceScan scan) {
+        if (scan == null) {
+            return "";
+        }
+        String digest = DelphiUtils.sha1(scan.getText());
+        for (CompilerDirective directive : scan.getDirectives()) {
+            if (directive.getType() == CompilerDirectiveType.INCLUDE) {
+                return digest + ':' + file.getAbsoluteFile().getParent();
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Checks if a file was included by another parsed file
+     * 
+     * @param fileName file absolute path
+     * @return true if so, false otherwise
+     */
+    public boolean isIncludedFile(String fileName) {
+        synchronized (entries) {
+            for (PreprocessorContext context : new HashSet<PreprocessorContext>(fileContexts.values())) {
+                if (context.getIncludedFiles().contains(fileName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all entries of a file, regardless of the preprocessor
+     * configuration
+     * 
+     * @param file file to evict
+     */
+    public void evict(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (entries) {
+            for (Key key : new ArrayList<Key>(entries.keySet())) {
+                if (key.path.equals(path)) {
+                    entries.remove(key);
+                }
+            }
+            contentDigests.remove(path);
+            pendingScans.remove(path);
+        }
+    }
+
+    /**
+     * Logs (at debug level) the counters of the parse cache, of the include
+     * file cache and of the parser memoization, since the cache was created
+     * or cleared. Called by the sensors when they are done.
+     */
+    public void logStatistics() {
+        synchronized (entries) {
+            DelphiUtils.LOG.debug("Parse cache: " + hits + " hits, " + misses + " misses");
+            DelphiUtils.LOG.debug("Include cache: " + includeCache.getHits() + " hits, " + includeCache.getMisses()
+                    + " misses");
+            DelphiUtils.LOG.debug("Parser memoization: " + parserStatistics);
+            for (String rule : parserStatistics.describeRules(MEMO_RULES_LOGGED)) {
+                DelphiUtils.LOG.debug("  " + rule);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        synchronized (entries) {
+            logStatistics();
+            entries.clear();
+            fileContexts.clear();
+            contentDigests.clear();
+            pendingScans.clear();
+            includeCache.clear();
+        }
+    }
+
+    /**
+     * @return Cache of include files, to be shared by the preprocessor
+     *         contexts of the analysis
+     */
+    public IncludeFileCache getIncludeCache() {
+        return includeCache;
+    }
+
+    /**
+     * @return memoization counters of the parser, for all files parsed by the
+     *         cache
+     */
+    public ParserStatistics getParserStatistics() {
+        return parserStatistics;
+    }
+
+    /**
+     * @return number of cached files
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return maximum number of cached files
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of requests served from cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of requests that required parsing
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Cache key: file and preprocessor context (definitions and include
+     * directories)
+     */
+    private static final class Key {
+
+        private final String path;
+        private final PreprocessorContext context;
+
+        Key(File file, PreprocessorContext context) {
+            this.path = file.getAbsolutePath();
+            this.context = context;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + context.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return path.equals(other.path) && context.equals(other.context);
+        }
+    }
+
+}
@@ -22,6 +22,7 @@
  */
 package org.sonar.plugins.delphi.antlr.ast;
 
+import org.antlr.runtime.BaseRecognizer;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
 import org.antlr.runtime.tree.CommonTreeAdaptor;
@@ -32,6 +33,8 @@ import org.antlr.runtime.tree.CommonTreeAdaptor;
 class DelphiTreeAdaptor extends CommonTreeAdaptor {
 
     private ASTTree astTree;
+    private BaseRecognizer parser;
+    private Object speculationRoot;
     private int lastLine = 0;
 
     /**
@@ -40,7 +43,34 @@ class DelphiTreeAdaptor extends CommonTreeAdaptor {
      * @param tree Tree
      */
     public DelphiTreeAdaptor(ASTTree tree) {
+        this(tree, null);
+    }
+
+    /**
+     * Adaptor ctor
+     * 
+     * @param tree Tree
+     * @param parser Parser using the adaptor, null if unknown
+     */
+    public DelphiTreeAdaptor(ASTTree tree, BaseRecognizer parser) {
         astTree = tree;
+        this.parser = parser;
+    }
+
+    /**
+     * While the parser speculates (backtracks), rules still create their root
+     * node but never add children to it, so a single node is shared by all of
+     * them.
+     */
+    @Override
+    public Object nil() {
+        if (parser != null && parser.getBacktrackingLevel() > 0) {
+            if (speculationRoot == null) {
+                speculationRoot = super.nil();
+            }
+            return speculationRoot;
+        }
+        return super.nil();
     }
 
     @Override
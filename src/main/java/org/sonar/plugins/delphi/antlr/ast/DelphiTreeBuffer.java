@@ -0,0 +1,501 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.ast;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
+
+/**
+ * Nodes of a parsed file stored in parallel arrays (type, token, parent and
+ * first child) instead of a tree object per node. Nodes are numbered level by
+ * level from the root, so the children of a node are consecutive: the
+ * children of node i are the nodes from firstChild[i] to firstChild[i + 1] -
+ * 1, the next sibling of a node is the node that follows it in the range of
+ * its parent. Tokens are referenced by their index in the token buffer of the
+ * file, only the tokens created by the parser (imaginary tokens) are kept as
+ * objects.
+ * 
+ * Node objects are read only views of a node, created when they are asked
+ * for. There is one view per node as long as a view is used (XPath compares
+ * nodes by identity), views are dropped by the garbage collector once none of
+ * them is used. Node 0 is the root returned by the parser.
+ */
+final class DelphiTreeBuffer {
+
+    static final String READ_ONLY = "Parsed tree nodes are read only";
+
+    private final ASTTree tree;
+    private final DelphiTokenBuffer tokens;
+    private final int size;
+    private final int[] types;
+    private final int[] tokenIndexes; // index in the token buffer, or ~index
+                                      // in the created tokens
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final String[] identifiers; // interned texts read so far
+    private final Token[] createdTokens;
+    private volatile WeakReference<DelphiPMDNode[]> views = new WeakReference<DelphiPMDNode[]>(null);
+
+    /**
+     * Copies a parsed tree
+     * 
+     * @param root root of the tree built by the parser
+     * @param tokens tokens the parser read, may be null
+     * @param tree AST tree of the nodes
+     */
+    DelphiTreeBuffer(CommonTree root, DelphiTokenBuffer tokens, ASTTree tree) {
+        this.tree = tree;
+        this.tokens = tokens;
+        List<CommonTree> nodes = new ArrayList<CommonTree>();
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); ++i) {
+            CommonTree node = nodes.get(i);
+            for (int c = 0; c < node.getChildCount(); ++c) {
+                nodes.add((CommonTree) node.getChild(c));
+            }
+        }
+        size = nodes.size();
+        types = new int[size];
+        tokenIndexes = new int[size];
+        parents = new int[size];
+        firstChildren = new int[size + 1];
+        identifiers = new String[size];
+        List<Token> created = new ArrayList<Token>();
+        parents[0] = -1;
+        int next = 1;
+        for (int i = 0; i < size; ++i) {
+            CommonTree node = nodes.get(i);
+            firstChildren[i] = next;
+            for (int c = 0; c < node.getChildCount(); ++c) {
+                parents[next++] = i;
+            }
+            types[i] = node.getType();
+            Token token = node.getToken();
+            if (token == null && !node.isNil()) {
+                // error node, its text is the input the parser skipped
+                token = new CommonToken(node.getType(), node.getText());
+            }
+            int index = tokens == null || token == null ? -1 : tokens.indexOf(token);
+            if (index < 0) {
+                index = ~created.size();
+                created.add(token);
+            }
+            tokenIndexes[i] = index;
+        }
+        firstChildren[size] = next;
+        createdTokens = created.toArray(new Token[created.size()]);
+    }
+
+    /**
+     * @return number of nodes, including the root
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index node index
+     * @return view of the node, the same object while views of the tree are
+     *         used
+     */
+    DelphiPMDNode getNode(int index) {
+        DelphiPMDNode[] nodes = views.get();
+        if (nodes == null) {
+            synchronized (this) {
+                nodes = views.get();
+                if (nodes == null) {
+                    nodes = new DelphiPMDNode[size];
+                    views = new WeakReference<DelphiPMDNode[]>(nodes);
+                }
+            }
+        }
+        DelphiPMDNode node = nodes[index];
+        if (node == null) {
+            synchronized (nodes) {
+                node = nodes[index];
+                if (node == null) {
+                    node = new BufferedNode(this, nodes, index);
+                    nodes[index] = node;
+                }
+            }
+        }
+        return node;
+    }
+
+    int getType(int index) {
+        return types[index];
+    }
+
+    Token getToken(int index) {
+        int token = tokenIndexes[index];
+        return token < 0 ? createdTokens[~token] : tokens.getToken(token);
+    }
+
+    int getTokenIndex(int index) {
+        int token = tokenIndexes[index];
+        if (token >= 0) {
+            return token;
+        }
+        return createdTokens[~token] == null ? -1 : createdTokens[~token].getTokenIndex();
+    }
+
+    boolean isNil(int index) {
+        int token = tokenIndexes[index];
+        return token < 0 && createdTokens[~token] == null;
+    }
+
+    String getText(int index) {
+        int token = tokenIndexes[index];
+        if (token < 0) {
+            return createdTokens[~token] == null ? null : createdTokens[~token].getText();
+        }
+        String text = identifiers[index];
+        if (text == null) {
+            text = tokens.getText(token);
+            if (types[index] == DelphiLexer.TkIdentifier) {
+                identifiers[index] = text;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Line of the node token, or of the first child if the node has no line,
+     * as in CommonTree
+     */
+    int getLine(int index) {
+        int node = index;
+        while (true) {
+            int token = tokenIndexes[node];
+            int line;
+            if (token >= 0) {
+                line = tokens.getLine(token);
+            } else {
+                line = createdTokens[~token] == null ? 0 : createdTokens[~token].getLine();
+            }
+            if (line != 0) {
+                return line;
+            }
+            if (getChildCount(node) == 0) {
+                return 0;
+            }
+            node = firstChildren[node];
+        }
+    }
+
+    /**
+     * Column of the node token, or of the first child if the node has no
+     * column, as in CommonTree
+     */
+    int getColumn(int index) {
+        int node = index;
+        while (true) {
+            int token = tokenIndexes[node];
+            int column;
+            if (token >= 0) {
+                column = tokens.getColumn(token);
+            } else {
+                column = createdTokens[~token] == null ? -1 : createdTokens[~token].getCharPositionInLine();
+            }
+            if (column != -1) {
+                return column;
+            }
+            if (getChildCount(node) == 0) {
+                return 0;
+            }
+            node = firstChildren[node];
+        }
+    }
+
+    int getChildCount(int index) {
+        return firstChildren[index + 1] - firstChildren[index];
+    }
+
+    /**
+     * @return index of the child, -1 if there is no such child
+     * @throws IndexOutOfBoundsException if i is negative and the node has
+     *             children, like BaseTree
+     */
+    int getChild(int index, int i) {
+        int count = getChildCount(index);
+        if (count == 0 || i >= count) {
+            return -1;
+        }
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("Child index " + i);
+        }
+        return firstChildren[index] + i;
+    }
+
+    int getParent(int index) {
+        return parents[index];
+    }
+
+    int getChildIndex(int index) {
+        int parent = parents[index];
+        return parent < 0 ? -1 : index - firstChildren[parent];
+    }
+
+    /**
+     * @return read only list of the children, views are created when they are
+     *         read, null if the node has no children (as BaseTree)
+     */
+    List<Tree> getChildren(final int index) {
+        final int count = getChildCount(index);
+        if (count == 0) {
+            return null;
+        }
+        return new AbstractList<Tree>() {
+
+            @Override
+            public Tree get(int i) {
+                if (i < 0 || i >= count) {
+                    throw new IndexOutOfBoundsException("Child index " + i + " of " + count);
+                }
+                return getNode(firstChildren[index] + i);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Read only view of a node of the buffer. CommonTree fields of the view
+     * are not used, every method reads the arrays of the buffer.
+     */
+    private static final class BufferedNode extends DelphiPMDNode {
+
+        private final DelphiTreeBuffer buffer;
+        @SuppressWarnings("unused")
+        private final DelphiPMDNode[] views; // kept while the view is used
+        private final int index;
+
+        BufferedNode(DelphiTreeBuffer buffer, DelphiPMDNode[] views, int index) {
+            super(null, buffer.tree);
+            this.buffer = buffer;
+            this.views = views;
+            this.index = index;
+        }
+
+        private Tree view(int node) {
+            return node < 0 ? null : buffer.getNode(node);
+        }
+
+        @Override
+        public Token getToken() {
+            return buffer.getToken(index);
+        }
+
+        @Override
+        public int getType() {
+            return buffer.getType(index);
+        }
+
+        @Override
+        public String getText() {
+            return buffer.getText(index);
+        }
+
+        @Override
+        public boolean isNil() {
+            return buffer.isNil(index);
+        }
+
+        @Override
+        public int getLine() {
+            return buffer.getLine(index);
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return buffer.getColumn(index);
+        }
+
+        @Override
+        public int getTokenStartIndex() {
+            return buffer.getTokenIndex(index);
+        }
+
+        @Override
+        public int getTokenStopIndex() {
+            return buffer.getTokenIndex(index);
+        }
+
+        @Override
+        public int getChildCount() {
+            return buffer.getChildCount(index);
+        }
+
+        @Override
+        public Tree getChild(int i) {
+            return view(buffer.getChild(index, i));
+        }
+
+        @Override
+        public int getChildType(int i) {
+            if (i > -1 && i < buffer.getChildCount(index)) {
+                return buffer.getType(buffer.getChild(index, i));
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public List getChildren() {
+            return buffer.getChildren(index);
+        }
+
+        @Override
+        public Tree getFirstChildWithType(int type) {
+            for (int i = 0; i < buffer.getChildCount(index); ++i) {
+                int child = buffer.getChild(index, i);
+                if (buffer.getType(child) == type) {
+                    return buffer.getNode(child);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Tree getParent() {
+            return view(buffer.getParent(index));
+        }
+
+        @Override
+        public int getChildIndex() {
+            return buffer.getChildIndex(index);
+        }
+
+        @Override
+        public Tree dupNode() {
+            return new DelphiPMDNode(getToken(), getASTTree());
+        }
+
+        @Override
+        public String toString() {
+            if (isNil()) {
+                return "nil";
+            }
+            if (getType() == Token.INVALID_TOKEN_TYPE) {
+                return "<errornode>";
+            }
+            return getText();
+        }
+
+        @Override
+        public String toStringTree() {
+            int count = getChildCount();
+            if (count == 0) {
+                return toString();
+            }
+            StringBuilder builder = new StringBuilder();
+            if (!isNil()) {
+                builder.append('(').append(toString()).append(' ');
+            }
+            for (int i = 0; i < count; ++i) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(getChild(i).toStringTree());
+            }
+            if (!isNil()) {
+                builder.append(')');
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public void addChild(Tree t) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void addChildren(List kids) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setChild(int i, Tree t) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public Object deleteChild(int i) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void replaceChildren(int startChildIndex, int stopChildIndex, Object t) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setParent(Tree t) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setChildIndex(int childIndex) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void freshenParentAndChildIndexes() {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void freshenParentAndChildIndexes(int offset) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setTokenStartIndex(int tokenIndex) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setTokenStopIndex(int tokenIndex) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void setUnknownTokenBoundaries() {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+    }
+
+}
@@ -41,6 +41,24 @@ public enum NodeName {
         return code.matches(codeRegExpression);
     }
 
+    /**
+     * Gets the name of a node with given code, used as xml element name. Codes
+     * starting with a letter are names themselves.
+     * 
+     * @param code node code
+     * @return node name
+     */
+    public static String getNameForCode(String code) {
+        if (code.length() > 0 && Character.isLetter(code.charAt(0))) {
+            return code;
+        }
+        try {
+            return findByCode(code).getName();
+        } catch (NodeNameForCodeDoesNotExistException e) {
+            return code;
+        }
+    }
+
     static NodeName findByCode(String code) {
         for (NodeName nodeName : NodeName.values()) {
             if (nodeName.matchesCode(code)) {
@@ -55,18 +55,16 @@ public class CompilerDirectiveFactory {
      */
     public List<CompilerDirective> produce(String data) throws CompilerDirectiveFactorySyntaxException {
         List<CompilerDirective> result = new ArrayList<CompilerDirective>();
-        int directivePos = getDirectiveFirstChar(data, 0);
+        int directivePos = data.indexOf("{$");
         while (directivePos > -1) {
             int closingBracket = getDirectiveLastChar(data, directivePos);
-
-            try {
-                CompilerDirective directive = create(data, directivePos, closingBracket);
+            CompilerDirective directive = createAt(data, directivePos, closingBracket);
+            if (directive != null) {
                 result.add(directive);
-            } catch (CompilerDirectiveFactoryUnsupportedDirectiveException e) {
-                DelphiUtils.LOG.debug(e.getMessage());
+            } else {
+                DelphiUtils.LOG.debug("Not implemented directive: " + data.substring(directivePos, closingBracket + 1));
             }
-
-            directivePos = getDirectiveFirstChar(data, directivePos + 1);
+            directivePos = data.indexOf("{$", directivePos + 1);
         }
         return result;
     }
@@ -84,71 +82,74 @@ public class CompilerDirectiveFactory {
      */
     public CompilerDirective create(String data, int startPosition, int endPosition)
             throws CompilerDirectiveFactoryUnsupportedDirectiveException, CompilerDirectiveFactorySyntaxException {
-        int directiveFirstChar = getDirectiveFirstChar(data, startPosition);
-        int directiveLastChar = getDirectiveLastChar(data, startPosition);
-        String directiveName = getName(data, directiveFirstChar);
-        String directiveItem = getItem(data, directiveFirstChar);
+        int directiveFirstChar = data.indexOf("{$", startPosition);
+        if (directiveFirstChar == -1) {
+            throw new CompilerDirectiveFactorySyntaxException("No compiler directive from: " + startPosition);
+        }
+        int directiveLastChar = getDirectiveLastChar(data, directiveFirstChar);
+        CompilerDirective directive = createAt(data, directiveFirstChar, directiveLastChar);
+        if (directive == null) {
+            throw new CompilerDirectiveFactoryUnsupportedDirectiveException("Not implemented directive name: "
+                    + getName(data, directiveFirstChar, directiveLastChar));
+        }
+        return directive;
+    }
+
+    /**
+     * Creates a compiler directive from its known bounds. The name and the
+     * item are read in a single pass over the directive, the rest of the data
+     * is not scanned.
+     * 
+     * @param data String including the compiler directive
+     * @param first Position of the directive opening '{$'
+     * @param last Position of the directive closing '}'
+     * @return concrete compiler directive class, null if the directive is not
+     *         supported
+     */
+    public CompilerDirective createAt(CharSequence data, int first, int last) {
+        int space = first + 2;
+        while (space < last && data.charAt(space) != ' ') {
+            ++space;
+        }
+        String directiveName = getName(data, first, space);
+        String directiveItem = space < last ? data.subSequence(space + 1, last).toString().trim() : "";
         CompilerDirectiveType type = CompilerDirectiveType.getTypeByName(directiveName.toLowerCase());
 
         switch (type) {
         case DEFINE:
-            return new DefineDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new DefineDirective(directiveItem, first, last);
         case UNDEFINE:
-            return new UndefineDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new UndefineDirective(directiveItem, first, last);
         case IF:
-            return new IfDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new IfDirective(directiveItem, first, last);
         case IFDEF:
-            return new IfDefDirective(directiveName, directiveItem, directiveFirstChar, directiveLastChar);
+            return new IfDefDirective(directiveName, directiveItem, first, last);
         case IFEND:
-            return new IfEndDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new IfEndDirective(directiveItem, first, last);
         case ENDIF:
-            return new EndIfDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new EndIfDirective(directiveItem, first, last);
         case ELSE:
-            return new ElseDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new ElseDirective(directiveItem, first, last);
         case INCLUDE:
-            return new IncludeDirective(directiveItem, directiveFirstChar, directiveLastChar);
+            return new IncludeDirective(directiveItem, first, last);
         case UNUSED:
-            return new UnusedDirective(directiveFirstChar, directiveLastChar);
+            return new UnusedDirective(first, last);
         default:
-            throw new CompilerDirectiveFactoryUnsupportedDirectiveException("Not implemented directive name: "
-                    + directiveName);
+            return null;
         }
     }
 
-    private int getDirectiveFirstChar(String data, int startPosition) throws CompilerDirectiveFactorySyntaxException {
-        return data.indexOf("{$", startPosition);
-    }
-
     private int getDirectiveLastChar(String data, int startPosition) throws CompilerDirectiveFactorySyntaxException {
-        int pos = data.indexOf("}", startPosition + 1);
+        int pos = data.indexOf('}', startPosition + 1);
         if (pos == -1) {
             throw new CompilerDirectiveFactorySyntaxException("No closing bracket for compiler directive from: "
-                    + startPosition + " in: " + data);
+                    + startPosition);
         }
         return pos;
     }
 
-    private String getItem(String data, int startPos) throws CompilerDirectiveFactorySyntaxException {
-        int pos = data.indexOf(' ', startPos + 1);
-        int endPos = getDirectiveLastChar(data, startPos);
-        if (pos > -1 && pos < endPos) {
-            return data.substring(pos + 1, data.indexOf('}', pos)).trim();
-        }
-        return "";
-    }
-
-    private String getName(String data, int startPos) throws CompilerDirectiveFactorySyntaxException {
-        if (startPos > -1) {
-            int endPos = getDirectiveLastChar(data, startPos);
-            int itemPos = data.indexOf(' ', startPos);
-            if (itemPos < endPos && itemPos > -1) { // we have an item in
-                                                    // directive
-                return data.substring(startPos + 2, itemPos).trim();
-            } else {
-                return data.substring(startPos + 2, endPos).trim();
-            }
-        }
-        throw new CompilerDirectiveFactorySyntaxException("Could not get compiler definition name for: " + data);
+    private String getName(CharSequence data, int first, int end) {
+        return data.subSequence(first + 2, end).toString().trim();
     }
 
 }
@@ -0,0 +1,311 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirective;
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirectiveType;
+import org.sonar.plugins.delphi.antlr.directives.impl.IfDefDirective;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Single-pass preprocessor replacing the Exclude, Include, Define and
+ * SourceFixer resolver chain. The file is scanned once: comment and string
+ * state is tracked while scanning, compiler directives are evaluated as they
+ * are met, and the text is then copied once into the buffer consumed by the
+ * lexer, dropping the code cut by conditional directives and padding ':' and
+ * '..' with whitespace. The output is the same as the one of the former
+ * resolver chain, including its quirks: include directives are resolved, and
+ * included files scanned for their own includes, but left in place as the
+ * resolver chain never spliced the included content. Included files are read through
+ * the include cache of the context. An instance preprocesses a single file;
+ * a {@link SourceScan} can be shared by the preprocessors of several contexts.
+ */
+public class DelphiPreprocessor {
+
+    private final List<File> includeDirectories;
+    private final Set<String> definitions;
+    private final IncludeFileCache includeCache;
+    private final List<String> includedFiles = new ArrayList<String>();
+    private final List<Branch> branches = new ArrayList<Branch>();
+    private long[] cuts = new long[16];
+    private int cutCount;
+    private final SourceMap sourceMap = new SourceMap();
+
+    /**
+     * Ctor
+     * 
+     * @param context Include directories and definitions to use
+     */
+    public DelphiPreprocessor(PreprocessorContext context) {
+        includeDirectories = context.getIncludeDirectories();
+        definitions = new HashSet<String>(context.getDefinitions());
+        includeCache = context.getIncludeCache();
+    }
+
+    /**
+     * Preprocesses a file
+     * 
+     * @param fileName File name
+     * @param encoding Encoding to use, null for the platform default
+     * @return Preprocessed file characters
+     * @throws IOException If file could not be read
+     */
+    public char[] process(String fileName, String encoding) throws IOException {
+        return process(SourceScan.read(fileName, encoding));
+    }
+
+    /**
+     * Preprocesses the content of a file
+     * 
+     * @param fileName File name, used to resolve relative include files
+     * @param text File content
+     * @return Preprocessed file characters
+     */
+    public char[] processSource(String fileName, String text) {
+        return process(new SourceScan(fileName, text));
+    }
+
+    /**
+     * Preprocesses an already scanned file, only directives are evaluated
+     * against the definitions of the context, the text is not scanned again
+     * 
+     * @param scan File content and directives
+     * @return Preprocessed file characters
+     */
+    public char[] process(SourceScan scan) {
+        File directory = new File(scan.getFileName()).getAbsoluteFile().getParentFile();
+        List<CompilerDirective> directives = scan.getDirectives();
+        for (int i = 0; i < directives.size(); ++i) {
+            CompilerDirective directive = directives.get(i);
+            if (directive.getType() != CompilerDirectiveType.INCLUDE) {
+                evaluate(directive, scan.isExcluded(i));
+            } else if (!scan.isExcluded(i)) {
+                include(directory, directive.getItem());
+            }
+        }
+        if (!scan.isClosed() || !branches.isEmpty()) {
+            DelphiUtils.LOG.debug("No matching {$ifdef}...{$endif} pair found in " + scan.getFileName());
+            cutCount = 0;
+        }
+        return copy(scan.getText());
+    }
+
+    /**
+     * @return Map from the preprocessed file to the lines of the original
+     *         file
+     */
+    public SourceMap getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * @return Absolute paths of included files, in order of inclusion
+     */
+    public List<String> getIncludedFiles() {
+        return includedFiles;
+    }
+
+    private void evaluate(CompilerDirective directive, boolean excluded) {
+        int first = directive.getFirstCharPosition();
+        int end = directive.getLastCharPosition() + 1;
+        switch (directive.getType()) {
+        case DEFINE:
+            definitions.add(directive.getItem());
+            break;
+        case UNDEFINE:
+            definitions.remove(directive.getItem());
+            break;
+        case IF:
+            branches.add(new Branch(first, true));
+            break;
+        case IFDEF:
+            boolean defined = definitions.contains(directive.getItem());
+            if (!excluded) {
+                for (Branch branch : branches) {
+                    ++branch.depth;
+                }
+            }
+            branches.add(new Branch(first, defined == ((IfDefDirective) directive).isPositive()));
+            break;
+        case ELSE:
+            if (!excluded) {
+                markElse(first, end);
+            }
+            break;
+        case ENDIF:
+            if (!excluded) {
+                closeBranches(end);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Resolves an include file relative to the directory of the including
+     * file, then to the include directories
+     */
+    private void include(File directory, String includeFileName) {
+        IncludeFileIndex index = includeCache.getIndex();
+        File file = index.find(directory, includeFileName);
+        if (file == null) {
+            file = index.find(includeDirectories, includeFileName);
+        }
+        if (file == null) {
+            DelphiUtils.LOG.warn("Could not resolve include file: " + includeFileName);
+            return;
+        }
+
+        includedFiles.add(file.getAbsolutePath());
+        try {
+            for (CompilerDirective directive : includeCache.get(file).getDirectives()) {
+                if (directive.getType() == CompilerDirectiveType.INCLUDE) {
+                    include(file.getParentFile(), directive.getItem());
+                }
+            }
+        } catch (IOException e) {
+            DelphiUtils.LOG.warn(e.getMessage());
+        }
+    }
+
+    private void markElse(int first, int end) {
+        for (int i = branches.size() - 1; i >= 0 && branches.get(i).depth == 1; --i) {
+            branches.get(i).elseFirst = first;
+            branches.get(i).elseEnd = end;
+        }
+    }
+
+    /**
+     * A branch depth never exceeds the depth of the branches opened before
+     * it, so the branches closed by an {$endif} are always on top of the
+     * stack.
+     */
+    private void closeBranches(int end) {
+        for (Branch branch : branches) {
+            --branch.depth;
+        }
+        while (!branches.isEmpty() && branches.get(branches.size() - 1).depth == 0) {
+            Branch branch = branches.remove(branches.size() - 1);
+            if (branch.shouldCut) {
+                addCut(branch.first, branch.elseFirst == -1 ? end : branch.elseEnd);
+            } else {
+                addCut(branch.elseFirst == -1 ? branch.first : branch.elseFirst, end);
+            }
+        }
+    }
+
+    private void addCut(int begin, int end) {
+        if (cutCount == cuts.length) {
+            cuts = Arrays.copyOf(cuts, cutCount * 2);
+        }
+        cuts[cutCount++] = ((long) begin << 32) | end;
+    }
+
+    /**
+     * Copies the text without cut code, padding ':' and '..' with whitespace,
+     * and maps the copied pieces to their original lines
+     */
+    private char[] copy(String text) {
+        int size = text.length();
+        Arrays.sort(cuts, 0, cutCount);
+
+        char[] result = new char[size + size / 8 + 6];
+        int length = 0;
+        boolean dot = false;
+        int cut = 0;
+        int pos = 0;
+        int line = 1;
+        int originalLine = 1;
+        while (pos < size) {
+            if (cut < cutCount && pos >= (int) (cuts[cut] >>> 32)) {
+                int end = Math.min(size, (int) cuts[cut++]);
+                for (; pos < end; ++pos) {
+                    if (text.charAt(pos) == '\n') {
+                        ++originalLine;
+                    }
+                }
+                sourceMap.add(length, line, originalLine);
+                continue;
+            }
+            if (result.length - length < 6) {
+                result = Arrays.copyOf(result, result.length * 2);
+            }
+            char c = text.charAt(pos++);
+            if (c == '.' && !dot) {
+                dot = true;
+                continue;
+            }
+            if (c == '.') {
+                result[length++] = ' ';
+                result[length++] = '.';
+                result[length++] = '.';
+                result[length++] = ' ';
+                dot = false;
+                continue;
+            }
+            if (dot) {
+                result[length++] = '.';
+                dot = false;
+            }
+            if (c == ':') {
+                result[length++] = ' ';
+            } else if (c == '\n') {
+                ++line;
+                ++originalLine;
+            }
+            result[length++] = c;
+        }
+        if (dot) {
+            result[length++] = '.';
+        }
+        result[length++] = '\n';
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Conditional directive waiting for its matching {$endif}. Only {$ifdef}
+     * directives nest, {$if} directives are closed by the first {$endif}.
+     */
+    private static class Branch {
+        private final int first;
+        private final boolean shouldCut;
+        private int depth = 1;
+        private int elseFirst = -1;
+        private int elseEnd = -1;
+
+        Branch(int first, boolean shouldCut) {
+            this.first = first;
+            this.shouldCut = shouldCut;
+        }
+    }
+
+}
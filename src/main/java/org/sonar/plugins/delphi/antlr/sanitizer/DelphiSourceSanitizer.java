@@ -22,82 +22,110 @@
  */
 package org.sonar.plugins.delphi.antlr.sanitizer;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
-import org.antlr.runtime.ANTLRFileStream;
+import org.antlr.runtime.ANTLRStringStream;
 import org.sonar.plugins.delphi.antlr.DelphiLexer;
-import org.sonar.plugins.delphi.antlr.sanitizer.resolvers.DefineResolver;
-import org.sonar.plugins.delphi.antlr.sanitizer.resolvers.ExcludeResolver;
-import org.sonar.plugins.delphi.antlr.sanitizer.resolvers.IncludeResolver;
-import org.sonar.plugins.delphi.antlr.sanitizer.resolvers.SourceFixerResolver;
-import org.sonar.plugins.delphi.antlr.sanitizer.resolvers.SourceResolverResults;
-import org.sonar.plugins.delphi.utils.DelphiUtils;
 
 /**
  * Antlr Class that handles some common grammar problems, see ReadMe.docx for
  * more info.
  */
-public class DelphiSourceSanitizer extends ANTLRFileStream {
+public class DelphiSourceSanitizer extends ANTLRStringStream {
 
-    private static List<File> includes = new ArrayList<File>(); // list of
-                                                                // include
-                                                                // directories
-    private static Set<String> includedFiles = new HashSet<String>();
-    private static Set<String> definitions = new HashSet<String>();
+    private final PreprocessorContext context;
+    private List<String> includedFiles = new ArrayList<String>();
+    private char[] lowercase; // lowercase copy of data, for lookahead
+    private SourceMap sourceMap = new SourceMap();
 
     /**
-     * Ctor with file name
+     * Ctor with file name, no include directories and no definitions
      * 
      * @param fileName File name to stream
      * @throws IOException If no file found
      */
     public DelphiSourceSanitizer(String fileName) throws IOException {
-        super(fileName);
+        this(fileName, new PreprocessorContext());
     }
 
     /**
-     * C-tor with file name and encoding
+     * Ctor with file name and preprocessor context
+     * 
+     * @param fileName File name to stream
+     * @param context Include directories and definitions to use
+     * @throws IOException If no file found
+     */
+    public DelphiSourceSanitizer(String fileName, PreprocessorContext context) throws IOException {
+        this(fileName, context.getEncoding(), context);
+    }
+
+    /**
+     * C-tor with file name, encoding and preprocessor context
      * 
      * @param fileName File namt to stream
      * @param encoding Encoding to use
+     * @param context Include directories and definitions to use
      * @throws IOException If file not found
      */
-    public DelphiSourceSanitizer(String fileName, String encoding)
+    public DelphiSourceSanitizer(String fileName, String encoding, PreprocessorContext context)
             throws IOException {
-        super(fileName, encoding);
+        this.context = context;
+        this.name = fileName;
+        load(fileName, encoding);
     }
 
     /**
-     * Sets the include directories, method is static, so we could cache the
-     * directories and not calculate them each time a new file is parsed
+     * C-tor with an already scanned file and preprocessor context, the file
+     * is not read again
      * 
-     * @param list List of include directories
+     * @param scan File content and directives
+     * @param context Include directories and definitions to use
      */
-    public static void setIncludeDirectories(List<File> list) {
-        includes.clear();
-        includes.addAll(list);
+    public DelphiSourceSanitizer(SourceScan scan, PreprocessorContext context) {
+        this.context = context;
+        this.name = scan.getFileName();
+        DelphiPreprocessor preprocessor = new DelphiPreprocessor(context);
+        setData(preprocessor.process(scan));
+        sourceMap = preprocessor.getSourceMap();
+        addIncludedFiles(preprocessor);
     }
 
     /**
-     * Sets the preprocessor definitions, method is static, so we could cache
-     * the definitions and not remake them each time a new file is parsed
-     * 
-     * @param list List of preprocessor definitions
-     * 
-     * @param newDefinitions List of definitions
+     * @return Preprocessor context used to sanitize the file
      */
-    public static void setDefinitions(List<String> newDefinitions) {
-        definitions.clear();
-        definitions.addAll(newDefinitions);
+    public PreprocessorContext getContext() {
+        return context;
     }
 
     /**
-     * Overrides AntlrStringStream LookAhead for case insensitivity.
+     * @return Absolute paths of files included by the file, directly or by
+     *         other included files
+     */
+    public List<String> getIncludedFiles() {
+        return includedFiles;
+    }
+
+    /**
+     * @return Map from the preprocessed data to the lines of the original file
+     */
+    public SourceMap getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * Line of the original file, so tokens keep their original lines when
+     * conditional code was cut
+     */
+    @Override
+    public int getLine() {
+        return sourceMap.getOriginalLine(p, line);
+    }
+
+    /**
+     * Overrides AntlrStringStream LookAhead for case insensitivity, reading
+     * the lowercase copy of the data made once when it was loaded.
      */
 
     @Override
@@ -112,48 +140,36 @@ public class DelphiSourceSanitizer extends ANTLRFileStream {
         if ((p + offset - 1) >= n) {
             return DelphiLexer.EOF;
         }
-        return Character.toLowerCase(data[p + offset - 1]);
+        return lowercase[p + offset - 1];
     }
 
     /**
-     * Overloading the load method from ANTRLFileStream, to add whitespace where
-     * it is required (':', '..'), and preform additional actions
+     * Loads the file, adds whitespace where it is required (':', '..'), and
+     * preforms additional actions
      */
-
-    @Override
     public void load(String fileName, String encoding) throws IOException {
         if (fileName == null) {
             return;
         }
 
-        Set<String> defs = new HashSet<String>(definitions); // preprocessor
-                                                             // definitions in
-                                                             // current file
-
-        boolean extendIncludes = true; // TODO
-                                       // delphiProjectHelper.shouldExtendIncludes();
-
-        StringBuilder fileData = new StringBuilder(DelphiUtils.readFileContent(new File(fileName), encoding));
-
-        SourceResolverResults resolverResult = new SourceResolverResults(fileName, fileData);
-
-        SourceResolver resolver = new ExcludeResolver();
-        resolver.chain(new IncludeResolver(extendIncludes, includes)).chain(new ExcludeResolver())
-                .chain(new DefineResolver(defs))
-                .chain(new SourceFixerResolver());
+        DelphiPreprocessor preprocessor = new DelphiPreprocessor(context);
+        setData(preprocessor.process(fileName, encoding));
+        sourceMap = preprocessor.getSourceMap();
+        addIncludedFiles(preprocessor);
+    }
 
-        resolver.resolve(resolverResult);
-        data = resolverResult.getFileData().toString().toCharArray();
-        super.n = data.length;
+    private void setData(char[] chars) {
+        data = chars;
+        super.n = chars.length;
+        lowercase = new char[chars.length];
+        for (int i = 0; i < chars.length; ++i) {
+            lowercase[i] = Character.toLowerCase(chars[i]);
+        }
     }
 
-    /**
-     * Gets the set of files, that already have been included in other files
-     * 
-     * @return
-     */
-    public static Set<String> getIncludedFiles() {
-        return includedFiles;
+    private void addIncludedFiles(DelphiPreprocessor preprocessor) {
+        includedFiles = new ArrayList<String>(preprocessor.getIncludedFiles());
+        context.getIncludedFiles().addAll(includedFiles);
     }
 
 }
@@ -0,0 +1,158 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirective;
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirectiveFactory;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Finds the compiler directives of a file in a single scan, telling whether
+ * each one is inside a comment or a string. Directives are recognized from
+ * their bounds, the text is neither copied nor scanned again. Finds nothing
+ * if a directive has no closing bracket, like the CompilerDirectiveFactory.
+ */
+class DirectiveScanner {
+
+    private final CompilerDirectiveFactory factory = new CompilerDirectiveFactory();
+    private final String text;
+    private final ExcludeScanner excludes;
+    private final boolean closed;
+    private int pos;
+    private boolean excluded;
+
+    /**
+     * Ctor
+     * 
+     * @param text File content
+     */
+    DirectiveScanner(String text) {
+        this.text = text;
+        this.excludes = new ExcludeScanner(text);
+        int last = text.lastIndexOf("{$");
+        this.closed = last == -1 || text.indexOf('}', last + 1) != -1;
+    }
+
+    /**
+     * @return false if a directive has no closing bracket
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return Next supported directive, null if none
+     */
+    CompilerDirective next() {
+        int length = closed ? text.length() : 0;
+        while (pos < length) {
+            int first = pos++;
+            excluded = excludes.isExcluded(first);
+            if (text.charAt(first) == '{' && first + 1 < length && text.charAt(first + 1) == '$') {
+                CompilerDirective directive = create(first);
+                if (directive != null) {
+                    return directive;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the last directive returned by next is inside a comment
+     *         or a string
+     */
+    boolean isExcluded() {
+        return excluded;
+    }
+
+    private CompilerDirective create(int first) {
+        int last = text.indexOf('}', first + 1);
+        CompilerDirective directive = factory.createAt(text, first, last);
+        if (directive == null) {
+            DelphiUtils.LOG.debug("Not implemented directive: " + text.substring(first, last + 1));
+        }
+        return directive;
+    }
+
+    /**
+     * Tracks comments and strings of a file, excluding directives inside them.
+     * Must be queried for every position, in order. Ranges end one character
+     * past the closing delimiter and strings must end on their line, as
+     * computed by the former ExcludeResolver.
+     */
+    private static class ExcludeScanner {
+        private final String text;
+        private final int length;
+        private int newLine;
+        private int lineCommentEnd = -1;
+        private int blockCommentEnd = -1;
+        private int braceCommentEnd = -1;
+        private int stringEnd = -1;
+        private int nextString;
+        private boolean noBlockComments;
+        private boolean noBraceComments;
+        private boolean noStrings;
+
+        ExcludeScanner(String text) {
+            this.text = text;
+            this.length = text.length();
+            this.newLine = text.indexOf('\n');
+        }
+
+        boolean isExcluded(int pos) {
+            char c = text.charAt(pos);
+            char next = pos + 1 < length ? text.charAt(pos + 1) : '\n';
+            if (c == '/' && next == '/' && pos > lineCommentEnd) {
+                if (newLineAfter(pos) != -1) {
+                    lineCommentEnd = newLine;
+                }
+            } else if (c == '(' && next == '*' && pos > blockCommentEnd && !noBlockComments) {
+                int close = text.indexOf("*)", pos + 1);
+                noBlockComments = close == -1;
+                blockCommentEnd = noBlockComments ? blockCommentEnd : close + 2;
+            } else if (c == '{' && next != '$' && pos + 1 < length && pos > blockCommentEnd && pos > braceCommentEnd
+                    && !noBraceComments) {
+                int close = text.indexOf('}', pos + 1);
+                noBraceComments = close == -1;
+                braceCommentEnd = noBraceComments ? braceCommentEnd : close + 1;
+            } else if (c == '\'' && pos >= nextString && !noStrings) {
+                int close = text.indexOf('\'', pos + 1);
+                noStrings = close == -1;
+                if (!noStrings && newLineAfter(pos) != -1 && close < newLine) {
+                    stringEnd = close + 1;
+                    nextString = close + 1;
+                }
+            }
+            return pos <= lineCommentEnd || pos <= blockCommentEnd || pos <= braceCommentEnd || pos <= stringEnd;
+        }
+
+        private int newLineAfter(int pos) {
+            if (newLine != -1 && newLine <= pos) {
+                newLine = text.indexOf('\n', pos + 1);
+            }
+            return newLine;
+        }
+    }
+
+}
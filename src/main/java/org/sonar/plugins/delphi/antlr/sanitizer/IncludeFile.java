@@ -0,0 +1,114 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirective;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Content of an include file, with its compiler directives found outside
+ * comments and strings. Immutable.
+ */
+public class IncludeFile {
+
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final String content;
+    private final List<CompilerDirective> directives;
+
+    /**
+     * Ctor
+     * 
+     * @param path Absolute path of the file
+     * @param lastModified File modification time
+     * @param length File length
+     * @param content File content
+     */
+    public IncludeFile(String path, long lastModified, long length, String content) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.content = content;
+
+        List<CompilerDirective> found = new ArrayList<CompilerDirective>();
+        DirectiveScanner scanner = new DirectiveScanner(content);
+        CompilerDirective directive;
+        while ((directive = scanner.next()) != null) {
+            if (!scanner.isExcluded()) {
+                found.add(directive);
+            }
+        }
+        this.directives = Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Reads an include file
+     * 
+     * @param file Include file
+     * @param encoding Encoding of a file without byte order mark, null for
+     *            the platform default
+     * @return Include file content and directives
+     * @throws IOException If file could not be read
+     */
+    public static IncludeFile read(File file, String encoding) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        return new IncludeFile(file.getAbsolutePath(), lastModified, length, DelphiUtils.readFileContent(file, encoding));
+    }
+
+    /**
+     * @return Absolute path of the file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return File content
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @return Compiler directives outside comments and strings, in order
+     */
+    public List<CompilerDirective> getDirectives() {
+        return directives;
+    }
+
+    /**
+     * @return true if the file was not modified since it was read
+     */
+    boolean isUpToDate(File file) {
+        return file.lastModified() == lastModified && file.length() == length;
+    }
+
+}
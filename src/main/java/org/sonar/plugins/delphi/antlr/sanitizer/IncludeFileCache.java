@@ -0,0 +1,126 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Project scoped store of include files, so a file included by many units is
+ * read and scanned for directives once per analysis. Entries are keyed by
+ * canonical path and reloaded when the modification time or the length of
+ * the file changes. Can be used concurrently; a file requested by two
+ * threads at the same time may be read twice.
+ */
+public class IncludeFileCache {
+
+    private final ConcurrentMap<String, IncludeFile> files = new ConcurrentHashMap<String, IncludeFile>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final IncludeFileIndex index = new IncludeFileIndex();
+    private final String encoding;
+
+    /**
+     * Ctor, files are read with the platform encoding
+     */
+    public IncludeFileCache() {
+        this(null);
+    }
+
+    /**
+     * Ctor
+     * 
+     * @param encoding Source encoding of the analysis, used for files without
+     *            byte order mark, null for the platform default
+     */
+    public IncludeFileCache(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Gets an include file, reads it if it was not cached or was modified
+     * 
+     * @param file Include file
+     * @return Include file content and directives
+     * @throws IOException If file could not be read
+     */
+    public IncludeFile get(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        IncludeFile cached = files.get(key);
+        if (cached != null && cached.isUpToDate(file)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        IncludeFile read = IncludeFile.read(file, encoding);
+        files.put(key, read);
+        return read;
+    }
+
+    /**
+     * @return Source encoding of the analysis, null for the platform default
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return Index resolving include file names, shared by the analysis
+     */
+    public IncludeFileIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        files.clear();
+        index.clear();
+    }
+
+    /**
+     * @return number of cached files
+     */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * @return number of requests served from cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of files read
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+}
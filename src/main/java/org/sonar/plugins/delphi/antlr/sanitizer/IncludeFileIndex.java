@@ -0,0 +1,147 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves include file names the way Delphi does, case-insensitively, from
+ * directory listings read once per analysis instead of probing the file
+ * system for every include directive and directory. Resolutions, including
+ * names that could not be resolved, are remembered. Can be used
+ * concurrently.
+ */
+public class IncludeFileIndex {
+
+    private static final File NOT_FOUND = new File("");
+
+    private final ConcurrentMap<File, Map<String, File>> directories = new ConcurrentHashMap<File, Map<String, File>>();
+    private final ConcurrentMap<Search, File> searches = new ConcurrentHashMap<Search, File>();
+
+    /**
+     * Finds a file relative to a directory
+     * 
+     * @param directory Directory
+     * @param fileName Relative file name, '/' and '\' separated
+     * @return Existing file, null if not found
+     */
+    public File find(File directory, String fileName) {
+        return find(Collections.singletonList(directory), fileName);
+    }
+
+    /**
+     * Finds a file relative to the first directory containing it
+     * 
+     * @param directories Directories to search, in order
+     * @param fileName Relative file name, '/' and '\' separated
+     * @return Existing file, null if not found
+     */
+    public File find(List<File> directories, String fileName) {
+        Search search = new Search(directories, fileName.toLowerCase(Locale.ENGLISH));
+        File found = searches.get(search);
+        if (found == null) {
+            found = NOT_FOUND;
+            for (int i = 0; found == NOT_FOUND && i < directories.size(); ++i) {
+                found = lookup(directories.get(i).getAbsoluteFile(), search.fileName);
+            }
+            searches.put(search, found);
+        }
+        return found == NOT_FOUND ? null : found;
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        directories.clear();
+        searches.clear();
+    }
+
+    private File lookup(File directory, String fileName) {
+        File current = directory;
+        String[] names = fileName.split("[/\\\\]");
+        for (int i = 0; current != null && i < names.length; ++i) {
+            if ("..".equals(names[i])) {
+                current = current.getParentFile();
+            } else if (!names[i].isEmpty() && !".".equals(names[i])) {
+                current = list(current).get(names[i]);
+            }
+        }
+        return current != null && current.isFile() ? current : NOT_FOUND;
+    }
+
+    /**
+     * @return Directory entries by lower case name, empty if not a directory
+     */
+    private Map<String, File> list(File directory) {
+        Map<String, File> entries = directories.get(directory);
+        if (entries == null) {
+            entries = new HashMap<String, File>();
+            String[] names = directory.list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    String key = name.toLowerCase(Locale.ENGLISH);
+                    if (!entries.containsKey(key)) {
+                        entries.put(key, new File(directory, name));
+                    }
+                }
+            }
+            directories.put(directory, entries);
+        }
+        return entries;
+    }
+
+    private static class Search {
+        private final List<File> directories;
+        private final String fileName;
+
+        Search(List<File> directories, String fileName) {
+            this.directories = directories;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Search)) {
+                return false;
+            }
+            Search other = (Search) obj;
+            return fileName.equals(other.fileName) && directories.equals(other.directories);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * directories.hashCode() + fileName.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Preprocessor configuration of a single analysis: include directories and
+ * definitions used to sanitize source files, and the set of files included by
+ * other files. Replaces the static state of DelphiSourceSanitizer, so files
+ * can be preprocessed concurrently. Immutable, except for the included files
+ * set and the include files cache which are thread-safe. The include files
+ * cache is not part of the context equality.
+ */
+public class PreprocessorContext {
+
+    private final List<File> includeDirectories;
+    private final Set<String> definitions;
+    private final Set<String> includedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final IncludeFileCache includeCache;
+    private volatile String digest;
+
+    /**
+     * Ctor, no include directories and no definitions
+     */
+    public PreprocessorContext() {
+        this(Collections.<File> emptyList(), Collections.<String> emptyList());
+    }
+
+    /**
+     * Ctor
+     * 
+     * @param includeDirectories List of include directories
+     * @param definitions List of preprocessor definitions
+     */
+    public PreprocessorContext(List<File> includeDirectories, List<String> definitions) {
+        this(includeDirectories, definitions, new IncludeFileCache());
+    }
+
+    /**
+     * Ctor
+     * 
+     * @param includeDirectories List of include directories
+     * @param definitions List of preprocessor definitions
+     * @param includeCache Include files cache, shared with other contexts of
+     *            the analysis
+     */
+    public PreprocessorContext(List<File> includeDirectories, List<String> definitions, IncludeFileCache includeCache) {
+        this.includeDirectories = Collections.unmodifiableList(new ArrayList<File>(includeDirectories));
+        this.definitions = Collections.unmodifiableSet(new HashSet<String>(definitions));
+        this.includeCache = includeCache;
+    }
+
+    /**
+     * @return List of include directories
+     */
+    public List<File> getIncludeDirectories() {
+        return includeDirectories;
+    }
+
+    /**
+     * @return Set of preprocessor definitions
+     */
+    public Set<String> getDefinitions() {
+        return definitions;
+    }
+
+    /**
+     * Gets the set of files, that already have been included in other files
+     * 
+     * @return Set of included files absolute paths
+     */
+    public Set<String> getIncludedFiles() {
+        return includedFiles;
+    }
+
+    /**
+     * @return Cache of the include files read by preprocessed files
+     */
+    public IncludeFileCache getIncludeCache() {
+        return includeCache;
+    }
+
+    /**
+     * @return Source encoding of the analysis, null for the platform default
+     */
+    public String getEncoding() {
+        return includeCache.getEncoding();
+    }
+
+    /**
+     * @return Digest of the definitions, include directories and source
+     *         encoding, equal for equal contexts and stable between analyses
+     */
+    public String getDigest() {
+        if (digest == null) {
+            StringBuilder key = new StringBuilder();
+            for (String definition : new TreeSet<String>(definitions)) {
+                key.append(definition).append(';');
+            }
+            key.append('\n');
+            for (File includeDirectory : includeDirectories) {
+                key.append(includeDirectory.getAbsolutePath()).append(';');
+            }
+            String encoding = getEncoding();
+            key.append('\n').append(encoding == null ? Charset.defaultCharset().name() : encoding);
+            digest = DelphiUtils.sha1(key.toString());
+        }
+        return digest;
+    }
+
+    /**
+     * Two contexts are equal when they preprocess files the same way: same
+     * include directories and same definitions
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PreprocessorContext)) {
+            return false;
+        }
+        PreprocessorContext other = (PreprocessorContext) obj;
+        return includeDirectories.equals(other.includeDirectories) && definitions.equals(other.definitions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * includeDirectories.hashCode() + definitions.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PreprocessorContext{includes=" + includeDirectories + ", definitions=" + definitions + '}';
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.util.Arrays;
+
+/**
+ * Maps positions of a preprocessed file back to lines of the original file.
+ * The preprocessed file is a sequence of pieces of the original file, a new
+ * piece starting wherever conditional code was cut. Every piece is stored
+ * with its preprocessed offset and line, and the original line it starts on;
+ * line breaks inside a piece are the original ones, so the original line of
+ * any position is found by a binary search over the pieces. Whitespace added
+ * around ':' and '..' never spans lines, so it does not start new pieces.
+ */
+public class SourceMap {
+
+    private int[] offsets = new int[8];
+    private int[] lines = new int[8];
+    private int[] originalLines = new int[8];
+    private int count;
+
+    /**
+     * Ctor, identity map: one piece starting at the first line
+     */
+    public SourceMap() {
+        add(0, 1, 1);
+    }
+
+    /**
+     * Adds a piece, pieces are added in order of offsets
+     * 
+     * @param offset Offset of the piece in the preprocessed file
+     * @param line Line of the piece in the preprocessed file
+     * @param originalLine Line of the piece in the original file
+     */
+    public void add(int offset, int line, int originalLine) {
+        if (count > 0 && offsets[count - 1] == offset) {
+            --count; // previous piece is empty
+        }
+        if (count > 0 && originalLines[count - 1] - lines[count - 1] == originalLine - line) {
+            return; // same shift as the previous piece
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+            originalLines = Arrays.copyOf(originalLines, count * 2);
+        }
+        offsets[count] = offset;
+        lines[count] = line;
+        originalLines[count] = originalLine;
+        ++count;
+    }
+
+    /**
+     * Gets the original line of a position of the preprocessed file
+     * 
+     * @param offset Offset in the preprocessed file
+     * @param line Line of the offset in the preprocessed file
+     * @return Line in the original file
+     */
+    public int getOriginalLine(int offset, int line) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return originalLines[low] + line - lines[low];
+    }
+
+    /**
+     * @return Number of pieces
+     */
+    public int size() {
+        return count;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirective;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Content of a source file with all its compiler directives, found in a
+ * single scan. The scan does not depend on definitions, so one scan can be
+ * preprocessed with several preprocessor contexts (build configurations) by
+ * {@link DelphiPreprocessor#process(SourceScan)}. Immutable.
+ */
+public class SourceScan {
+
+    private final String fileName;
+    private final String text;
+    private final List<CompilerDirective> directives;
+    private final boolean[] excluded;
+    private final boolean closed;
+
+    /**
+     * Ctor, scans the text for compiler directives
+     * 
+     * @param fileName File name, used to resolve relative include files
+     * @param text File content
+     */
+    public SourceScan(String fileName, String text) {
+        this.fileName = fileName;
+        this.text = text;
+
+        List<CompilerDirective> found = new ArrayList<CompilerDirective>();
+        boolean[] flags = new boolean[16];
+        DirectiveScanner scanner = new DirectiveScanner(text);
+        CompilerDirective directive;
+        while ((directive = scanner.next()) != null) {
+            if (found.size() == flags.length) {
+                boolean[] grown = new boolean[flags.length * 2];
+                System.arraycopy(flags, 0, grown, 0, flags.length);
+                flags = grown;
+            }
+            flags[found.size()] = scanner.isExcluded();
+            found.add(directive);
+        }
+        this.directives = Collections.unmodifiableList(found);
+        this.excluded = flags;
+        this.closed = scanner.isClosed();
+    }
+
+    /**
+     * Reads and scans a file
+     * 
+     * @param fileName File name
+     * @param encoding Encoding to use, null for the platform default
+     * @return File content and directives
+     * @throws IOException If file could not be read
+     */
+    public static SourceScan read(String fileName, String encoding) throws IOException {
+        return new SourceScan(fileName, DelphiUtils.readFileContent(new File(fileName), encoding));
+    }
+
+    /**
+     * @return File name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return File content
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return Compiler directives in order of appearance, including the ones
+     *         in comments and strings
+     */
+    public List<CompilerDirective> getDirectives() {
+        return directives;
+    }
+
+    /**
+     * @param index Index of a directive
+     * @return True if the directive is in a comment or a string
+     */
+    public boolean isExcluded(int index) {
+        return excluded[index];
+    }
+
+    /**
+     * @return False if the text ends in an unclosed directive
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
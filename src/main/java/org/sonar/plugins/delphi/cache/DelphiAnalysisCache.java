@@ -0,0 +1,260 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.BatchExtension;
+import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.DelphiParser;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * On-disk store of per-file analysis results, kept between analyses. Results
+ * are stored in sections (one per kind of result, e.g. PMD violations), as
+ * opaque payloads encoded by their producer.
+ * 
+ * An entry is valid only if the file content, the preprocessor definitions
+ * and include directories, the content of every file it included, and the
+ * plugin version and grammar are the same as when it was stored, so only
+ * changed files and files whose includes changed are analysed again. Can be
+ * used concurrently.
+ */
+public class DelphiAnalysisCache implements BatchExtension {
+
+    private static final int MAGIC = 0x44504143; // "DPAC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".bin";
+
+    private final File directory;
+    private final String pluginVersion;
+    private final Map<String, String> fileHashes = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * ctor used by Sonar
+     * 
+     * @param delphiProjectHelper project helper, tells if the cache is enabled
+     *            and where it is
+     */
+    public DelphiAnalysisCache(DelphiProjectHelper delphiProjectHelper) {
+        this(delphiProjectHelper.isAnalysisCacheEnabled() ? delphiProjectHelper.getAnalysisCacheDir() : null);
+    }
+
+    /**
+     * ctor
+     * 
+     * @param directory cache directory, null to disable the cache
+     */
+    public DelphiAnalysisCache(File directory) {
+        this.directory = directory;
+        this.pluginVersion = computePluginVersion();
+    }
+
+    /**
+     * @return true if results are cached
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Gets the cached result of a file
+     * 
+     * @param section kind of result, should change when its encoding changes
+     * @param file analysed file
+     * @param context preprocessor context the file is analysed with
+     * @return cached payload, null if not cached or no longer valid
+     */
+    public byte[] load(String section, File file, PreprocessorContext context) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File entry = getEntryFile(section, file, context);
+        byte[] payload = null;
+        if (entry.isFile()) {
+            try {
+                payload = readEntry(entry, file, context);
+            } catch (IOException e) {
+                DelphiUtils.LOG.debug("Could not read analysis cache entry " + entry + ": " + e.getMessage());
+            }
+        }
+        if (payload == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return payload;
+    }
+
+    /**
+     * Stores the result of a file
+     * 
+     * @param section kind of result
+     * @param file analysed file
+     * @param context preprocessor context the file was analysed with
+     * @param includedFiles absolute paths of files included while analysing
+     *            the file
+     * @param payload encoded result
+     */
+    public void store(String section, File file, PreprocessorContext context, Collection<String> includedFiles,
+            byte[] payload) {
+        if (!isEnabled()) {
+            return;
+        }
+        File entry = getEntryFile(section, file, context);
+        File tempEntry = null;
+        try {
+            FileUtils.forceMkdir(entry.getParentFile());
+            tempEntry = File.createTempFile(entry.getName(), ".tmp", entry.getParentFile());
+            writeEntry(tempEntry, file, context, includedFiles, payload);
+            if ((entry.exists() && !entry.delete()) || !tempEntry.renameTo(entry)) {
+                throw new IOException("could not replace " + entry);
+            }
+        } catch (IOException e) {
+            DelphiUtils.LOG.debug("Could not write analysis cache entry " + entry + ": " + e.getMessage());
+            FileUtils.deleteQuietly(tempEntry);
+        }
+    }
+
+    /**
+     * @return number of valid entries found
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of files not found in cache, or with invalid entries
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private byte[] readEntry(File entry, File file, PreprocessorContext context) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(entry));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !pluginVersion.equals(in.readUTF())
+                    || !file.getAbsolutePath().equals(in.readUTF()) || !context.getDigest().equals(in.readUTF())
+                    || !getFileHash(file.getAbsolutePath()).equals(in.readUTF())) {
+                return null;
+            }
+            int includes = in.readInt();
+            for (int i = 0; i < includes; ++i) {
+                String includedFile = in.readUTF();
+                if (!in.readUTF().equals(getFileHash(includedFile))) {
+                    return null;
+                }
+            }
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return payload;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void writeEntry(File entry, File file, PreprocessorContext context, Collection<String> includedFiles,
+            byte[] payload) throws IOException {
+        List<String> includes = new ArrayList<String>(new TreeSet<String>(includedFiles));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(pluginVersion);
+        out.writeUTF(file.getAbsolutePath());
+        out.writeUTF(context.getDigest());
+        out.writeUTF(getFileHash(file.getAbsolutePath()));
+        out.writeInt(includes.size());
+        for (String includedFile : includes) {
+            out.writeUTF(includedFile);
+            out.writeUTF(getFileHash(includedFile));
+        }
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+        FileUtils.writeByteArrayToFile(entry, bytes.toByteArray());
+    }
+
+    private File getEntryFile(String section, File file, PreprocessorContext context) {
+        String name = DelphiUtils.sha1(file.getAbsolutePath() + "\n" + context.getDigest());
+        return new File(new File(directory, section), name.substring(0, 2) + File.separator + name + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Content hash of a file, computed once per analysis
+     */
+    private String getFileHash(String path) throws IOException {
+        String hash = fileHashes.get(path);
+        if (hash == null) {
+            File file = new File(path);
+            if (!file.isFile()) {
+                hash = "";
+            } else {
+                hash = DelphiUtils.sha1(FileUtils.readFileToByteArray(file));
+            }
+            fileHashes.put(path, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Plugin version and a hash of the generated lexer and parser, so entries
+     * are not reused when the grammar changes between builds of a version
+     */
+    private static String computePluginVersion() {
+        String version = DelphiAnalysisCache.class.getPackage().getImplementationVersion();
+        StringBuilder grammar = new StringBuilder();
+        for (Class<?> grammarClass : new Class<?>[] {DelphiLexer.class, DelphiParser.class}) {
+            InputStream in = grammarClass.getResourceAsStream(grammarClass.getSimpleName() + ".class");
+            try {
+                grammar.append(in == null ? "" : DelphiUtils.sha1(IOUtils.toByteArray(in)));
+            } catch (IOException e) {
+                DelphiUtils.LOG.debug("Could not read " + grammarClass + ": " + e.getMessage());
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return (version == null ? "dev" : version) + "/" + DelphiUtils.sha1(grammar.toString());
+    }
+
+}
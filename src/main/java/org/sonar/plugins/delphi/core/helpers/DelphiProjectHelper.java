@@ -40,6 +40,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.plugins.delphi.DelphiPlugin;
 import org.sonar.plugins.delphi.core.DelphiLanguage;
+import org.sonar.plugins.delphi.project.BuildConfiguration;
 import org.sonar.plugins.delphi.project.DelphiProject;
 import org.sonar.plugins.delphi.project.DelphiWorkgroup;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
@@ -180,6 +181,39 @@ public class DelphiProjectHelper extends DelphiFileHelper implements BatchExtens
         return settings.getString(DelphiPlugin.WORKGROUP_FILE_KEY);
     }
 
+    /**
+     * Gets the source encoding (sonar.sourceEncoding)
+     * 
+     * @return Source encoding, null for the platform default
+     */
+    public String getEncoding() {
+        if (settings == null) {
+            return null;
+        }
+        String encoding = settings.getString(CoreProperties.ENCODING_PROPERTY);
+        return StringUtils.isEmpty(encoding) ? null : encoding;
+    }
+
+    /**
+     * Gets the build configurations analysed in a single pass
+     * 
+     * @return Build configurations, empty if only the project definitions
+     *         should be used
+     */
+    public List<BuildConfiguration> getConfigurations() {
+        List<BuildConfiguration> result = new ArrayList<BuildConfiguration>();
+        if (settings == null) {
+            return result;
+        }
+        for (String value : settings.getStringArray(DelphiPlugin.CONFIGURATIONS_KEY)) {
+            BuildConfiguration configuration = BuildConfiguration.parse(value);
+            if (configuration != null) {
+                result.add(configuration);
+            }
+        }
+        return result;
+    }
+
     /**
      * Should we import sources or not
      *
@@ -191,6 +225,73 @@ public class DelphiProjectHelper extends DelphiFileHelper implements BatchExtens
         return CoreProperties.CORE_IMPORT_SOURCES_DEFAULT_VALUE;
     }
 
+    /**
+     * Gets the maximum number of parsed files kept in memory and shared
+     * between sensors
+     *
+     * @return Maximum number of cached files
+     */
+    public int getParseCacheSize() {
+        if (settings == null) {
+            return 0;
+        }
+        return settings.getInt(DelphiPlugin.PARSE_CACHE_SIZE_KEY);
+    }
+
+    /**
+     * Should PMD violations be written to an XML report
+     *
+     * @return True if so, false otherwise
+     */
+    public boolean isPmdXmlReportEnabled() {
+        if (settings == null) {
+            return false;
+        }
+        return settings.getBoolean(DelphiPlugin.PMD_XML_REPORT_KEY);
+    }
+
+    /**
+     * Gets the number of threads used to parse source files
+     *
+     * @return Number of threads, at least 1
+     */
+    public int getAnalysisThreads() {
+        if (settings == null) {
+            return 1;
+        }
+        return Math.max(1, settings.getInt(DelphiPlugin.ANALYSIS_THREADS_KEY));
+    }
+
+    /**
+     * Should analysis results be cached on disk between analyses
+     *
+     * @return True if so, false otherwise
+     */
+    public boolean isAnalysisCacheEnabled() {
+        if (settings == null) {
+            return false;
+        }
+        return settings.getBoolean(DelphiPlugin.ANALYSIS_CACHE_KEY);
+    }
+
+    /**
+     * Gets the directory of the incremental analysis cache
+     *
+     * @return Cache directory, 'delphi-cache' in the working directory if
+     *         not set
+     */
+    public File getAnalysisCacheDir() {
+        String dir = settings == null ? null : settings.getString(DelphiPlugin.ANALYSIS_CACHE_DIR_KEY);
+        if (StringUtils.isEmpty(dir)) {
+            return new File(workDir(), "delphi-cache");
+        }
+        File cacheDir = new File(dir);
+        if (!cacheDir.isAbsolute()) {
+            cacheDir = new File(baseDir(), dir);
+        }
+        return cacheDir;
+    }
+
     /**
      * Create list of DelphiLanguage projects in a current workspace
      *
@@ -238,6 +339,13 @@ public class DelphiProjectHelper extends DelphiFileHelper implements BatchExtens
             list.add(newProject);
         }
 
+        List<BuildConfiguration> configurations = getConfigurations();
+        if (!configurations.isEmpty()) {
+            DelphiUtils.LOG.info("Build configurations: " + configurations);
+            for (DelphiProject project : list) {
+                project.setConfigurations(new ArrayList<BuildConfiguration>(configurations));
+            }
+        }
         return list;
     }
 
@@ -140,6 +140,15 @@ public interface ClassInterface extends HasNameInterface {
      */
     void addParent(ClassInterface parent);
 
+    /**
+     * Replace a parent of current class, used when a parent known only by name
+     * is resolved to the class declared in another unit
+     * 
+     * @param parent Parent to replace
+     * @param resolvedParent Declared parent class
+     */
+    void replaceParent(ClassInterface parent, ClassInterface resolvedParent);
+
     /**
      * Add a child (direct or indirect descendant)
      * 
@@ -124,6 +124,17 @@ public class DelphiClass implements ClassInterface {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public void replaceParent(ClassInterface parent, ClassInterface resolvedParent) {
+        if (parents.remove(parent) && parent instanceof DelphiClass) {
+            ((DelphiClass) parent).children.remove(this);
+        }
+        addParent(resolvedParent);
+    }
+
     /**
      * {@inheritDoc}
      */
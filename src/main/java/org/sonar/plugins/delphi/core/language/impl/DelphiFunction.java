@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sonar.plugins.delphi.antlr.DelphiParser;
 import org.sonar.plugins.delphi.core.language.ArgumentInterface;
@@ -62,13 +63,13 @@ public class DelphiFunction implements FunctionInterface {
 
     private static final String UNKNOWN_FUNCTION_NAME = "UnknownFunction_";
 
-    private static int unknownFunctionCounter = 0;
+    private static final AtomicInteger UNKNOWN_FUNCTION_COUNTER = new AtomicInteger();
 
     /**
      * Ctor, creates function with default name
      */
     public DelphiFunction() { // creates default name
-        name = UNKNOWN_FUNCTION_NAME + (unknownFunctionCounter++);
+        name = UNKNOWN_FUNCTION_NAME + UNKNOWN_FUNCTION_COUNTER.getAndIncrement();
         longName = name + "()";
         realName = name;
     }
@@ -25,13 +25,13 @@ package org.sonar.plugins.delphi.core.language.impl;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.antlr.runtime.Token;
+import org.antlr.runtime.ANTLRStringStream;
 import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.core.language.ClassFieldInterface;
 import org.sonar.plugins.delphi.core.language.ClassInterface;
 import org.sonar.plugins.delphi.core.language.StatementInterface;
-import org.sonar.plugins.delphi.cpd.DelphiCpdTokenizer;
 
 /**
  * DelphiLanguage class statement definition
@@ -109,7 +109,8 @@ public class DelphiStatement implements StatementInterface {
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} Identifiers are matched with field names ignoring case, as
+     * Delphi does.
      */
 
     public ClassFieldInterface[] getFields(ClassInterface fromClass) {
@@ -119,13 +120,13 @@ public class DelphiStatement implements StatementInterface {
         ClassFieldInterface[] fields = fromClass.getFields();
         List<ClassFieldInterface> result = new ArrayList<ClassFieldInterface>();
 
-        List<Token> tokens = new DelphiCpdTokenizer(delphiProjectHelper).tokenize(new String[] {text});
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(text));
 
-        for (Token token : tokens) { // get the token
-            if (token.getType() == DelphiLexer.TkIdentifier) {
+        for (int i = 0; i < tokens.size(); ++i) { // get the token
+            if (tokens.getType(i) == DelphiLexer.TkIdentifier) {
                 for (ClassFieldInterface field : fields) { // compare token with
                                                            // class fields
-                    if (field.getName().equals(token.getText())) {
+                    if (field.getName().equalsIgnoreCase(tokens.getText(i))) {
                         result.add(field); // add a field
                     }
                 }
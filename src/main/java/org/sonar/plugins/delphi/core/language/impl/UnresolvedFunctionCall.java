@@ -22,14 +22,14 @@
  */
 package org.sonar.plugins.delphi.core.language.impl;
 
-import java.util.Set;
-
 import org.sonar.plugins.delphi.core.language.FunctionInterface;
 import org.sonar.plugins.delphi.core.language.UnitInterface;
 
 /**
- * Class used by AbstractAnalyser for unresolved function calls from function
- * body (when we call a function, but didn't read function include file yet)
+ * Function call site found in a function body. Call sites are recorded while
+ * files are analysed and resolved by
+ * {@link org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisLinker} once all
+ * units of the project are known.
  */
 public class UnresolvedFunctionCall {
 
@@ -41,7 +41,7 @@ public class UnresolvedFunctionCall {
      * Default ctor
      * 
      * @param caller Function that has called another function
-     * @param called Called function
+     * @param called Called function, only its name is known
      * @param callerUnit Caller function unit
      */
     public UnresolvedFunctionCall(FunctionInterface caller, FunctionInterface called, UnitInterface callerUnit) {
@@ -77,46 +77,4 @@ public class UnresolvedFunctionCall {
         return callerUnit;
     }
 
-    /**
-     * Try to resolve called function call (find called function in provided
-     * units)
-     * 
-     * @param allUnits List of all units
-     * @return True if function was resolved, false otherwise
-     */
-    public boolean resolve(Set<UnitInterface> allUnits) {
-        Set<UnitInterface> includedUnits = callerUnit.getIncludedUnits(allUnits);
-        for (UnitInterface unit : includedUnits) {
-            FunctionInterface[] unitFunctions = unit.getAllFunctions();
-            for (FunctionInterface function : unitFunctions) {
-                if (function.getName().toLowerCase().endsWith(called.getName().toLowerCase())) { // found
-                    caller.addCalledFunction(function);
-                    return true;
-                }
-            }
-        }
-        return false; // function NOT resolved
-    }
-
-    /**
-     * Try to resolve called function call (check if provided function is not
-     * the function called from other function)
-     * 
-     * @param functionToCheck Function we will be checking if not a called
-     *            function
-     * @param allUnits List of all units
-     * @return True if function was resolved, false otherwise
-     */
-    public boolean resolve(FunctionInterface functionToCheck, Set<UnitInterface> allUnits) {
-        Set<UnitInterface> includedUnits = callerUnit.getIncludedUnits(allUnits);
-        if (!includedUnits.contains(functionToCheck.getUnit())) {
-            return false; // if not in included units
-        }
-        if (functionToCheck.getName().toLowerCase().endsWith(called.getName().toLowerCase())) {
-            caller.addCalledFunction(functionToCheck);
-            return true;
-        }
-        return false;
-    }
-
 }
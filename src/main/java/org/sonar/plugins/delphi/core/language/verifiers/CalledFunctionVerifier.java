@@ -55,14 +55,8 @@ public class CalledFunctionVerifier {
     }
 
     public boolean verify(Tree node) {
-        CommonTree nextNode = (CommonTree) node.getParent().getChild(node.getChildIndex() + 1);
-
-        // if we are on a ident token and it is not last
-        if (node.getType() == LexerMetrics.IDENT.toMetrics()
-                && nextNode != null
-                && (nextNode.getType() == LexerMetrics.LPAREN.toMetrics() || nextNode.getType() == LexerMetrics.SEMI
-                        .toMetrics())) {
-            String functionName = node.getText().toLowerCase();
+        String functionName = getCalledFunctionName(node);
+        if (functionName != null) {
             List<UnitInterface> unitsToLook = new ArrayList<UnitInterface>();
             unitsToLook.add(results.getActiveUnit()); // first we look in
                                                       // current unit for
@@ -94,6 +88,26 @@ public class CalledFunctionVerifier {
         return false; // not a function call (not like "foo(args);" or "foo;"
     }
 
+    /**
+     * Checks if node is a function call, without looking the function up
+     * 
+     * @param node node to check
+     * @return lowercase name of the called function, or null if node is not a
+     *         function call
+     */
+    public String getCalledFunctionName(Tree node) {
+        CommonTree nextNode = (CommonTree) node.getParent().getChild(node.getChildIndex() + 1);
+
+        // if we are on a ident token and it is not last
+        if (node.getType() == LexerMetrics.IDENT.toMetrics()
+                && nextNode != null
+                && (nextNode.getType() == LexerMetrics.LPAREN.toMetrics() || nextNode.getType() == LexerMetrics.SEMI
+                        .toMetrics())) {
+            return node.getText().toLowerCase();
+        }
+        return null;
+    }
+
     public FunctionInterface fetchCalledFunction() {
         return calledFunction;
     }
@@ -22,17 +22,16 @@
  */
 package org.sonar.plugins.delphi.core.language.verifiers;
 
-import java.util.List;
 import java.util.Stack;
 
-import org.antlr.runtime.Token;
+import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.tree.CommonTree;
 import org.antlr.runtime.tree.Tree;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
 import org.sonar.plugins.delphi.antlr.analyzer.LexerMetrics;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.core.language.StatementInterface;
 import org.sonar.plugins.delphi.core.language.impl.DelphiStatement;
-import org.sonar.plugins.delphi.cpd.DelphiCpdTokenizer;
 
 /**
  * Checks if a node can be transformed into a simple or complex statement
@@ -149,12 +148,11 @@ public class StatementVerifier {
             wholeLine.append(actualNode.getText());
         }
 
-        List<Token> tokens = new DelphiCpdTokenizer(delphiProjectHelper).tokenize(new String[] {wholeLine.toString()});
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(wholeLine.toString()));
         if (tokens.size() < MIN_TOKENS_FOR_COMPLEX_STMT) {
             return false; // at least 4 tokens: id, :=, id, ;
         }
-        Token second = tokens.get(1);
-        if (second.getType() == LexerMetrics.ASSIGN.toMetrics()) {
+        if (tokens.getType(1) == LexerMetrics.ASSIGN.toMetrics()) {
             lastStatementText = wholeLine.toString();
             return true;
         }
@@ -31,6 +31,7 @@ import net.sourceforge.pmd.cpd.Tokenizer;
 import org.sonar.api.batch.CpdMapping;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Resource;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
 import org.sonar.plugins.delphi.core.DelphiLanguage;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 
@@ -40,16 +41,18 @@ import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 public class DelphiCpdMapping implements CpdMapping {
 
     private final DelphiProjectHelper delphiProjectHelper;
+    private final DelphiASTCache astCache;
 
-    public DelphiCpdMapping(DelphiProjectHelper delphiProjectHelper) {
+    public DelphiCpdMapping(DelphiProjectHelper delphiProjectHelper, DelphiASTCache astCache) {
         this.delphiProjectHelper = delphiProjectHelper;
+        this.astCache = astCache;
     }
 
     /**
      * @return The language tokenizer
      */
     public Tokenizer getTokenizer() {
-        return new DelphiCpdTokenizer(delphiProjectHelper);
+        return new DelphiCpdTokenizer(delphiProjectHelper, astCache);
     }
 
     /**
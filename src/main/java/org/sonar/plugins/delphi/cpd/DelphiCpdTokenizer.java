@@ -27,7 +27,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import net.sourceforge.pmd.cpd.SourceCode;
 import net.sourceforge.pmd.cpd.TokenEntry;
@@ -37,6 +36,8 @@ import net.sourceforge.pmd.cpd.Tokens;
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.Token;
 import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
 import org.sonar.plugins.delphi.antlr.sanitizer.DelphiSourceSanitizer;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
@@ -48,10 +49,19 @@ public class DelphiCpdTokenizer implements Tokenizer {
 
     private final List<File> excluded;
     private final DelphiProjectHelper delphiProjectHelper;
+    private final DelphiASTCache astCache;
 
-    public DelphiCpdTokenizer(DelphiProjectHelper delphiProjectHelper) {
+    /**
+     * ctor
+     * 
+     * @param delphiProjectHelper project helper
+     * @param astCache store of parsed files, tells which files are included
+     *            by others (those are not tokenized)
+     */
+    public DelphiCpdTokenizer(DelphiProjectHelper delphiProjectHelper, DelphiASTCache astCache) {
         this.delphiProjectHelper = delphiProjectHelper;
         this.excluded = delphiProjectHelper.getExcludedSources();
+        this.astCache = astCache;
     }
 
     /**
@@ -70,24 +80,43 @@ public class DelphiCpdTokenizer implements Tokenizer {
     }
 
     private void doTokenize(Tokens cpdTokens, String fileName) {
-        try {
-            DelphiLexer lexer = new DelphiLexer(new DelphiSourceSanitizer(fileName));
-            Token token = lexer.nextToken();
-            while (token.getType() != Token.EOF) {
-                cpdTokens.add(new TokenEntry(token.getText(), fileName, token.getLine()));
-                token = lexer.nextToken();
+        DelphiTokenBuffer tokens = getParsedTokens(fileName);
+        if (tokens == null) {
+            try {
+                tokens = new DelphiTokenBuffer(new DelphiSourceSanitizer(fileName));
+            } catch (FileNotFoundException ex) {
+                DelphiUtils.LOG.error("Cpd could not find : " + fileName, ex);
+            } catch (IOException ex) {
+                DelphiUtils.LOG.error("Cpd IO Exception on " + fileName, ex);
+            }
+        }
+        if (tokens != null) {
+            for (int i = 0; i < tokens.size(); ++i) {
+                if (tokens.getType(i) != Token.EOF) {
+                    cpdTokens.add(new TokenEntry(tokens.getText(i), fileName, tokens.getLine(i)));
+                }
             }
-        } catch (FileNotFoundException ex) {
-            DelphiUtils.LOG.error("Cpd could not find : " + fileName, ex);
-        } catch (IOException ex) {
-            DelphiUtils.LOG.error("Cpd IO Exception on " + fileName, ex);
         }
         cpdTokens.add(TokenEntry.getEOF());
     }
 
+    /**
+     * Gets the tokens of a file already parsed by the sensors
+     * 
+     * @param fileName File name
+     * @return Lexed tokens, or null if the file could not be parsed
+     */
+    private DelphiTokenBuffer getParsedTokens(String fileName) {
+        try {
+            return astCache.getAST(new File(fileName)).getTokenBuffer();
+        } catch (Exception e) {
+            DelphiUtils.LOG.debug("Cpd could not reuse parsed file " + fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     private boolean canTokenize(String fileName) {
-        Set<String> includedFiles = DelphiSourceSanitizer.getIncludedFiles();
-        if (includedFiles.contains(fileName)) {
+        if (astCache.isIncludedFile(fileName)) {
             return false;
         }
         if (delphiProjectHelper.isExcluded(fileName, excluded)) {
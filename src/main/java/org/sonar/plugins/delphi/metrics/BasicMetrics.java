@@ -25,7 +25,9 @@ package org.sonar.plugins.delphi.metrics;
 import java.io.File;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -58,10 +60,19 @@ public class BasicMetrics extends DefaultMetrics implements MetricsInterface {
     public void analyse(InputFile resource, SensorContext sensorContext, List<ClassInterface> classes,
             List<FunctionInterface> functions,
             List<UnitInterface> units) {
+        analyse(new File(resource.absolutePath()));
+    }
+
+    /**
+     * Calculates metrics of a file, they only depend on the file content
+     * 
+     * @param file file to analyse
+     */
+    public void analyse(File file) {
         clearMetrics();
         Reader reader = null;
         try {
-            reader = new StringReader(FileUtils.readFileToString(new File(resource.absolutePath())));
+            reader = new StringReader(FileUtils.readFileToString(file));
             DelphiSource source = new DelphiSource(reader, new DelphiRecognizer());
             setMetric("LINES", source.getMeasure(Metric.LINES));
             setMetric("NCLOC", source.getMeasure(Metric.LINES_OF_CODE));
@@ -70,12 +81,29 @@ public class BasicMetrics extends DefaultMetrics implements MetricsInterface {
             setMetric("PUBLIC_DOC_API", source.getMeasure(Metric.PUBLIC_DOC_API));
             setMetric("FILES", 1.0);
         } catch (Exception e) {
-            DelphiUtils.LOG.error("BasicMetrics::analyse() -- Can not analyse the file " + resource.absolutePath(), e);
+            DelphiUtils.LOG.error("BasicMetrics::analyse() -- Can not analyse the file " + file.getAbsolutePath(), e);
         } finally {
             IOUtils.closeQuietly(reader);
         }
     }
 
+    /**
+     * @return metrics calculated by the last analysis, by key
+     */
+    public Map<String, Double> getMetrics() {
+        return new HashMap<String, Double>(metrics);
+    }
+
+    /**
+     * Sets metrics calculated before, instead of analysing the file again
+     * 
+     * @param values metrics by key, as returned by {@link #getMetrics()}
+     */
+    public void setMetrics(Map<String, Double> values) {
+        clearMetrics();
+        metrics.putAll(values);
+    }
+
     /**
      * {@inheritDoc}
      */
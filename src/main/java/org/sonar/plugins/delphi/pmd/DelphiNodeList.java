@@ -0,0 +1,162 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.sourceforge.pmd.ast.CompilationUnit;
+
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
+
+/**
+ * Nodes of an AST tree in document order (pre-order), given to PMD as the
+ * compilation units of a file. Nodes are not copied to the list: an iterator
+ * is a cursor going from a node to its first child, its next sibling or the
+ * next sibling of a parent. Nodes which are not DelphiPMDNodes (trees built by
+ * hand) are wrapped when they are read.
+ * 
+ * The list is read only. Its size and indexed access walk the tree, the size
+ * is counted once and reading indexes in increasing order continues the last
+ * walk. A list is used by one thread.
+ */
+public class DelphiNodeList extends AbstractList<CompilationUnit> {
+
+    private final Tree root;
+    private int size = -1;
+    private NodeCursor cursor = null;
+    private int cursorIndex = 0;
+
+    /**
+     * @param root Root of the tree, its descendants are the list elements
+     */
+    public DelphiNodeList(Tree root) {
+        this.root = root;
+    }
+
+    @Override
+    public Iterator<CompilationUnit> iterator() {
+        return new NodeCursor(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.getChildCount() == 0;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (NodeCursor nodes = new NodeCursor(root); nodes.hasNext(); nodes.advance()) {
+                ++count;
+            }
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public CompilationUnit get(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Node index " + index);
+        }
+        if (cursor == null || index < cursorIndex) {
+            cursor = new NodeCursor(root);
+            cursorIndex = 0;
+        }
+        while (cursorIndex < index && cursor.hasNext()) {
+            cursor.advance();
+            ++cursorIndex;
+        }
+        if (!cursor.hasNext()) {
+            throw new IndexOutOfBoundsException("Node index " + index + " of " + size());
+        }
+        return cursor.current();
+    }
+
+    /**
+     * Pre-order cursor over the descendants of a root
+     */
+    private static class NodeCursor implements Iterator<CompilationUnit> {
+
+        private final Tree root;
+        private Tree next;
+        private int depth = 1; // of the next node, root children are at 1
+        private int rootIndex = 0; // of the next node ancestor below the root
+
+        NodeCursor(Tree root) {
+            this.root = root;
+            next = root.getChildCount() == 0 ? null : root.getChild(0);
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public CompilationUnit next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            CompilationUnit node = current();
+            advance();
+            return node;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Nodes are read only");
+        }
+
+        CompilationUnit current() {
+            if (next instanceof DelphiPMDNode) {
+                return (DelphiPMDNode) next;
+            }
+            return new DelphiPMDNode((CommonTree) next);
+        }
+
+        void advance() {
+            Tree node = next;
+            if (node.getChildCount() > 0) {
+                next = node.getChild(0);
+                ++depth;
+                return;
+            }
+            while (depth > 1) {
+                Tree parent = node.getParent();
+                int sibling = node.getChildIndex() + 1;
+                if (sibling < parent.getChildCount()) {
+                    next = parent.getChild(sibling);
+                    return;
+                }
+                node = parent;
+                --depth;
+            }
+            ++rootIndex;
+            next = rootIndex < root.getChildCount() ? root.getChild(rootIndex) : null;
+        }
+    }
+
+}
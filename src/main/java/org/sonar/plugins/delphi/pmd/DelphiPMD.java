@@ -35,10 +35,10 @@ import net.sourceforge.pmd.SourceType;
 import net.sourceforge.pmd.ast.CompilationUnit;
 import net.sourceforge.pmd.ast.ParseException;
 
-import org.antlr.runtime.tree.CommonTree;
 import org.sonar.plugins.delphi.antlr.ast.ASTTree;
 import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
-import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
 
 /**
@@ -47,6 +47,24 @@ import org.sonar.plugins.delphi.utils.DelphiUtils;
 public class DelphiPMD {
 
     private Report report = new Report();
+    private final DelphiASTCache astCache;
+
+    /**
+     * C-tor, every processed file is parsed again
+     */
+    public DelphiPMD() {
+        this(null);
+    }
+
+    /**
+     * C-tor
+     * 
+     * @param astCache store of parsed files shared with other sensors, can be
+     *            null
+     */
+    public DelphiPMD(DelphiASTCache astCache) {
+        this.astCache = astCache;
+    }
 
     /**
      * Processes the file read by the reader against the rule set.
@@ -59,15 +77,86 @@ public class DelphiPMD {
      * @throws PMDException if the input could not be parsed or processed
      */
     public void processFile(File pmdFile, RuleSets ruleSets, RuleContext ctx) {
+        processFile(pmdFile, ruleSets, ctx, new PreprocessorContext(), report);
+    }
+
+    /**
+     * Processes the file against the rule set, preprocessing it with the
+     * include directories and definitions of its project. Violations are not
+     * added to {@link #getReport()}.
+     * 
+     * @param pmdFile file to process
+     * @param ruleSets set of rules to process against the file
+     * @param ctx context in which PMD is operating
+     * @param context preprocessor context of the project
+     * @return report of violations found in the file
+     */
+    public Report processFile(File pmdFile, RuleSets ruleSets, RuleContext ctx, PreprocessorContext context) {
+        Report fileReport = new Report();
+        processFile(pmdFile, ruleSets, ctx, context, fileReport);
+        return fileReport;
+    }
+
+    /**
+     * Parses a file, or gets it from the store of parsed files
+     * 
+     * @param pmdFile file to parse
+     * @param context preprocessor context of the project
+     * @return parsed file
+     */
+    public DelphiAST getAST(File pmdFile, PreprocessorContext context) {
+        return astCache == null ? new DelphiAST(pmdFile, context) : astCache.getAST(pmdFile, context);
+    }
+
+    /**
+     * Parses a file with several preprocessor contexts, or gets it from the
+     * store of parsed files
+     * 
+     * @param pmdFile file to parse
+     * @param contexts preprocessor contexts (build configurations) of the
+     *            project
+     * @return parsed file, for every context
+     */
+    public List<DelphiAST> getASTs(File pmdFile, List<PreprocessorContext> contexts) {
+        if (astCache != null) {
+            return astCache.getASTs(pmdFile, contexts);
+        }
+        List<DelphiAST> asts = new ArrayList<DelphiAST>();
+        for (PreprocessorContext context : contexts) {
+            asts.add(new DelphiAST(pmdFile, context));
+        }
+        return asts;
+    }
+
+    /**
+     * Processes an already parsed file against the rule set
+     * 
+     * @param pmdFile processed file
+     * @param ast parsed file
+     * @param ruleSets set of rules to process against the file
+     * @param ctx context in which PMD is operating
+     * @return report of violations found in the file
+     */
+    public Report processFile(File pmdFile, DelphiAST ast, RuleSets ruleSets, RuleContext ctx) {
+        Report fileReport = new Report();
+        processFile(pmdFile, ast, ruleSets, ctx, fileReport);
+        return fileReport;
+    }
+
+    private void processFile(File pmdFile, RuleSets ruleSets, RuleContext ctx, PreprocessorContext context,
+            Report fileReport) {
+        processFile(pmdFile, getAST(pmdFile, context), ruleSets, ctx, fileReport);
+    }
+
+    private void processFile(File pmdFile, DelphiAST ast, RuleSets ruleSets, RuleContext ctx, Report fileReport) {
         try {
             ctx.setSourceCodeFile(pmdFile);
-            ctx.setReport(report);
+            ctx.setReport(fileReport);
 
             if (ruleSets.applies(ctx.getSourceCodeFile())) {
                 Language language = Language.JAVA;
                 ctx.setSourceType(SourceType.JAVA_16);
 
-                DelphiAST ast = new DelphiAST(pmdFile);
                 if (ast.isError()) {
                     throw new ParseException("grammar error");
                 }
@@ -82,38 +171,11 @@ public class DelphiPMD {
 
     /**
      * @param ast AST tree
-     * @return AST tree nodes ready for parsing by PMD
+     * @return AST tree nodes ready for parsing by PMD, in document order. The
+     *         nodes are read from the tree when the list is iterated.
      */
     public List<CompilationUnit> getNodesFromAST(ASTTree ast) {
-        List<CompilationUnit> nodes = new ArrayList<CompilationUnit>();
-
-        for (int i = 0; i < ast.getChildCount(); ++i) {
-            indexNode((CommonTree) ast.getChild(i), nodes); // index all nodes
-        }
-
-        return nodes;
-    }
-
-    /**
-     * Adds children nodes to list
-     * 
-     * @param node Parent node
-     * @param list List
-     */
-    public void indexNode(CommonTree node, List<CompilationUnit> list) {
-        if (node == null) {
-            return;
-        }
-
-        if (node instanceof DelphiPMDNode) {
-            list.add((DelphiPMDNode) node);
-        } else {
-            list.add(new DelphiPMDNode(node));
-        }
-
-        for (int i = 0; i < node.getChildCount(); ++i) {
-            indexNode((CommonTree) node.getChild(i), list);
-        }
+        return new DelphiNodeList(ast);
     }
 
     /**
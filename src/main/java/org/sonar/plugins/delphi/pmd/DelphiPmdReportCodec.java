@@ -0,0 +1,104 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import net.sourceforge.pmd.IRuleViolation;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+
+import org.apache.commons.lang.StringUtils;
+import org.sonar.plugins.delphi.pmd.rules.DelphiRule;
+
+/**
+ * Encodes PMD violations of a file, so they can be kept in the analysis cache
+ */
+public final class DelphiPmdReportCodec {
+
+    private DelphiPmdReportCodec() {
+    }
+
+    /**
+     * Encodes violations of a file
+     * 
+     * @param fileReport violations of a single file
+     * @return encoded violations
+     * @throws IOException never, encoding is done in memory
+     */
+    public static byte[] encode(Report fileReport) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(fileReport.size());
+        Iterator<IRuleViolation> iterator = fileReport.iterator();
+        while (iterator.hasNext()) {
+            IRuleViolation violation = iterator.next();
+            out.writeUTF(violation.getRule().getName());
+            out.writeUTF(StringUtils.defaultString(violation.getClassName()));
+            out.writeUTF(StringUtils.defaultString(violation.getMethodName()));
+            out.writeUTF(StringUtils.defaultString(violation.getPackageName()));
+            out.writeInt(violation.getBeginLine());
+            out.writeInt(violation.getBeginColumn());
+            out.writeUTF(StringUtils.defaultString(violation.getDescription()));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes violations of a file
+     * 
+     * @param data encoded violations
+     * @param rules rules by name
+     * @param ctx rule context, with the source file set
+     * @return report of the file, null if a rule no longer exists
+     * @throws IOException if data is not valid
+     */
+    public static Report decode(byte[] data, Map<String, DelphiRule> rules, RuleContext ctx) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        Report fileReport = new Report();
+        int violations = in.readInt();
+        for (int i = 0; i < violations; ++i) {
+            DelphiRule rule = rules.get(in.readUTF());
+            String className = in.readUTF();
+            String methodName = in.readUTF();
+            String packageName = in.readUTF();
+            int line = in.readInt();
+            int column = in.readInt();
+            String description = in.readUTF();
+            if (rule == null) {
+                return null;
+            }
+            fileReport.addRuleViolation(new DelphiRuleViolation(rule, ctx, className, methodName, packageName, line,
+                    column, description));
+        }
+        return fileReport;
+    }
+
+}
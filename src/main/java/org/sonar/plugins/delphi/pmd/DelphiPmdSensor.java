@@ -24,25 +24,28 @@ package org.sonar.plugins.delphi.pmd;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.pmd.Report;
-import net.sourceforge.pmd.RuleContext;
-import net.sourceforge.pmd.RuleSetFactory;
-import net.sourceforge.pmd.RuleSets;
-import net.sourceforge.pmd.renderers.Renderer;
-import net.sourceforge.pmd.renderers.XMLRenderer;
 
-import org.apache.commons.io.FileUtils;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.resources.Project;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
-import org.sonar.plugins.delphi.pmd.profile.DelphiRuleSets;
-import org.sonar.plugins.delphi.pmd.xml.DelphiPmdXmlReportParser;
 import org.sonar.plugins.delphi.project.DelphiProject;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
 import org.sonar.plugins.delphi.utils.ProgressReporter;
@@ -53,15 +56,23 @@ import org.sonar.plugins.delphi.utils.ProgressReporterLogger;
  */
 public class DelphiPmdSensor implements Sensor {
 
+    private static final int FILES_AHEAD_FACTOR = 4; // files processed ahead
+                                                     // per thread
+
     private final ResourcePerspectives perspectives;
     private final DelphiProjectHelper delphiProjectHelper;
+    private final DelphiASTCache astCache;
+    private final DelphiAnalysisCache analysisCache;
 
     /**
      * C-tor
      */
-    public DelphiPmdSensor(DelphiProjectHelper delphiProjectHelper, ResourcePerspectives perspectives) {
+    public DelphiPmdSensor(DelphiProjectHelper delphiProjectHelper, ResourcePerspectives perspectives,
+            DelphiASTCache astCache, DelphiAnalysisCache analysisCache) {
         this.delphiProjectHelper = delphiProjectHelper;
         this.perspectives = perspectives;
+        this.astCache = astCache;
+        this.analysisCache = analysisCache;
     }
 
     /**
@@ -69,79 +80,211 @@ public class DelphiPmdSensor implements Sensor {
      */
 
     public void analyse(Project project, SensorContext context) {
-        // creating report
-        File reportFile = createPmdReport(project);
+        DelphiPmdViolationSink sink = new DelphiPmdViolationSink(delphiProjectHelper, perspectives);
+        if (delphiProjectHelper.isPmdXmlReportEnabled()) {
+            try {
+                sink.openXmlReport(new File(delphiProjectHelper.workDir().getAbsolutePath(), "pmd-report.xml"));
+            } catch (IOException e) {
+                DelphiUtils.LOG.error("Could not generate PMD report file.");
+            }
+        }
 
-        // analysing report
-        DelphiPmdXmlReportParser parser = new DelphiPmdXmlReportParser(delphiProjectHelper, perspectives);
-        parser.parse(reportFile);
+        // counters are shared with the other sensors using the cache
+        int hits = analysisCache.getHits();
+        int misses = analysisCache.getMisses();
+        try {
+            processFiles(sink);
+        } finally {
+            sink.closeXmlReport();
+        }
+        DelphiUtils.LOG.info("PMD violations: " + sink.getViolationsCount());
+        if (analysisCache.isEnabled()) {
+            DelphiUtils.LOG.info("PMD analysis cache: " + (analysisCache.getHits() - hits) + " files reused, "
+                    + (analysisCache.getMisses() - misses) + " files analysed");
+        }
+        astCache.logStatistics();
     }
 
-    private RuleSets createRuleSets() {
-        RuleSets rulesets = new DelphiRuleSets();
-        RuleSetFactory ruleSetFactory = new RuleSetFactory();
-        rulesets.addRuleSet(ruleSetFactory
-                .createRuleSet(getClass().getResourceAsStream(
-                        "/org/sonar/plugins/delphi/pmd/rules.xml")));
-        return rulesets;
-    }
+    /**
+     * Processes project files, violations of a file are sent to the sink in
+     * file order as soon as the file (and all files before it) were processed.
+     * Files of a project with several build configurations are processed with
+     * every configuration, and the union of their violations is reported.
+     * With more than one analysis thread, files are processed concurrently by
+     * workers having their own rule instances. A file having the same content
+     * key as a file before it is not processed, the violations of that file
+     * are reported for it.
+     * 
+     * @param sink violation sink
+     */
+    private void processFiles(DelphiPmdViolationSink sink) {
+        List<File> excluded = delphiProjectHelper.getExcludedSources();
+        List<File> files = new ArrayList<File>();
+        List<List<PreprocessorContext>> contexts = new ArrayList<List<PreprocessorContext>>();
 
-    private File createPmdReport(Project project) {
+        List<DelphiProject> projects = delphiProjectHelper.getWorkgroupProjects();
+        for (DelphiProject delphiProject : projects) // for every .dproj
+                                                     // file
+        {
+            DelphiUtils.LOG.info("PMD Parsing project "
+                    + delphiProject.getName());
+            List<PreprocessorContext> projectContexts = new ArrayList<PreprocessorContext>();
+            for (List<String> definitions : delphiProject.getConfigurationDefinitions()) {
+                projectContexts.add(new PreprocessorContext(delphiProject.getIncludeDirectories(), definitions,
+                        astCache.getIncludeCache()));
+            }
+            for (File pmdFile : delphiProject.getSourceFiles()) {
+                if (!delphiProjectHelper.isExcluded(pmdFile, excluded)) {
+                    files.add(pmdFile);
+                    contexts.add(projectContexts);
+                }
+            }
+        }
+
+        ContentReports contentReports = new ContentReports(files, contexts, astCache);
+        ProgressReporter progressReporter = new ProgressReporter(files.size(), 10, new ProgressReporterLogger(
+                DelphiUtils.LOG));
+        int threads = Math.min(delphiProjectHelper.getAnalysisThreads(), files.size());
+        if (threads <= 1) {
+            DelphiPmdWorker worker = new DelphiPmdWorker(astCache, analysisCache);
+            for (int i = 0; i < files.size(); ++i) {
+                Report report = contentReports.isDuplicate(i) ? null : worker.process(files.get(i), contexts.get(i));
+                sink.addFileReport(contentReports.report(i, report, worker));
+                progressReporter.progress();
+            }
+            return;
+        }
+
+        BlockingQueue<DelphiPmdWorker> workers = new ArrayBlockingQueue<DelphiPmdWorker>(threads);
+        for (int i = 0; i < threads; ++i) {
+            workers.add(new DelphiPmdWorker(astCache, analysisCache));
+        }
+        DelphiPmdWorker mainWorker = null; // copies violations of duplicates
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Report>> reports = new ArrayList<Future<Report>>();
         try {
-            DelphiPMD pmd = new DelphiPMD();
-            RuleContext ruleContext = new RuleContext();
-            RuleSets ruleSets = createRuleSets();
-
-            List<File> excluded = delphiProjectHelper.getExcludedSources();
-
-            List<DelphiProject> projects = delphiProjectHelper.getWorkgroupProjects();
-            for (DelphiProject delphiProject : projects) // for every .dproj
-                                                         // file
-            {
-                DelphiUtils.LOG.info("PMD Parsing project "
-                        + delphiProject.getName());
-                ProgressReporter progressReporter = new ProgressReporter(
-                        delphiProject.getSourceFiles().size(), 10,
-                        new ProgressReporterLogger(DelphiUtils.LOG));
-                for (File pmdFile : delphiProject.getSourceFiles()) {
-                    progressReporter.progress();
-                    if (delphiProjectHelper.isExcluded(pmdFile, excluded)) {
-                        continue;
+            int submitted = 0;
+            for (int i = 0; i < files.size(); ++i) {
+                int window = Math.min(files.size(), i + threads * FILES_AHEAD_FACTOR);
+                for (; submitted < window; ++submitted) {
+                    reports.add(contentReports.isDuplicate(submitted) ? null : executor.submit(new FileProcessing(
+                            workers, files.get(submitted), contexts.get(submitted))));
+                }
+                Report report = null;
+                if (reports.get(i) == null) {
+                    if (mainWorker == null) {
+                        mainWorker = new DelphiPmdWorker(astCache, analysisCache);
                     }
-                    pmd.processFile(pmdFile, ruleSets, ruleContext);
+                } else {
+                    report = getReport(reports.get(i), files.get(i));
+                }
+                sink.addFileReport(contentReports.report(i, report, mainWorker));
+                reports.set(i, null);
+                progressReporter.progress();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Report getReport(Future<Report> report, File pmdFile) {
+        try {
+            return report.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing " + pmdFile, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("PMD error while processing " + pmdFile, e.getCause());
+        }
+    }
+
+    /**
+     * Violations of files having the same content key, see
+     * {@link DelphiASTCache#getContentKey(File, List)}. The violations of the
+     * first file of a key are kept until they were reported for every other
+     * file of the key.
+     */
+    private static class ContentReports {
+
+        private final List<File> files;
+        private final List<List<PreprocessorContext>> contexts;
+        private final List<String> contentKeys = new ArrayList<String>();
+        private final boolean[] duplicates;
+        private final Map<String, Integer> remaining = new HashMap<String, Integer>();
+        private final Map<String, Report> reports = new HashMap<String, Report>();
+
+        ContentReports(List<File> files, List<List<PreprocessorContext>> contexts, DelphiASTCache astCache) {
+            this.files = files;
+            this.contexts = contexts;
+            this.duplicates = new boolean[files.size()];
+            for (int i = 0; i < files.size(); ++i) {
+                String contentKey = astCache.getContentKey(files.get(i), contexts.get(i));
+                contentKeys.add(contentKey);
+                if (contentKey != null) {
+                    Integer count = remaining.get(contentKey);
+                    remaining.put(contentKey, count == null ? 0 : count + 1);
+                    duplicates[i] = count != null;
                 }
             }
+        }
 
-            // write xml report
-            return writeXmlReport(project, pmd.getReport());
-        } catch (IOException e) {
-            DelphiUtils.LOG.error("Could not generate PMD report file.");
-            return null;
+        /**
+         * @param index file index
+         * @return true if a file before it has the same content key
+         */
+        boolean isDuplicate(int index) {
+            return duplicates[index];
+        }
+
+        /**
+         * Gets the violations of a file, in file order
+         * 
+         * @param index file index
+         * @param report violations found in the file, null if it is a
+         *            duplicate
+         * @param worker worker copying violations to duplicates
+         * @return violations of the file
+         */
+        Report report(int index, Report report, DelphiPmdWorker worker) {
+            String contentKey = contentKeys.get(index);
+            if (report != null) {
+                if (contentKey != null && remaining.get(contentKey) > 0) {
+                    reports.put(contentKey, report);
+                }
+                return report;
+            }
+
+            int count = remaining.get(contentKey) - 1;
+            remaining.put(contentKey, count);
+            Report processed = count > 0 ? reports.get(contentKey) : reports.remove(contentKey);
+            Report relocated = worker.relocate(processed, files.get(index));
+            return relocated == null ? worker.process(files.get(index), contexts.get(index)) : relocated;
         }
     }
 
     /**
-     * Generates an XML file from report
-     * 
-     * @param project Project
-     * @param report Report
-     * @return XML based on report
-     * @throws IOException When report could not be generated
+     * Processes a file with the first available worker
      */
-    private File writeXmlReport(Project project, Report report)
-            throws IOException {
-        Renderer xmlRenderer = new XMLRenderer();
-        Writer stringwriter = new StringWriter();
-        xmlRenderer.setWriter(stringwriter);
-        xmlRenderer.start();
-        xmlRenderer.renderFileReport(report);
-        xmlRenderer.end();
-
-        File xmlReport = new File(delphiProjectHelper.workDir().getAbsolutePath(), "pmd-report.xml");
-        DelphiUtils.LOG.info("PMD output report: "
-                + xmlReport.getAbsolutePath());
-        FileUtils.writeStringToFile(xmlReport, stringwriter.toString());
-        return xmlReport;
+    private static class FileProcessing implements Callable<Report> {
+
+        private final BlockingQueue<DelphiPmdWorker> workers;
+        private final File pmdFile;
+        private final List<PreprocessorContext> contexts;
+
+        FileProcessing(BlockingQueue<DelphiPmdWorker> workers, File pmdFile, List<PreprocessorContext> contexts) {
+            this.workers = workers;
+            this.pmdFile = pmdFile;
+            this.contexts = contexts;
+        }
+
+        public Report call() throws InterruptedException {
+            DelphiPmdWorker worker = workers.take();
+            try {
+                return worker.process(pmdFile, contexts);
+            } finally {
+                workers.add(worker);
+            }
+        }
     }
 
     /**
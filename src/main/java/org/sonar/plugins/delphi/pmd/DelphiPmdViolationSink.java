@@ -0,0 +1,159 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+import net.sourceforge.pmd.IRuleViolation;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.renderers.XMLRenderer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Turns PMD violations into issues as soon as a file was processed, so
+ * violations of the whole project are never held in memory. Violations can
+ * also be streamed to an XML report, for debugging purposes.
+ */
+public class DelphiPmdViolationSink {
+
+    private final DelphiProjectHelper delphiProjectHelper;
+    private final ResourcePerspectives perspectives;
+    private XMLRenderer xmlRenderer = null;
+    private int violations = 0;
+
+    /**
+     * C-tor
+     * 
+     * @param delphiProjectHelper project helper
+     * @param perspectives perspectives used to create issues
+     */
+    public DelphiPmdViolationSink(DelphiProjectHelper delphiProjectHelper, ResourcePerspectives perspectives) {
+        this.delphiProjectHelper = delphiProjectHelper;
+        this.perspectives = perspectives;
+    }
+
+    /**
+     * Streams violations to an XML report, in addition to creating issues
+     * 
+     * @param xmlReport XML report file
+     * @throws IOException if report could not be created
+     */
+    public void openXmlReport(File xmlReport) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(xmlReport), "UTF-8"));
+        xmlRenderer = new XMLRenderer();
+        xmlRenderer.setWriter(writer);
+        try {
+            xmlRenderer.start();
+        } catch (IOException e) {
+            closeXmlReport();
+            throw e;
+        }
+        DelphiUtils.LOG.info("PMD output report: " + xmlReport.getAbsolutePath());
+    }
+
+    /**
+     * Creates issues for violations of a processed file
+     * 
+     * @param fileReport violations of a single file
+     */
+    public void addFileReport(Report fileReport) {
+        if (fileReport.isEmpty()) {
+            return;
+        }
+
+        Iterator<IRuleViolation> iterator = fileReport.iterator();
+        while (iterator.hasNext()) {
+            IRuleViolation violation = iterator.next();
+            addIssue(violation.getRule().getName(), violation.getFilename(), violation.getBeginLine(),
+                    StringUtils.trim(violation.getDescription()));
+            ++violations;
+        }
+
+        if (xmlRenderer != null) {
+            try {
+                xmlRenderer.renderFileViolations(fileReport.iterator());
+            } catch (IOException e) {
+                DelphiUtils.LOG.error("Could not write PMD report file, disabling it: " + e.getMessage());
+                closeXmlReport();
+            }
+        }
+    }
+
+    /**
+     * Ends the XML report, if any
+     */
+    public void closeXmlReport() {
+        if (xmlRenderer == null) {
+            return;
+        }
+        try {
+            xmlRenderer.end();
+        } catch (IOException e) {
+            DelphiUtils.LOG.error("Could not end PMD report file: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(xmlRenderer.getWriter());
+            xmlRenderer = null;
+        }
+    }
+
+    /**
+     * @return number of violations turned into issues
+     */
+    public int getViolationsCount() {
+        return violations;
+    }
+
+    private void addIssue(String ruleKey, String fileName, int line, String message) {
+
+        DelphiUtils.LOG.debug("PMD Violation - rule: " + ruleKey + " file: " + fileName + " message: " + message);
+
+        InputFile inputFile = delphiProjectHelper.getFile(fileName);
+
+        Issuable issuable = perspectives.as(Issuable.class, inputFile);
+        if (issuable != null) {
+            Issue issue = issuable.newIssueBuilder()
+                    .ruleKey(RuleKey.of(DelphiPmdConstants.REPOSITORY_KEY, ruleKey))
+                    .line(line)
+                    .message(message)
+                    .build();
+            issuable.addIssue(issue);
+        }
+
+    }
+
+}
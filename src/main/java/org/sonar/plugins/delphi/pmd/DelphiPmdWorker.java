@@ -0,0 +1,240 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.IRuleViolation;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
+import org.sonar.plugins.delphi.pmd.profile.DelphiRuleSets;
+import org.sonar.plugins.delphi.pmd.rules.DelphiRule;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Processes files with its own rule instances and rule context. Rules keep
+ * per-file state in fields, so a worker must process one file at a time, but
+ * several workers can run concurrently.
+ */
+public class DelphiPmdWorker {
+
+    private static final String RULES_RESOURCE = "/org/sonar/plugins/delphi/pmd/rules.xml";
+    private static final String CACHE_SECTION_PREFIX = "pmd-";
+
+    private final DelphiPMD pmd;
+    private final DelphiAnalysisCache analysisCache;
+    private final RuleSets ruleSets;
+    private final Map<String, DelphiRule> rules = new HashMap<String, DelphiRule>();
+    private final RuleContext ruleContext = new RuleContext();
+    private String cacheSection;
+
+    /**
+     * C-tor
+     * 
+     * @param astCache store of parsed files shared with other sensors, can be
+     *            null
+     */
+    public DelphiPmdWorker(DelphiASTCache astCache) {
+        this(astCache, null);
+    }
+
+    /**
+     * C-tor
+     * 
+     * @param astCache store of parsed files shared with other sensors, can be
+     *            null
+     * @param analysisCache violations kept from previous analyses, can be null
+     */
+    public DelphiPmdWorker(DelphiASTCache astCache, DelphiAnalysisCache analysisCache) {
+        this.pmd = new DelphiPMD(astCache);
+        this.analysisCache = analysisCache;
+        this.ruleSets = createRuleSets();
+    }
+
+    private RuleSets createRuleSets() {
+        byte[] definition = readRulesDefinition();
+        CRC32 checksum = new CRC32();
+        checksum.update(definition);
+        cacheSection = CACHE_SECTION_PREFIX + Long.toHexString(checksum.getValue());
+
+        RuleSets rulesets = new DelphiRuleSets();
+        RuleSetFactory ruleSetFactory = new RuleSetFactory();
+        RuleSet ruleSet = ruleSetFactory.createRuleSet(new ByteArrayInputStream(definition));
+        Iterator<Rule> iterator = ruleSet.getRules().iterator();
+        while (iterator.hasNext()) {
+            Rule rule = iterator.next();
+            if (rule instanceof DelphiRule) {
+                rules.put(rule.getName(), (DelphiRule) rule);
+            }
+        }
+        rulesets.addRuleSet(ruleSet);
+        return rulesets;
+    }
+
+    private byte[] readRulesDefinition() {
+        InputStream in = getClass().getResourceAsStream(RULES_RESOURCE);
+        try {
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + RULES_RESOURCE, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Processes a file, or gets its violations from the analysis cache when
+     * neither the file nor its includes changed since they were stored
+     * 
+     * @param pmdFile file to process
+     * @param context preprocessor context of the file project
+     * @return report of violations found in the file
+     */
+    public Report process(File pmdFile, PreprocessorContext context) {
+        if (!isCacheEnabled()) {
+            return pmd.processFile(pmdFile, ruleSets, ruleContext, context);
+        }
+
+        Report report = loadReport(pmdFile, context);
+        if (report != null) {
+            return report;
+        }
+        return process(pmdFile, pmd.getAST(pmdFile, context), context);
+    }
+
+    /**
+     * Processes a file with several preprocessor contexts (build
+     * configurations) and merges their violations. The file is scanned for
+     * compiler directives once for all contexts, and a violation found in
+     * several configurations is reported once.
+     * 
+     * @param pmdFile file to process
+     * @param contexts preprocessor contexts of the file project
+     * @return union of the violations found with every context
+     */
+    public Report process(File pmdFile, List<PreprocessorContext> contexts) {
+        if (contexts.size() == 1) {
+            return process(pmdFile, contexts.get(0));
+        }
+
+        Report union = new Report();
+        Set<String> found = new HashSet<String>();
+        List<PreprocessorContext> parsing = new ArrayList<PreprocessorContext>();
+        for (PreprocessorContext context : contexts) {
+            Report report = isCacheEnabled() ? loadReport(pmdFile, context) : null;
+            if (report == null) {
+                parsing.add(context);
+            } else {
+                addViolations(report, union, found);
+            }
+        }
+        List<DelphiAST> asts = pmd.getASTs(pmdFile, parsing);
+        for (int i = 0; i < asts.size(); ++i) {
+            addViolations(process(pmdFile, asts.get(i), parsing.get(i)), union, found);
+        }
+        return union;
+    }
+
+    /**
+     * Reports violations found in a file for another file with the same
+     * content key, see {@link DelphiASTCache#getContentKey(File, List)}
+     * 
+     * @param report violations found in a file with the same content
+     * @param pmdFile file to report violations for
+     * @return report of the file violations, null if violations could not be
+     *         copied
+     */
+    public Report relocate(Report report, File pmdFile) {
+        ruleContext.setSourceCodeFile(pmdFile);
+        try {
+            return DelphiPmdReportCodec.decode(DelphiPmdReportCodec.encode(report), rules, ruleContext);
+        } catch (IOException e) {
+            DelphiUtils.LOG.debug("Could not copy PMD violations to " + pmdFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Report process(File pmdFile, DelphiAST ast, PreprocessorContext context) {
+        Report report = pmd.processFile(pmdFile, ast, ruleSets, ruleContext);
+        if (isCacheEnabled() && !ast.isError()) {
+            try {
+                analysisCache.store(cacheSection, pmdFile, context, ast.getIncludedFiles(),
+                        DelphiPmdReportCodec.encode(report));
+            } catch (IOException e) {
+                DelphiUtils.LOG.debug("Could not encode PMD violations of " + pmdFile + ": " + e.getMessage());
+            }
+        }
+        return report;
+    }
+
+    private boolean isCacheEnabled() {
+        return analysisCache != null && analysisCache.isEnabled();
+    }
+
+    private static void addViolations(Report report, Report union, Set<String> found) {
+        Iterator<IRuleViolation> iterator = report.iterator();
+        while (iterator.hasNext()) {
+            IRuleViolation violation = iterator.next();
+            if (found.add(violation.getRule().getName() + ':' + violation.getBeginLine() + ':'
+                    + violation.getBeginColumn() + ':' + violation.getDescription())) {
+                union.addRuleViolation(violation);
+            }
+        }
+    }
+
+    private Report loadReport(File pmdFile, PreprocessorContext context) {
+        byte[] data = analysisCache.load(cacheSection, pmdFile, context);
+        if (data == null) {
+            return null;
+        }
+        ruleContext.setSourceCodeFile(pmdFile);
+        try {
+            return DelphiPmdReportCodec.decode(data, rules, ruleContext);
+        } catch (IOException e) {
+            DelphiUtils.LOG.debug("Could not decode PMD violations of " + pmdFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -25,8 +25,10 @@ package org.sonar.plugins.delphi.pmd;
 import java.util.List;
 
 import net.sourceforge.pmd.Language;
+import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleChain;
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.ast.CompilationUnit;
 
 /**
@@ -36,6 +38,13 @@ public class DelphiRuleChain extends RuleChain {
 
     private DelphiRuleChainVisitor visitor = new DelphiRuleChainVisitor();
 
+    @Override
+    public void add(RuleSet ruleSet) {
+        for (Rule rule : ruleSet.getRules()) {
+            visitor.add(ruleSet, rule);
+        }
+    }
+
     @Override
     public void apply(List<CompilationUnit> astCompilationUnits, RuleContext ctx, Language language) {
         visitor.visitAll(astCompilationUnits, ctx);
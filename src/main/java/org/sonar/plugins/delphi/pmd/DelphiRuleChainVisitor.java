@@ -22,28 +22,122 @@
  */
 package org.sonar.plugins.delphi.pmd;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.pmd.AbstractRuleChainVisitor;
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.ast.CompilationUnit;
 import net.sourceforge.pmd.ast.JavaNode;
 import net.sourceforge.pmd.ast.SimpleNode;
 
+import org.sonar.plugins.delphi.antlr.ast.ASTTree;
+import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
+import org.sonar.plugins.delphi.pmd.rules.DelphiRule;
+import org.sonar.plugins.delphi.pmd.rules.XPathRule;
+import org.sonar.plugins.delphi.pmd.xpath.DelphiXPathBatch;
+
 /**
- * Delphi pmd rule chain visitor
+ * Delphi pmd rule chain visitor. Indexes nodes of a file by their type once,
+ * then gives every rule using the rule chain only the nodes it asked for.
+ * XPath rules using the rule chain are evaluated together in one walk over
+ * the tree.
  */
 public class DelphiRuleChainVisitor extends AbstractRuleChainVisitor {
 
+    private final Map<Integer, List<DelphiPMDNode>> typeToNodes = new HashMap<Integer, List<DelphiPMDNode>>();
+    private final Map<RuleSet, DelphiXPathBatch<XPathRule>> xPathBatches = new HashMap<RuleSet, DelphiXPathBatch<XPathRule>>();
+
+    @Override
+    public void visitAll(List<CompilationUnit> astCompilationUnits, RuleContext ctx) {
+        typeToNodes.clear();
+        indexNodes(astCompilationUnits, ctx);
+
+        for (Map.Entry<RuleSet, List<Rule>> entry : ruleSetRules.entrySet()) {
+            if (!entry.getKey().applies(ctx.getSourceCodeFile())) {
+                continue;
+            }
+            for (Rule rule : entry.getValue()) {
+                if (rule instanceof DelphiRule && !(rule instanceof XPathRule) && rule.usesRuleChain()) {
+                    ((DelphiRule) rule).visitIndex(typeToNodes, ctx);
+                }
+            }
+            if (!astCompilationUnits.isEmpty()) {
+                ASTTree astTree = ((DelphiPMDNode) astCompilationUnits.get(0)).getASTTree();
+                visitXPathRules(getXPathBatch(entry.getKey(), entry.getValue()), astTree, ctx);
+            }
+        }
+    }
+
+    private void visitXPathRules(DelphiXPathBatch<XPathRule> batch, ASTTree astTree, RuleContext ctx) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<XPathRule, Set<Object>> result : batch.evaluate(astTree).entrySet()) {
+            result.getKey().addViolations(result.getValue(), astTree, ctx);
+        }
+    }
+
+    private DelphiXPathBatch<XPathRule> getXPathBatch(RuleSet ruleSet, List<Rule> rules) {
+        DelphiXPathBatch<XPathRule> batch = xPathBatches.get(ruleSet);
+        if (batch == null) {
+            batch = new DelphiXPathBatch<XPathRule>();
+            for (Rule rule : rules) {
+                if (rule instanceof XPathRule && rule.usesRuleChain()) {
+                    batch.add((XPathRule) rule, ((XPathRule) rule).getXPath());
+                }
+            }
+            xPathBatches.put(ruleSet, batch);
+        }
+        return batch;
+    }
+
     @Override
     protected void visit(Rule rule, SimpleNode node, RuleContext ctx) {
         ((JavaNode) node).jjtAccept((DelphiParserVisitor) rule, ctx);
     }
 
+    /**
+     * Indexes nodes by type, skipping the same nodes DelphiRule.visitAll would
+     * skip (//NOSONAR lines and nodes going back before the last visited line)
+     */
     @Override
     protected void indexNodes(List<CompilationUnit> astCompilationUnits, RuleContext ctx) {
+        int lastLineParsed = -1;
+        for (CompilationUnit unit : astCompilationUnits) {
+            DelphiPMDNode node = (DelphiPMDNode) unit;
+            ASTTree ast = node.getASTTree();
+            if (ast != null) {
+                String codeLine = ast.getFileSourceLine(node.getLine());
+                if (codeLine.trim().endsWith("//NOSONAR") && node.getLine() + 1 > lastLineParsed) {
+                    lastLineParsed = node.getLine() + 1;
+                }
+            }
+
+            if (node.getLine() >= lastLineParsed) {
+                List<DelphiPMDNode> nodes = typeToNodes.get(node.getType());
+                if (nodes == null) {
+                    nodes = new ArrayList<DelphiPMDNode>();
+                    typeToNodes.put(node.getType(), nodes);
+                }
+                nodes.add(node);
+                lastLineParsed = node.getLine();
+            }
+        }
+    }
 
+    /**
+     * @param type node type
+     * @return indexed nodes of given type from the last visited file
+     */
+    public List<DelphiPMDNode> getNodes(int type) {
+        List<DelphiPMDNode> nodes = typeToNodes.get(type);
+        return nodes == null ? new ArrayList<DelphiPMDNode>() : nodes;
     }
 
 }
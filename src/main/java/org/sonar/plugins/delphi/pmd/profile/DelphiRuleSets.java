@@ -45,6 +45,7 @@ public class DelphiRuleSets extends RuleSets {
 
     @Override
     public void apply(List<CompilationUnit> acuList, RuleContext ctx, Language language) {
+        delphiRuleChain.apply(acuList, ctx, language);
         for (RuleSet ruleSet : ruleSets) {
             if (applies(language, ruleSet.getLanguage()) && ruleSet.applies(ctx.getSourceCodeFile())) {
                 ruleSet.apply(acuList, ctx);
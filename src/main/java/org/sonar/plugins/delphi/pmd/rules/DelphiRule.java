@@ -22,8 +22,12 @@
  */
 package org.sonar.plugins.delphi.pmd.rules;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.pmd.AbstractJavaRule;
 import net.sourceforge.pmd.PropertyDescriptor;
@@ -43,6 +47,8 @@ public class DelphiRule extends AbstractJavaRule {
 
     protected int lastLineParsed;
 
+    private final Set<Integer> ruleChainTypes = new HashSet<Integer>();
+
     public static final PropertyDescriptor LIMIT = new IntegerProperty("limit", "The max limit.", 1, 1.0f);
     public static final PropertyDescriptor START = new StringProperty("start", "The AST node to start from", "", 1.0f);
     public static final PropertyDescriptor END = new StringProperty("end", "The AST node to stop the search", "", 1.0f);
@@ -86,6 +92,51 @@ public class DelphiRule extends AbstractJavaRule {
         }
     }
 
+    /**
+     * Visits nodes of the rule chain types from a file index. Nodes are given
+     * type by type, in document order within a type, so rules using the rule
+     * chain must not depend on the order of nodes of different types.
+     * 
+     * @param typeToNodes nodes of a file indexed by type, without the nodes
+     *            skipped by //NOSONAR
+     * @param ctx Rule context
+     */
+    public void visitIndex(Map<Integer, List<DelphiPMDNode>> typeToNodes, RuleContext ctx) {
+        init();
+        for (Integer type : ruleChainTypes) {
+            List<DelphiPMDNode> nodes = typeToNodes.get(type);
+            if (nodes != null) {
+                for (DelphiPMDNode node : nodes) {
+                    visit(node, ctx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the rule visit only nodes of given type, instead of all nodes.
+     * Call it in constructor of a rule which ignores other nodes and does not
+     * change lastLineParsed.
+     * 
+     * @param type Node type, from DelphiLexer
+     */
+    protected final void addRuleChainType(int type) {
+        ruleChainTypes.add(Integer.valueOf(type));
+    }
+
+    /**
+     * @return Node types visited by the rule, empty if the rule visits all
+     *         nodes
+     */
+    public Set<Integer> getRuleChainTypes() {
+        return Collections.unmodifiableSet(ruleChainTypes);
+    }
+
+    @Override
+    public boolean usesRuleChain() {
+        return !ruleChainTypes.isEmpty();
+    }
+
     /**
      * Overload this method in derived class to initialize your rule instance
      * with default values
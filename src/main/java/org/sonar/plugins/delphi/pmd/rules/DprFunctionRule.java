@@ -32,6 +32,19 @@ public class DprFunctionRule extends DelphiRule {
 
     private int check; // check for .dpr
 
+    public DprFunctionRule() {
+        this(DelphiLexer.PROCEDURE, DelphiLexer.FUNCTION);
+    }
+
+    /**
+     * @param types types of violation nodes
+     */
+    protected DprFunctionRule(int... types) {
+        for (int type : types) {
+            addRuleChainType(type);
+        }
+    }
+
     @Override
     public void init() {
         check = -1; // needs to check at new file
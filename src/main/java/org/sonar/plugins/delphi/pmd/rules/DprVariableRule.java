@@ -30,6 +30,10 @@ import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
  */
 public class DprVariableRule extends DprFunctionRule {
 
+    public DprVariableRule() {
+        super(DelphiLexer.TkVariableIdents);
+    }
+
     @Override
     protected boolean isViolationNode(DelphiPMDNode node) {
         int type = node.getType();
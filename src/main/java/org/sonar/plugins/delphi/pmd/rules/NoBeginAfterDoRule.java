@@ -31,6 +31,19 @@ import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
  */
 public class NoBeginAfterDoRule extends DelphiRule {
 
+    public NoBeginAfterDoRule() {
+        this(LexerMetrics.DO.toMetrics());
+    }
+
+    /**
+     * @param types types of nodes to check
+     */
+    protected NoBeginAfterDoRule(int... types) {
+        for (int type : types) {
+            addRuleChainType(type);
+        }
+    }
+
     @Override
     public Object visit(DelphiPMDNode node, Object data) {
         if (shouldCheck(node)) {
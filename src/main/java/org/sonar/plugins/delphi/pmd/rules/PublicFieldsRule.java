@@ -31,6 +31,10 @@ import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
  */
 public class PublicFieldsRule extends DelphiRule {
 
+    public PublicFieldsRule() {
+        addRuleChainType(DelphiLexer.TkNewType);
+    }
+
     @Override
     public Object visit(DelphiPMDNode node, Object data) {
         if (node.getType() == DelphiLexer.TkNewType) // encountering new type,
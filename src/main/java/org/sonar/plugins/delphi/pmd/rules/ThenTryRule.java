@@ -31,6 +31,10 @@ import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
  */
 public class ThenTryRule extends DelphiRule {
 
+    public ThenTryRule() {
+        addRuleChainType(DelphiLexer.THEN);
+    }
+
     @Override
     public Object visit(DelphiPMDNode node, Object data) {
         if (node.getType() != DelphiLexer.THEN) {
@@ -48,6 +48,11 @@ public class UnusedArgumentsRule extends DelphiRule {
 
     private final List<String> excludedArgs = new ArrayList<String>();
 
+    public UnusedArgumentsRule() {
+        addRuleChainType(DelphiLexer.PROCEDURE);
+        addRuleChainType(DelphiLexer.FUNCTION);
+    }
+
     @Override
     public Object visit(DelphiPMDNode node, Object data) {
         if (node.getType() == DelphiLexer.PROCEDURE || node.getType() == DelphiLexer.FUNCTION) {
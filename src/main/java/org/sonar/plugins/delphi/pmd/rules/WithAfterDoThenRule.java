@@ -30,6 +30,10 @@ import org.sonar.plugins.delphi.antlr.analyzer.LexerMetrics;
  */
 public class WithAfterDoThenRule extends NoBeginAfterDoRule {
 
+    public WithAfterDoThenRule() {
+        super(LexerMetrics.DO.toMetrics(), LexerMetrics.THEN.toMetrics());
+    }
+
     @Override
     protected boolean isWrongNode(Tree node) {
         return node != null
@@ -22,31 +22,35 @@
  */
 package org.sonar.plugins.delphi.pmd.rules;
 
+import java.util.Collection;
 import java.util.List;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.properties.StringProperty;
 
+import org.antlr.runtime.tree.Tree;
 import org.apache.commons.lang.StringUtils;
-import org.apache.xml.dtm.DTM;
-import org.apache.xpath.XPathAPI;
-import org.apache.xpath.objects.XNodeSet;
+import org.jaxen.JaxenException;
 import org.sonar.plugins.delphi.antlr.ast.ASTTree;
 import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
 import org.sonar.plugins.delphi.pmd.DelphiRuleViolation;
+import org.sonar.plugins.delphi.pmd.xpath.DelphiTreeNavigator;
+import org.sonar.plugins.delphi.pmd.xpath.DelphiXPath;
+import org.sonar.plugins.delphi.pmd.xpath.DelphiXPathBatch;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 /**
- * DelphiLanguage rule for XPath, use it to parse XPath rules
+ * DelphiLanguage rule for XPath, use it to parse XPath rules. The expression
+ * is compiled once and evaluated directly over AST nodes, without generating
+ * a DOM document of the file.
  */
 public class XPathRule extends DelphiRule {
 
     private static final StringProperty XPATH = new StringProperty("xpath", "The xpath expression", "", 1.0f);
 
-    private static Document cachedData = null; // last cached document
-    private static String cachedFile = ""; // last cached file name
+    private DelphiXPath xpath;
+    private boolean compiled;
+    private boolean batchable;
 
     /**
      * Process the whole file with an XPath expression
@@ -57,40 +61,90 @@ public class XPathRule extends DelphiRule {
 
     @Override
     public Object visit(DelphiPMDNode node, Object data) {
-        String xPathString = getStringProperty(XPATH);
-        if (StringUtils.isEmpty(xPathString)) {
+        if (xpath == null) {
             return data;
         }
-        Document doc = getCachedDocument(node.getASTTree());
         try {
-            XNodeSet result = (XNodeSet) XPathAPI.eval(doc, xPathString);
-            int nodeIndex = 0;
-            int nodeId = DTM.NULL;
-            while ((nodeId = result.item(nodeIndex++)) != DTM.NULL) {
-                Node resultNode = result.getDTM(nodeId).getNode(nodeId);
-                String className = resultNode.getAttributes().getNamedItem("class").getTextContent();
-                String methodName = resultNode.getAttributes().getNamedItem("method").getTextContent();
-                String packageName = resultNode.getAttributes().getNamedItem("package").getTextContent();
-                int line = Integer.valueOf(resultNode.getAttributes().getNamedItem("line").getTextContent());
-                String codeLine = node.getASTTree().getFileSourceLine(line);
-
-                if (codeLine.trim().endsWith("//NOSONAR")) {
-                    continue;
-                }
+            addViolations(xpath.selectNodes(node.getASTTree()), node.getASTTree(), (RuleContext) data);
+        } catch (JaxenException e) {
+            DelphiUtils.LOG.debug("XPath error: '" + e.getMessage() + "' at rule " + getName());
+        }
+
+        return data;
+    }
 
-                int column = Integer.valueOf(resultNode.getAttributes().getNamedItem("column").getTextContent());
-                String msg = this.getMessage().replaceAll("\\{\\}", resultNode.getTextContent()); // violation
-                                                                                                  // message
-                DelphiRuleViolation violation = new DelphiRuleViolation(this, (RuleContext) data, className,
-                        methodName, packageName, line, column,
-                        msg);
-                addViolation(data, violation);
+    /**
+     * Adds violations for nodes selected by the expression, used when the
+     * expression was evaluated in a batch with other rules
+     * 
+     * @param resultNodes selected nodes
+     * @param astTree AST tree
+     * @param ctx Rule context
+     */
+    public void addViolations(Collection<?> resultNodes, ASTTree astTree, RuleContext ctx) {
+        try {
+            for (Object result : resultNodes) {
+                if (result instanceof Tree) {
+                    addViolation((Tree) result, astTree, ctx);
+                }
             }
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             DelphiUtils.LOG.debug("XPath error: '" + e.getMessage() + "' at rule " + getName());
         }
+    }
 
-        return data;
+    /**
+     * @return compiled expression, null if empty or not valid
+     */
+    public DelphiXPath getXPath() {
+        init();
+        return xpath;
+    }
+
+    /**
+     * The rule chain evaluates batchable expressions of all XPath rules in one
+     * walk over the tree
+     */
+    @Override
+    public boolean usesRuleChain() {
+        init();
+        return batchable;
+    }
+
+    private void addViolation(Tree resultNode, ASTTree astTree, RuleContext ctx) {
+        int line = resultNode.getLine();
+        String codeLine = astTree.getFileSourceLine(line);
+        if (codeLine.trim().endsWith("//NOSONAR")) {
+            return;
+        }
+
+        String text = DelphiTreeNavigator.getInstance().getElementStringValue(resultNode);
+        String msg = this.getMessage().replaceAll("\\{\\}", text); // violation message
+        DelphiRuleViolation violation = new DelphiRuleViolation(this, ctx, "", "", "", line,
+                resultNode.getCharPositionInLine(), msg);
+        addViolation(ctx, violation);
+    }
+
+    /**
+     * Compiles the expression on first use, rule properties are not known in
+     * constructor
+     */
+    @Override
+    protected void init() {
+        if (compiled) {
+            return;
+        }
+        compiled = true;
+        String xPathString = getStringProperty(XPATH);
+        if (StringUtils.isEmpty(xPathString)) {
+            return;
+        }
+        try {
+            xpath = new DelphiXPath(xPathString);
+            batchable = DelphiXPathBatch.canBatch(xpath);
+        } catch (JaxenException e) {
+            DelphiUtils.LOG.debug("XPath error: '" + e.getMessage() + "' at rule " + getName());
+        }
     }
 
     /**
@@ -106,18 +160,4 @@ public class XPathRule extends DelphiRule {
         }
     }
 
-    /**
-     * Gets the cached AST document, create new if not found in cache
-     * 
-     * @param astTree AST tree
-     * @return AST tree document
-     */
-    private Document getCachedDocument(ASTTree astTree) {
-        if (!astTree.getFileName().equals(cachedFile)) {
-            cachedData = astTree.generateDocument();
-            cachedFile = astTree.getFileName();
-        }
-        return cachedData;
-    }
-
 }
@@ -0,0 +1,349 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd.xpath;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.antlr.runtime.tree.Tree;
+import org.jaxen.DefaultNavigator;
+import org.jaxen.JaxenConstants;
+import org.jaxen.XPath;
+import org.jaxen.saxpath.SAXPathException;
+import org.jaxen.util.SingleObjectIterator;
+import org.sonar.plugins.delphi.antlr.ast.ASTTree;
+import org.sonar.plugins.delphi.antlr.ast.DelphiNode;
+import org.sonar.plugins.delphi.antlr.ast.NodeName;
+
+/**
+ * Jaxen navigator walking AST nodes directly, so XPath expressions can be
+ * evaluated without generating a DOM document. It exposes the same model as
+ * DelphiAST.generateDocument: the AST tree is the "file" element, every node
+ * is an element named by its text with line, column, class, method and
+ * package attributes, and nodes whose name is not a valid XML name are left
+ * out together with their children. Text of a node is only available as the
+ * string value of its element.
+ */
+public class DelphiTreeNavigator extends DefaultNavigator {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String ROOT_NAME = "file";
+
+    private static final DelphiTreeNavigator INSTANCE = new DelphiTreeNavigator();
+
+    /**
+     * @return shared navigator instance, the navigator has no state
+     */
+    public static DelphiTreeNavigator getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Iterator<?> getChildAxisIterator(Object contextNode) {
+        if (contextNode instanceof Document) {
+            return new SingleObjectIterator(((Document) contextNode).root);
+        }
+        if (!isElement(contextNode)) {
+            return JaxenConstants.EMPTY_ITERATOR;
+        }
+        return getElementChildren((Tree) contextNode, 0).iterator();
+    }
+
+    @Override
+    public Iterator<?> getParentAxisIterator(Object contextNode) {
+        Object parent = getParentNode(contextNode);
+        return parent == null ? JaxenConstants.EMPTY_ITERATOR : new SingleObjectIterator(parent);
+    }
+
+    @Override
+    public Object getParentNode(Object contextNode) {
+        if (contextNode instanceof Attribute) {
+            return ((Attribute) contextNode).element;
+        }
+        if (!isElement(contextNode)) {
+            return null;
+        }
+        Tree node = (Tree) contextNode;
+        if (node instanceof ASTTree) {
+            return new Document(node);
+        }
+        Tree parent = node.getParent();
+        if ((parent == null || parent.isNil()) && node instanceof DelphiNode) {
+            return ((DelphiNode) node).getASTTree();
+        }
+        return parent;
+    }
+
+    @Override
+    public Object getDocumentNode(Object contextNode) {
+        Object node = contextNode;
+        while (node != null && !isDocument(node)) {
+            node = getParentNode(node);
+        }
+        return node;
+    }
+
+    @Override
+    public Iterator<?> getFollowingSiblingAxisIterator(Object contextNode) {
+        Object parent = getParentNode(contextNode);
+        if (!isElement(contextNode) || !isElement(parent) || contextNode instanceof ASTTree) {
+            return JaxenConstants.EMPTY_ITERATOR;
+        }
+        Tree node = (Tree) contextNode;
+        return getElementChildren((Tree) parent, node.getChildIndex() + 1).iterator();
+    }
+
+    @Override
+    public Iterator<?> getPrecedingSiblingAxisIterator(Object contextNode) {
+        Object parent = getParentNode(contextNode);
+        if (!isElement(contextNode) || !isElement(parent) || contextNode instanceof ASTTree) {
+            return JaxenConstants.EMPTY_ITERATOR;
+        }
+        Tree node = (Tree) contextNode;
+        List<Tree> preceding = new ArrayList<Tree>();
+        for (int i = node.getChildIndex() - 1; i >= 0; --i) {
+            Tree sibling = ((Tree) parent).getChild(i);
+            if (isValidName(getName(sibling))) {
+                preceding.add(sibling);
+            }
+        }
+        return preceding.iterator();
+    }
+
+    @Override
+    public Iterator<?> getAttributeAxisIterator(Object contextNode) {
+        if (!isElement(contextNode) || contextNode instanceof ASTTree) {
+            return JaxenConstants.EMPTY_ITERATOR;
+        }
+        Tree node = (Tree) contextNode;
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute(node, "line", String.valueOf(node.getLine())));
+        attributes.add(new Attribute(node, "column", String.valueOf(node.getCharPositionInLine())));
+        attributes.add(new Attribute(node, "class", ""));
+        attributes.add(new Attribute(node, "method", ""));
+        attributes.add(new Attribute(node, "package", ""));
+        return attributes.iterator();
+    }
+
+    private List<Tree> getElementChildren(Tree node, int from) {
+        List<Tree> children = new ArrayList<Tree>();
+        for (int i = from; i < node.getChildCount(); ++i) {
+            Tree child = node.getChild(i);
+            if (isValidName(getName(child))) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private String getName(Tree node) {
+        if (node instanceof ASTTree) {
+            return ROOT_NAME;
+        }
+        return NodeName.getNameForCode(node.getText());
+    }
+
+    /**
+     * Checks if string is a valid XML 1.0 element name, the same names a DOM
+     * document would accept
+     * 
+     * @param name name to check
+     * @return true if valid
+     */
+    static boolean isValidName(String name) {
+        if (name == null || name.length() == 0) {
+            return false;
+        }
+        char first = name.charAt(0);
+        if (!Character.isLetter(first) && first != '_' && first != ':') {
+            return false;
+        }
+        for (int i = 1; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '-' && c != '_' && c != ':') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getElementName(Object element) {
+        return getName((Tree) element);
+    }
+
+    @Override
+    public String getElementQName(Object element) {
+        return getElementName(element);
+    }
+
+    @Override
+    public String getElementNamespaceUri(Object element) {
+        return "";
+    }
+
+    @Override
+    public String getElementStringValue(Object element) {
+        StringBuilder value = new StringBuilder();
+        appendText((Tree) element, value);
+        return value.toString();
+    }
+
+    private void appendText(Tree node, StringBuilder value) {
+        if (!(node instanceof ASTTree) && node.getText() != null) {
+            value.append(node.getText());
+        }
+        for (int i = 0; i < node.getChildCount(); ++i) {
+            Tree child = node.getChild(i);
+            if (isValidName(getName(child))) {
+                appendText(child, value);
+            }
+        }
+    }
+
+    @Override
+    public String getAttributeName(Object attribute) {
+        return ((Attribute) attribute).name;
+    }
+
+    @Override
+    public String getAttributeQName(Object attribute) {
+        return getAttributeName(attribute);
+    }
+
+    @Override
+    public String getAttributeNamespaceUri(Object attribute) {
+        return "";
+    }
+
+    @Override
+    public String getAttributeStringValue(Object attribute) {
+        return ((Attribute) attribute).value;
+    }
+
+    @Override
+    public boolean isDocument(Object object) {
+        return object instanceof Document;
+    }
+
+    @Override
+    public boolean isElement(Object object) {
+        return object instanceof Tree;
+    }
+
+    @Override
+    public boolean isAttribute(Object object) {
+        return object instanceof Attribute;
+    }
+
+    @Override
+    public boolean isNamespace(Object object) {
+        return false;
+    }
+
+    @Override
+    public boolean isComment(Object object) {
+        return false;
+    }
+
+    @Override
+    public boolean isText(Object object) {
+        return false;
+    }
+
+    @Override
+    public boolean isProcessingInstruction(Object object) {
+        return false;
+    }
+
+    @Override
+    public String getCommentStringValue(Object comment) {
+        return "";
+    }
+
+    @Override
+    public String getNamespaceStringValue(Object namespace) {
+        return "";
+    }
+
+    @Override
+    public String getTextStringValue(Object text) {
+        return "";
+    }
+
+    @Override
+    public String getNamespacePrefix(Object namespace) {
+        return null;
+    }
+
+    @Override
+    public String translateNamespacePrefixToUri(String prefix, Object element) {
+        return null;
+    }
+
+    @Override
+    public XPath parseXPath(String xpath) throws SAXPathException {
+        return new DelphiXPath(xpath);
+    }
+
+    /**
+     * Document node, parent of the AST tree element
+     */
+    static final class Document {
+
+        private final Tree root;
+
+        Document(Tree root) {
+            this.root = root;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Document && ((Document) obj).root == root;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(root);
+        }
+    }
+
+    /**
+     * Attribute of an AST node element
+     */
+    static final class Attribute {
+
+        private final Tree element;
+        private final String name;
+        private final String value;
+
+        Attribute(Tree element, String name, String value) {
+            this.element = element;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+}
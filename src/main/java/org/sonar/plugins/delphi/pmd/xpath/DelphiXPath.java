@@ -20,28 +20,27 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.delphi.antlr.sanitizer.resolvers.exceptions;
+package org.sonar.plugins.delphi.pmd.xpath;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.JaxenException;
 
 /**
- * Include resolver exception
+ * XPath expression compiled once and evaluated over AST trees with
+ * DelphiTreeNavigator
  */
-public class IncludeResolverException extends Exception {
-
-    private static final long serialVersionUID = 8547740813940921496L;
+public class DelphiXPath extends BaseXPath {
 
-    /**
-     * default ctor with no message
-     */
-    public IncludeResolverException() {
-        super();
-    }
+    private static final long serialVersionUID = 1L;
 
     /**
-     * ctor
+     * Compiles an expression
      * 
-     * @param msg Error message
+     * @param xpathExpr XPath expression
+     * @throws JaxenException if the expression is not valid
      */
-    public IncludeResolverException(String msg) {
-        super(msg);
+    public DelphiXPath(String xpathExpr) throws JaxenException {
+        super(xpathExpr, DelphiTreeNavigator.getInstance());
     }
+
 }
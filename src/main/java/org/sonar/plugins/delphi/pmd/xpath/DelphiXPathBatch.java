@@ -0,0 +1,221 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd.xpath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.jaxen.JaxenException;
+import org.jaxen.expr.AllNodeStep;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.Step;
+import org.jaxen.expr.UnionExpr;
+import org.jaxen.saxpath.Axis;
+import org.sonar.plugins.delphi.antlr.ast.ASTTree;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Evaluates several XPath expressions in one walk over an AST tree. Only
+ * expressions of the form //name/... (or unions of them) can be batched: they
+ * are grouped by their leading element name, and the rest of the path is
+ * evaluated from every node having a child of that name.
+ * 
+ * @param <T> owner of the expressions, usually a rule
+ */
+public class DelphiXPathBatch<T> {
+
+    private final Map<String, List<Query<T>>> nameToQueries = new HashMap<String, List<Query<T>>>();
+    private final Set<T> owners = new LinkedHashSet<T>();
+
+    /**
+     * Checks if expression can be added to a batch
+     * 
+     * @param xpath compiled expression
+     * @return true if batchable
+     */
+    public static boolean canBatch(DelphiXPath xpath) {
+        return new DelphiXPathBatch<DelphiXPath>().add(xpath, xpath);
+    }
+
+    /**
+     * Adds an expression to the batch
+     * 
+     * @param owner owner of the expression, results are grouped by owner
+     * @param xpath compiled expression
+     * @return false if the expression can not be batched, it should be
+     *         evaluated on its own then
+     */
+    public boolean add(T owner, DelphiXPath xpath) {
+        List<LocationPath> paths = getPaths(xpath.getRootExpr());
+        if (paths == null) {
+            return false;
+        }
+
+        List<Query<T>> queries = new ArrayList<Query<T>>();
+        for (LocationPath path : paths) {
+            List<?> steps = path.getSteps();
+            StringBuilder relativePath = new StringBuilder();
+            for (int i = 1; i < steps.size(); ++i) {
+                if (i > 1) {
+                    relativePath.append('/');
+                }
+                relativePath.append(((Step) steps.get(i)).getText());
+            }
+            try {
+                String name = ((NameStep) steps.get(1)).getLocalName();
+                queries.add(new Query<T>(owner, name, new DelphiXPath(relativePath.toString())));
+            } catch (JaxenException e) {
+                return false;
+            }
+        }
+
+        for (Query<T> query : queries) {
+            List<Query<T>> named = nameToQueries.get(query.name);
+            if (named == null) {
+                named = new ArrayList<Query<T>>();
+                nameToQueries.put(query.name, named);
+            }
+            named.add(query);
+        }
+        owners.add(owner);
+        return true;
+    }
+
+    /**
+     * @return true if no expression was added
+     */
+    public boolean isEmpty() {
+        return owners.isEmpty();
+    }
+
+    /**
+     * Evaluates all expressions over an AST tree
+     * 
+     * @param astTree AST tree
+     * @return nodes selected by the expressions of every owner
+     */
+    public Map<T, Set<Object>> evaluate(ASTTree astTree) {
+        Map<T, Set<Object>> results = new LinkedHashMap<T, Set<Object>>();
+        for (T owner : owners) {
+            results.put(owner, new LinkedHashSet<Object>());
+        }
+        DelphiTreeNavigator navigator = DelphiTreeNavigator.getInstance();
+        evaluate(navigator.getDocumentNode(astTree), navigator, results);
+        return results;
+    }
+
+    private void evaluate(Object node, DelphiTreeNavigator navigator, Map<T, Set<Object>> results) {
+        Set<String> childNames = new HashSet<String>();
+        List<Object> children = new ArrayList<Object>();
+        for (Iterator<?> i = navigator.getChildAxisIterator(node); i.hasNext();) {
+            Object child = i.next();
+            children.add(child);
+            childNames.add(navigator.getElementName(child));
+        }
+
+        for (String name : childNames) {
+            List<Query<T>> queries = nameToQueries.get(name);
+            if (queries == null) {
+                continue;
+            }
+            for (Query<T> query : queries) {
+                try {
+                    List<?> selected = query.xpath.selectNodes(node);
+                    results.get(query.owner).addAll(selected);
+                } catch (JaxenException e) {
+                    DelphiUtils.LOG.debug("XPath error: '" + e.getMessage() + "' at " + query.xpath);
+                }
+            }
+        }
+
+        for (Object child : children) {
+            evaluate(child, navigator, results);
+        }
+    }
+
+    /**
+     * Splits expression into location paths starting with //name
+     * 
+     * @param expr expression
+     * @return location paths, null if expression is not batchable
+     */
+    private static List<LocationPath> getPaths(Expr expr) {
+        if (expr instanceof UnionExpr) {
+            List<LocationPath> left = getPaths(((UnionExpr) expr).getLHS());
+            List<LocationPath> right = getPaths(((UnionExpr) expr).getRHS());
+            if (left == null || right == null) {
+                return null;
+            }
+            left.addAll(right);
+            return left;
+        }
+        if (expr instanceof LocationPath && startsWithDescendantName((LocationPath) expr)) {
+            List<LocationPath> paths = new ArrayList<LocationPath>();
+            paths.add((LocationPath) expr);
+            return paths;
+        }
+        return null;
+    }
+
+    private static boolean startsWithDescendantName(LocationPath path) {
+        List<?> steps = path.getSteps();
+        if (!path.isAbsolute() || steps.size() < 2) {
+            return false;
+        }
+        Step first = (Step) steps.get(0);
+        Step second = (Step) steps.get(1);
+        if (!(first instanceof AllNodeStep) || first.getAxis() != Axis.DESCENDANT_OR_SELF
+                || !first.getPredicates().isEmpty() || !(second instanceof NameStep) || second.getAxis() != Axis.CHILD) {
+            return false;
+        }
+        NameStep nameStep = (NameStep) second;
+        return StringUtils.isEmpty(nameStep.getPrefix()) && !"*".equals(nameStep.getLocalName());
+    }
+
+    /**
+     * Expression evaluated from nodes having a child of given name
+     */
+    private static final class Query<T> {
+
+        private final T owner;
+        private final String name;
+        private final DelphiXPath xpath;
+
+        Query(T owner, String name, DelphiXPath xpath) {
+            this.owner = owner;
+            this.name = name;
+            this.xpath = xpath;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Build configuration of a project (e.g. Debug, Release), a named set of
+ * preprocessor definitions added to the project definitions. Immutable.
+ */
+public class BuildConfiguration {
+
+    private final String name;
+    private final List<String> definitions;
+
+    /**
+     * Ctor
+     * 
+     * @param name Configuration name
+     * @param definitions Preprocessor definitions of the configuration
+     */
+    public BuildConfiguration(String name, List<String> definitions) {
+        this.name = name;
+        this.definitions = Collections.unmodifiableList(new ArrayList<String>(definitions));
+    }
+
+    /**
+     * Parses a configuration in the 'Name:DEF1;DEF2' form, a configuration
+     * without definitions can be given by its name only
+     * 
+     * @param value Configuration to parse
+     * @return Parsed configuration, null if the value is empty
+     */
+    public static BuildConfiguration parse(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String name = StringUtils.substringBefore(value, ":").trim();
+        List<String> definitions = new ArrayList<String>();
+        for (String definition : StringUtils.split(StringUtils.substringAfter(value, ":"), ';')) {
+            if (!StringUtils.isBlank(definition)) {
+                definitions.add(definition.trim());
+            }
+        }
+        return new BuildConfiguration(name, definitions);
+    }
+
+    /**
+     * @return Configuration name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Preprocessor definitions of the configuration
+     */
+    public List<String> getDefinitions() {
+        return definitions;
+    }
+
+    /**
+     * @param projectDefinitions Definitions common to all configurations of
+     *            the project
+     * @return Project definitions followed by the configuration definitions
+     */
+    public List<String> getDefinitions(List<String> projectDefinitions) {
+        List<String> result = new ArrayList<String>(projectDefinitions);
+        for (String definition : definitions) {
+            if (!result.contains(definition)) {
+                result.add(definition);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + StringUtils.join(definitions, ';');
+    }
+
+}
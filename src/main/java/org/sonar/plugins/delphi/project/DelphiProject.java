@@ -44,6 +44,8 @@ public class DelphiProject {
     private List<String> defs = new ArrayList<String>(); // project definitions
     private List<File> files = new ArrayList<File>(); // project files
     private List<File> includes = new ArrayList<File>(); // include directories
+    private List<BuildConfiguration> configurations = new ArrayList<BuildConfiguration>(); // build
+                                                                                           // configurations
     private File file = null; // .dproj file
 
     /**
@@ -113,6 +115,17 @@ public class DelphiProject {
         }
     }
 
+    /**
+     * Adds a build configuration to analyse
+     * 
+     * @param configuration Build configuration
+     */
+    public void addConfiguration(BuildConfiguration configuration) {
+        if (configuration != null) {
+            configurations.add(configuration);
+        }
+    }
+
     /**
      * adds directory where to search for include files
      * 
@@ -159,6 +172,28 @@ public class DelphiProject {
         return defs;
     }
 
+    public List<BuildConfiguration> getConfigurations() {
+        return configurations;
+    }
+
+    /**
+     * Gets the preprocessor definitions of every build configuration, the
+     * first one being the primary configuration
+     * 
+     * @return Definitions of every configuration, or the project definitions
+     *         only if there is no build configuration
+     */
+    public List<List<String>> getConfigurationDefinitions() {
+        List<List<String>> result = new ArrayList<List<String>>();
+        for (BuildConfiguration configuration : configurations) {
+            result.add(configuration.getDefinitions(defs));
+        }
+        if (result.isEmpty()) {
+            result.add(defs);
+        }
+        return result;
+    }
+
     public List<File> getSourceFiles() {
         return files;
     }
@@ -179,6 +214,10 @@ public class DelphiProject {
         this.defs = defs;
     }
 
+    public void setConfigurations(List<BuildConfiguration> configurations) {
+        this.configurations = configurations;
+    }
+
     public void setIncludeDirectories(List<File> includes) {
         this.includes = includes;
     }
@@ -0,0 +1,148 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads values written by {@link BinaryOutput}
+ */
+public class BinaryInput {
+
+    private static final int MAX_VARINT_SHIFT = 28;
+
+    private final InputStream in;
+
+    /**
+     * ctor
+     * 
+     * @param in stream to read from
+     */
+    public BinaryInput(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads an integer written with {@link BinaryOutput#writeVarInt(int)}
+     */
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads an integer written with {@link BinaryOutput#writeSignedVarInt(int)}
+     */
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a boolean
+     */
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    /**
+     * Reads a string written with {@link BinaryOutput#writeString(String)}
+     */
+    public String readString() throws IOException {
+        return new String(readBytes(), BinaryOutput.UTF_8);
+    }
+
+    /**
+     * Reads bytes written with {@link BinaryOutput#writeBytes(byte[])}
+     */
+    public byte[] readBytes() throws IOException {
+        byte[] value = new byte[readVarInt()];
+        readFully(value);
+        return value;
+    }
+
+    /**
+     * Skips bytes
+     * 
+     * @param count number of bytes to skip
+     */
+    public void skip(int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                readByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Reads a byte
+     * 
+     * @return the byte, from 0 to 255
+     * @throws EOFException at the end of the stream
+     */
+    public int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    /**
+     * Reads bytes written with {@link BinaryOutput#writeRaw(byte[])}
+     * 
+     * @param value array to fill
+     * @throws EOFException if the stream ends before the array is filled
+     */
+    public void readFully(byte[] value) throws IOException {
+        int offset = 0;
+        while (offset < value.length) {
+            int read = in.read(value, offset, value.length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Closes the underlying stream
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the primitive values of the binary formats: unsigned integers as
+ * varints (7 bits per byte, least significant group first), signed integers
+ * zigzag encoded so small negative values stay short, and UTF-8 strings
+ * prefixed by their length.
+ */
+public class BinaryOutput {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+
+    /**
+     * ctor
+     * 
+     * @param out stream to write to
+     */
+    public BinaryOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an integer, values from 0 to 127 take one byte. Negative values
+     * take five bytes, use {@link #writeSignedVarInt(int)} for them.
+     */
+    public void writeVarInt(int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Writes an integer, values from -64 to 63 take one byte
+     */
+    public void writeSignedVarInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a boolean as one byte
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        out.write(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a non null string
+     */
+    public void writeString(String value) throws IOException {
+        writeBytes(value.getBytes(UTF_8));
+    }
+
+    /**
+     * Writes bytes prefixed by their count
+     */
+    public void writeBytes(byte[] value) throws IOException {
+        writeVarInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Writes bytes as they are
+     */
+    public void writeRaw(byte[] value) throws IOException {
+        out.write(value);
+    }
+
+    /**
+     * Flushes the underlying stream
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying stream
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,541 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCache;
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
+import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
+import org.sonar.plugins.delphi.core.language.ClassFieldInterface;
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.ClassPropertyInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.DelphiArgument;
+import org.sonar.plugins.delphi.core.language.impl.DelphiClass;
+import org.sonar.plugins.delphi.core.language.impl.DelphiClassField;
+import org.sonar.plugins.delphi.core.language.impl.DelphiClassProperty;
+import org.sonar.plugins.delphi.core.language.impl.DelphiFunction;
+import org.sonar.plugins.delphi.core.language.impl.DelphiStatement;
+import org.sonar.plugins.delphi.core.language.impl.DelphiUnit;
+import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
+
+/**
+ * Reads units written by {@link DelphiModelWriter}, one record at a time.
+ * References to classes and functions of other units are resolved against
+ * the units already read; those not found are replaced by classes and
+ * functions created from their name, as the analysis does for unresolved
+ * names. Use {@link #readAll()} to resolve references between all units of a
+ * file, whatever their order. Results records are read one at a time by
+ * {@link #readResults()}.
+ */
+public class DelphiModelReader extends RecordReader {
+
+    private final DelphiProjectHelper delphiProjectHelper;
+    private final Map<String, FunctionInterface> functionsByName = new HashMap<String, FunctionInterface>();
+    private final Map<String, ClassInterface> classesByName = new HashMap<String, ClassInterface>();
+
+    /**
+     * ctor, reads the file header
+     * 
+     * @param in stream to read from
+     * @param delphiProjectHelper project helper, used by read statements
+     * @throws IOException if the stream is not a file written by
+     *             {@link DelphiModelWriter}, or was written by another version
+     */
+    public DelphiModelReader(InputStream in, DelphiProjectHelper delphiProjectHelper) throws IOException {
+        super(in, DelphiModelWriter.MAGIC, DelphiModelWriter.VERSION);
+        this.delphiProjectHelper = delphiProjectHelper;
+    }
+
+    /**
+     * Reads the next unit
+     * 
+     * @return unit, null at the end of file
+     * @throws IOException if the unit could not be read
+     */
+    public UnitInterface read() throws IOException {
+        BinaryInput in = nextRecord();
+        if (in == null) {
+            return null;
+        }
+        UnitDecoder decoder = new UnitDecoder(in);
+        decoder.decodeUnit();
+        index(decoder.unit);
+        decoder.link();
+        return decoder.unit;
+    }
+
+    /**
+     * Reads the next results record. The results have their own analysis
+     * cache, holding their unit and function calls. Classes and functions of
+     * other files are created from their name, as references between files are
+     * resolved by
+     * {@link org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisLinker}.
+     * 
+     * @return results of one file, null at the end of file
+     * @throws IOException if the results could not be read
+     */
+    public CodeAnalysisResults readResults() throws IOException {
+        BinaryInput in = nextRecord();
+        if (in == null) {
+            return null;
+        }
+        CodeAnalysisResults results = new CodeAnalysisResults(new CodeAnalysisCache());
+        new UnitDecoder(in).decodeResults(results);
+        return results;
+    }
+
+    /**
+     * Reads all remaining units, references between them are resolved once
+     * all of them were read
+     * 
+     * @return units
+     * @throws IOException if a unit could not be read
+     */
+    public List<UnitInterface> readAll() throws IOException {
+        List<UnitDecoder> decoders = new ArrayList<UnitDecoder>();
+        for (BinaryInput in = nextRecord(); in != null; in = nextRecord()) {
+            UnitDecoder decoder = new UnitDecoder(in);
+            decoder.decodeUnit();
+            index(decoder.unit);
+            decoders.add(decoder);
+        }
+        List<UnitInterface> units = new ArrayList<UnitInterface>();
+        for (UnitDecoder decoder : decoders) {
+            decoder.link();
+            units.add(decoder.unit);
+        }
+        return units;
+    }
+
+    /**
+     * Reads one function of the next unit, without decoding the others. The
+     * function unit and parent class only hold their header, functions it
+     * references are created from their name.
+     * 
+     * @param functionName function name, as returned by
+     *            {@link FunctionInterface#getName()}
+     * @return function, null if the unit has no such function or at the end
+     *         of file
+     * @throws IOException if the function could not be read
+     */
+    public FunctionInterface readFunction(String functionName) throws IOException {
+        BinaryInput in = nextRecord();
+        if (in == null) {
+            return null;
+        }
+        UnitDecoder decoder = new UnitDecoder(in);
+        FunctionInterface function = decoder.decodeFunction(functionName);
+        decoder.link();
+        return function;
+    }
+
+    private void index(UnitInterface unit) {
+        for (FunctionInterface function : unit.getFunctions()) {
+            indexFunction(unit, function);
+        }
+        for (ClassInterface clazz : unit.getClasses()) {
+            String key = getClassKey(clazz.getFileName(), clazz.getName());
+            if (!classesByName.containsKey(key)) {
+                classesByName.put(key, clazz);
+            }
+            for (FunctionInterface function : clazz.getFunctions()) {
+                indexFunction(unit, function);
+            }
+        }
+    }
+
+    private void indexFunction(UnitInterface unit, FunctionInterface function) {
+        String key = getFunctionKey(unit.getName(), function.getName());
+        if (!functionsByName.containsKey(key)) {
+            functionsByName.put(key, function);
+        }
+    }
+
+    private static String getFunctionKey(String unitName, String functionName) {
+        return unitName.toLowerCase() + "\n" + functionName.toLowerCase();
+    }
+
+    private static String getClassKey(String fileName, String className) {
+        return fileName + "\n" + className;
+    }
+
+    /**
+     * Sets a resolved function reference
+     */
+    private interface FunctionLink {
+        void link(FunctionInterface function);
+    }
+
+    /**
+     * Sets a resolved class reference
+     */
+    private interface ClassLink {
+        void link(ClassInterface clazz);
+    }
+
+    /**
+     * Reference read, resolved once the whole unit was read
+     */
+    private static class Reference<L> {
+        private final int index;
+        private final String owner;
+        private final String name;
+        private final L link;
+
+        Reference(int index, String owner, String name, L link) {
+            this.index = index;
+            this.owner = owner;
+            this.name = name;
+            this.link = link;
+        }
+    }
+
+    /**
+     * Decodes one unit record
+     */
+    private class UnitDecoder {
+
+        private final BinaryInput in;
+        private StringTable strings;
+        private final DelphiUnit unit = new DelphiUnit();
+        private final List<ClassInterface> classes = new ArrayList<ClassInterface>();
+        private final List<FunctionInterface> functions = new ArrayList<FunctionInterface>();
+        private final List<String> functionNames = new ArrayList<String>();
+        private final List<Reference<FunctionLink>> functionReferences = new ArrayList<Reference<FunctionLink>>();
+        private final List<Reference<ClassLink>> classReferences = new ArrayList<Reference<ClassLink>>();
+
+        UnitDecoder(BinaryInput in) {
+            this.in = in;
+        }
+
+        void decodeUnit() throws IOException {
+            strings = StringTable.read(in);
+            readKind(DelphiModelWriter.RECORD_UNIT);
+            decodeBody();
+        }
+
+        void decodeResults(CodeAnalysisResults results) throws IOException {
+            strings = StringTable.read(in);
+            readKind(DelphiModelWriter.RECORD_RESULTS);
+            if (!in.readBoolean()) {
+                return;
+            }
+            decodeBody();
+            link();
+
+            results.setActiveUnit(unit);
+            results.cacheUnit(unit);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                results.addClass(getLocal(classes, in.readVarInt()));
+            }
+            count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                results.addFunction(getLocal(functions, in.readVarInt()));
+            }
+            count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                FunctionInterface caller = getLocal(functions, in.readVarInt());
+                int overload = in.readVarInt();
+                if (overload > 0) {
+                    caller = getLocal(Arrays.asList(caller.getOverloadedFunctions()), overload - 1);
+                }
+                results.addUnresolvedCall(new UnresolvedFunctionCall(caller, new DelphiFunction(readString(in)),
+                        unit));
+            }
+        }
+
+        private <T> T getLocal(List<T> items, int index) throws IOException {
+            if (index >= items.size()) {
+                throw new IOException("Invalid reference " + index);
+            }
+            return items.get(index);
+        }
+
+        private void readKind(int expected) throws IOException {
+            int kind = in.readVarInt();
+            if (kind != expected) {
+                throw new IOException("Unexpected record kind " + kind + ", expected " + expected);
+            }
+        }
+
+        private void decodeBody() throws IOException {
+            decodeHeaders();
+            int count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                FunctionInterface function = decodeFunction(new BinaryInput(new ByteArrayInputStream(in.readBytes())));
+                functions.add(function);
+                unit.addFunction(function);
+            }
+            for (ClassInterface clazz : classes) {
+                decodeClassMembers(clazz);
+            }
+        }
+
+        FunctionInterface decodeFunction(String functionName) throws IOException {
+            strings = StringTable.read(in);
+            readKind(DelphiModelWriter.RECORD_UNIT);
+            decodeHeaders();
+            byte[] found = null;
+            int count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                byte[] entry = in.readBytes();
+                String name = readString(new BinaryInput(new ByteArrayInputStream(entry)));
+                functionNames.add(name);
+                if (found == null && name.equalsIgnoreCase(functionName)) {
+                    found = entry;
+                }
+            }
+            if (found == null) {
+                return null;
+            }
+            return decodeFunction(new BinaryInput(new ByteArrayInputStream(found)));
+        }
+
+        private void decodeHeaders() throws IOException {
+            unit.setName(readString(in));
+            String path = readString(in);
+            if (path != null) {
+                unit.setPath(path);
+            }
+            unit.setLine(in.readSignedVarInt());
+            int includes = in.readVarInt();
+            for (int i = 0; i < includes; ++i) {
+                unit.addIncludes(readString(in));
+            }
+
+            int count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                boolean inUnit = in.readBoolean();
+                ClassInterface clazz = new DelphiClass(readString(in));
+                clazz.setRealName(readString(in));
+                clazz.setFileName(readString(in));
+                clazz.setVisibility(in.readSignedVarInt());
+                classes.add(clazz);
+                if (inUnit) {
+                    unit.addClass(clazz);
+                }
+            }
+        }
+
+        private FunctionInterface decodeFunction(BinaryInput entry) throws IOException {
+            final FunctionInterface function = new DelphiFunction(readString(entry));
+            function.setRealName(readString(entry));
+            function.setLongName(readString(entry));
+            int flags = entry.readVarInt();
+            function.setVirtual((flags & DelphiModelWriter.FLAG_VIRTUAL) != 0);
+            function.setDeclaration((flags & DelphiModelWriter.FLAG_DECLARATION) != 0);
+            function.setMessage((flags & DelphiModelWriter.FLAG_MESSAGE) != 0);
+            if ((flags & DelphiModelWriter.FLAG_IN_UNIT) != 0) {
+                function.setUnit(unit);
+            }
+            function.setVisibility(entry.readSignedVarInt());
+            function.setLine(entry.readSignedVarInt());
+            function.setColumn(entry.readSignedVarInt());
+            function.setComplexity(entry.readSignedVarInt());
+            // the count starts at -1, before the function body is analysed
+            int overloads = entry.readVarInt();
+            for (int i = 0; i <= overloads; ++i) {
+                function.increaseFunctionOverload();
+            }
+            readClassReference(entry, new ClassLink() {
+                public void link(ClassInterface clazz) {
+                    function.setParentClass(clazz);
+                }
+            });
+
+            int count = entry.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                DelphiArgument argument = new DelphiArgument();
+                argument.setName(readString(entry));
+                argument.setType(readString(entry));
+                function.addArgument(argument);
+            }
+
+            count = entry.readVarInt();
+            int line = function.getLine();
+            for (int i = 0; i < count; ++i) {
+                String text = readString(entry);
+                line += entry.readSignedVarInt();
+                DelphiStatement statement = new DelphiStatement(text, line, entry.readSignedVarInt(),
+                        delphiProjectHelper);
+                statement.setComplexity(entry.readBoolean());
+                function.addStatement(statement);
+            }
+
+            count = entry.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                readFunctionReference(entry, new FunctionLink() {
+                    public void link(FunctionInterface called) {
+                        function.addCalledFunction(called);
+                    }
+                });
+            }
+
+            count = entry.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                function.addOverloadFunction(decodeFunction(entry));
+            }
+            return function;
+        }
+
+        private void decodeClassMembers(final ClassInterface clazz) throws IOException {
+            int count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                DelphiClassField field = new DelphiClassField();
+                decodeField(field, clazz);
+                clazz.addField(field);
+            }
+
+            count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                final DelphiClassProperty property = new DelphiClassProperty();
+                decodeField(property, clazz);
+                readFunctionReference(in, new FunctionLink() {
+                    public void link(FunctionInterface function) {
+                        property.setReadFunction(function);
+                    }
+                });
+                readFunctionReference(in, new FunctionLink() {
+                    public void link(FunctionInterface function) {
+                        property.setWriteFunction(function);
+                    }
+                });
+                clazz.addProperty(property);
+            }
+
+            count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                readFunctionReference(in, new FunctionLink() {
+                    public void link(FunctionInterface function) {
+                        clazz.addFunction(function);
+                    }
+                });
+            }
+
+            count = in.readVarInt();
+            for (int i = 0; i < count; ++i) {
+                readClassReference(in, new ClassLink() {
+                    public void link(ClassInterface parent) {
+                        clazz.addParent(parent);
+                    }
+                });
+            }
+        }
+
+        private void decodeField(ClassFieldInterface field, ClassInterface clazz) throws IOException {
+            field.setName(readString(in));
+            field.setType(readString(in));
+            field.setVisibility(in.readSignedVarInt());
+            if (in.readBoolean()) {
+                field.setParent(clazz);
+            }
+        }
+
+        private void readFunctionReference(BinaryInput input, FunctionLink link) throws IOException {
+            int reference = input.readVarInt();
+            int kind = reference & DelphiModelWriter.REFERENCE_KIND_MASK;
+            if (kind == DelphiModelWriter.REFERENCE_LOCAL) {
+                functionReferences.add(new Reference<FunctionLink>(reference >>> DelphiModelWriter.REFERENCE_KIND_BITS,
+                        null, null, link));
+            } else if (kind == DelphiModelWriter.REFERENCE_EXTERNAL) {
+                String unitName = readString(input);
+                functionReferences.add(new Reference<FunctionLink>(-1, unitName, readString(input), link));
+            }
+        }
+
+        private void readClassReference(BinaryInput input, ClassLink link) throws IOException {
+            int reference = input.readVarInt();
+            int kind = reference & DelphiModelWriter.REFERENCE_KIND_MASK;
+            if (kind == DelphiModelWriter.REFERENCE_LOCAL) {
+                classReferences.add(new Reference<ClassLink>(reference >>> DelphiModelWriter.REFERENCE_KIND_BITS,
+                        null, null, link));
+            } else if (kind == DelphiModelWriter.REFERENCE_EXTERNAL) {
+                String fileName = readString(input);
+                classReferences.add(new Reference<ClassLink>(-1, fileName, readString(input), link));
+            }
+        }
+
+        /**
+         * Resolves the references read
+         */
+        void link() throws IOException {
+            for (Reference<ClassLink> reference : classReferences) {
+                reference.link.link(resolveClass(reference));
+            }
+            for (Reference<FunctionLink> reference : functionReferences) {
+                reference.link.link(resolveFunction(reference));
+            }
+        }
+
+        private ClassInterface resolveClass(Reference<ClassLink> reference) throws IOException {
+            if (reference.index >= 0) {
+                if (reference.index >= classes.size()) {
+                    throw new IOException("Invalid class reference " + reference.index);
+                }
+                return classes.get(reference.index);
+            }
+            ClassInterface clazz = classesByName.get(getClassKey(reference.owner, reference.name));
+            if (clazz == null) {
+                clazz = new DelphiClass(reference.name);
+                clazz.setFileName(reference.owner);
+            }
+            return clazz;
+        }
+
+        private FunctionInterface resolveFunction(Reference<FunctionLink> reference) throws IOException {
+            if (reference.index >= 0) {
+                if (reference.index < functions.size()) {
+                    return functions.get(reference.index);
+                }
+                if (reference.index < functionNames.size()) {
+                    return new DelphiFunction(functionNames.get(reference.index));
+                }
+                throw new IOException("Invalid function reference " + reference.index);
+            }
+            FunctionInterface function = null;
+            if (reference.owner != null) {
+                function = functionsByName.get(getFunctionKey(reference.owner, reference.name));
+            }
+            if (function == null) {
+                function = new DelphiFunction(reference.name);
+            }
+            return function;
+        }
+
+        private String readString(BinaryInput input) throws IOException {
+            return strings.get(input.readVarInt());
+        }
+    }
+
+}
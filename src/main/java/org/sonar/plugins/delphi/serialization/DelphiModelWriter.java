@@ -0,0 +1,412 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
+import org.sonar.plugins.delphi.core.language.ArgumentInterface;
+import org.sonar.plugins.delphi.core.language.ClassFieldInterface;
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.ClassPropertyInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.HasNameInterface;
+import org.sonar.plugins.delphi.core.language.StatementInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
+
+/**
+ * Writes units with their classes and functions in a compact binary form, one
+ * record per unit, read back by {@link DelphiModelReader}.
+ * 
+ * A record holds the unit header, the class headers, the functions and then
+ * the class members. Classes include those of the unit file which the
+ * analysis only knows as parents, and classes created from a parent name.
+ * Every function is prefixed by its length and starts with its name, so a
+ * reader can decode one function without the others. Classes and functions
+ * are referenced by their index in the unit when they belong to it, by unit
+ * (or file) and name otherwise. Overloads are written within the function
+ * they belong to.
+ * 
+ * A results record holds the results of analysing one file, before calls are
+ * linked: its unit record followed by the classes and functions found in the
+ * file and its function calls waiting to be resolved.
+ */
+public class DelphiModelWriter extends RecordWriter {
+
+    static final int MAGIC = 0x444D4F44; // "DMOD"
+    static final int VERSION = 2;
+
+    static final int RECORD_UNIT = 0;
+    static final int RECORD_RESULTS = 1;
+
+    static final int REFERENCE_NULL = 0;
+    static final int REFERENCE_LOCAL = 1;
+    static final int REFERENCE_EXTERNAL = 2;
+    static final int REFERENCE_KIND_BITS = 2;
+    static final int REFERENCE_KIND_MASK = 3;
+
+    static final int FLAG_VIRTUAL = 1;
+    static final int FLAG_DECLARATION = 2;
+    static final int FLAG_MESSAGE = 4;
+    static final int FLAG_IN_UNIT = 8;
+
+    private static final Comparator<HasNameInterface> BY_NAME = new Comparator<HasNameInterface>() {
+        public int compare(HasNameInterface o1, HasNameInterface o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    /**
+     * ctor, writes the file header
+     * 
+     * @param out stream to write to
+     * @throws IOException if the header could not be written
+     */
+    public DelphiModelWriter(OutputStream out) throws IOException {
+        super(out, MAGIC, VERSION);
+    }
+
+    /**
+     * Writes a unit, with its classes and functions
+     * 
+     * @param unit unit to write, must have a path
+     * @throws IOException if the unit could not be written
+     */
+    public void write(UnitInterface unit) throws IOException {
+        new UnitEncoder(unit).encode(null);
+    }
+
+    /**
+     * Writes the results of analysing one file, read back by
+     * {@link DelphiModelReader#readResults()}
+     * 
+     * @param results results of the file, its calls not resolved yet
+     * @throws IOException if the results could not be written, or refer to
+     *             more than one unit
+     */
+    public void write(CodeAnalysisResults results) throws IOException {
+        List<UnitInterface> units = results.getCachedUnitsAsList();
+        if (units.size() > 1) {
+            throw new IOException("Results hold " + units.size() + " units");
+        }
+        if (units.isEmpty()) {
+            if (!results.getClasses().isEmpty() || !results.getFunctions().isEmpty()
+                    || !results.getUnresolvedCalls().isEmpty()) {
+                throw new IOException("Results without a unit");
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            BinaryOutput out = new BinaryOutput(body);
+            out.writeVarInt(RECORD_RESULTS);
+            out.writeBoolean(false);
+            writeRecord(new StringTable(), body);
+            return;
+        }
+        new UnitEncoder(units.get(0)).encode(results);
+    }
+
+    /**
+     * Encodes one unit record
+     */
+    private class UnitEncoder {
+
+        private final UnitInterface unit;
+        private final StringTable strings = new StringTable();
+        private final Map<ClassInterface, Integer> classIndexes = new IdentityHashMap<ClassInterface, Integer>();
+        private final Map<FunctionInterface, Integer> functionIndexes =
+                new IdentityHashMap<FunctionInterface, Integer>();
+
+        UnitEncoder(UnitInterface unit) {
+            this.unit = unit;
+        }
+
+        void encode(CodeAnalysisResults results) throws IOException {
+            List<ClassInterface> classes = getClasses();
+            FunctionInterface[] functions = unit.getFunctions();
+            for (int i = 0; i < classes.size(); ++i) {
+                classIndexes.put(classes.get(i), i);
+            }
+            for (int i = 0; i < functions.length; ++i) {
+                functionIndexes.put(functions[i], i);
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            BinaryOutput out = new BinaryOutput(body);
+            if (results == null) {
+                out.writeVarInt(RECORD_UNIT);
+            } else {
+                out.writeVarInt(RECORD_RESULTS);
+                out.writeBoolean(true);
+            }
+            writeString(out, unit.getName());
+            writeString(out, unit.getPath());
+            out.writeSignedVarInt(unit.getLine());
+            String[] includes = unit.getIncludes();
+            Arrays.sort(includes);
+            out.writeVarInt(includes.length);
+            for (String include : includes) {
+                writeString(out, include);
+            }
+
+            Set<ClassInterface> unitClasses = Collections.newSetFromMap(new IdentityHashMap<ClassInterface, Boolean>());
+            unitClasses.addAll(Arrays.asList(unit.getClasses()));
+            out.writeVarInt(classes.size());
+            for (ClassInterface clazz : classes) {
+                out.writeBoolean(unitClasses.contains(clazz));
+                writeString(out, clazz.getName());
+                writeString(out, clazz.getRealName());
+                writeString(out, clazz.getFileName());
+                out.writeSignedVarInt(clazz.getVisibility());
+            }
+
+            out.writeVarInt(functions.length);
+            for (FunctionInterface function : functions) {
+                ByteArrayOutputStream entry = new ByteArrayOutputStream();
+                writeFunction(new BinaryOutput(entry), function);
+                out.writeBytes(entry.toByteArray());
+            }
+
+            for (ClassInterface clazz : classes) {
+                writeClassMembers(out, clazz);
+            }
+            if (results != null) {
+                writeResults(out, results);
+            }
+            writeRecord(strings, body);
+        }
+
+        private void writeResults(BinaryOutput out, CodeAnalysisResults results) throws IOException {
+            out.writeVarInt(results.getClasses().size());
+            for (ClassInterface clazz : results.getClasses()) {
+                Integer index = classIndexes.get(clazz);
+                if (index == null) {
+                    throw new IOException("Class " + clazz.getName() + " is not in unit " + unit.getName());
+                }
+                out.writeVarInt(index);
+            }
+            out.writeVarInt(results.getFunctions().size());
+            for (FunctionInterface function : results.getFunctions()) {
+                out.writeVarInt(getFunctionIndex(function));
+            }
+
+            // overloads by their function index and position, 0 is the function
+            Map<FunctionInterface, int[]> callers = new IdentityHashMap<FunctionInterface, int[]>();
+            FunctionInterface[] functions = unit.getFunctions();
+            for (int i = 0; i < functions.length; ++i) {
+                FunctionInterface[] overloads = functions[i].getOverloadedFunctions();
+                for (int j = 0; j < overloads.length; ++j) {
+                    callers.put(overloads[j], new int[] { i, j + 1 });
+                }
+                callers.put(functions[i], new int[] { i, 0 });
+            }
+            List<UnresolvedFunctionCall> calls = results.getUnresolvedCalls();
+            synchronized (calls) {
+                out.writeVarInt(calls.size());
+                for (UnresolvedFunctionCall call : calls) {
+                    int[] caller = callers.get(call.getCaller());
+                    if (caller == null || call.getCallerUnit() != unit) {
+                        throw new IOException("Call to " + call.getCalled().getName() + " is not from unit "
+                                + unit.getName());
+                    }
+                    out.writeVarInt(caller[0]);
+                    out.writeVarInt(caller[1]);
+                    writeString(out, call.getCalled().getName());
+                }
+            }
+        }
+
+        private int getFunctionIndex(FunctionInterface function) throws IOException {
+            Integer index = functionIndexes.get(function);
+            if (index == null) {
+                throw new IOException("Function " + function.getName() + " is not in unit " + unit.getName());
+            }
+            return index;
+        }
+
+        /**
+         * @return classes of the unit, followed by the classes of its file
+         *         which are only referenced (as parents or function parent
+         *         classes) and classes created from a parent name
+         */
+        private List<ClassInterface> getClasses() {
+            List<ClassInterface> classes = new ArrayList<ClassInterface>(Arrays.asList(unit.getClasses()));
+            Set<ClassInterface> found = Collections.newSetFromMap(new IdentityHashMap<ClassInterface, Boolean>());
+            found.addAll(classes);
+            Set<String> fileNames = new HashSet<String>();
+            for (ClassInterface clazz : classes) {
+                fileNames.add(clazz.getFileName());
+            }
+
+            for (FunctionInterface function : unit.getFunctions()) {
+                addReferencedClass(function.getParentClass(), classes, found, fileNames);
+            }
+            for (int i = 0; i < classes.size(); ++i) {
+                for (ClassInterface parent : classes.get(i).getParents()) {
+                    addReferencedClass(parent, classes, found, fileNames);
+                }
+            }
+            return classes;
+        }
+
+        private void addReferencedClass(ClassInterface clazz, List<ClassInterface> classes,
+                Set<ClassInterface> found, Set<String> fileNames) {
+            if (clazz != null && !found.contains(clazz)
+                    && (clazz.getFileName() == null || fileNames.contains(clazz.getFileName()))) {
+                found.add(clazz);
+                classes.add(clazz);
+            }
+        }
+
+        private void writeFunction(BinaryOutput out, FunctionInterface function) throws IOException {
+            writeString(out, function.getName());
+            writeString(out, function.getRealName());
+            writeString(out, function.getLongName());
+            int flags = 0;
+            flags |= function.isVirtual() ? FLAG_VIRTUAL : 0;
+            flags |= function.isDeclaration() ? FLAG_DECLARATION : 0;
+            flags |= function.isMessage() ? FLAG_MESSAGE : 0;
+            flags |= function.getUnit() == unit ? FLAG_IN_UNIT : 0;
+            out.writeVarInt(flags);
+            out.writeSignedVarInt(function.getVisibility());
+            out.writeSignedVarInt(function.getLine());
+            out.writeSignedVarInt(function.getColumn());
+            out.writeSignedVarInt(function.getComplexity());
+            out.writeVarInt(function.getOverloadsCount());
+            writeClassReference(out, function.getParentClass());
+
+            ArgumentInterface[] arguments = function.getArguments();
+            out.writeVarInt(arguments.length);
+            for (ArgumentInterface argument : arguments) {
+                writeString(out, argument.getName());
+                writeString(out, argument.getType());
+            }
+
+            List<StatementInterface> statements = function.getStatements();
+            out.writeVarInt(statements.size());
+            int line = function.getLine();
+            for (StatementInterface statement : statements) {
+                writeString(out, statement.getText());
+                out.writeSignedVarInt(statement.getLine() - line);
+                out.writeSignedVarInt(statement.getColumn());
+                out.writeBoolean(statement.isComplex());
+                line = statement.getLine();
+            }
+
+            FunctionInterface[] called = function.getCalledFunctions();
+            Arrays.sort(called, BY_NAME);
+            out.writeVarInt(called.length);
+            for (FunctionInterface calledFunction : called) {
+                writeFunctionReference(out, calledFunction);
+            }
+
+            FunctionInterface[] overloads = function.getOverloadedFunctions();
+            out.writeVarInt(overloads.length);
+            for (FunctionInterface overload : overloads) {
+                writeFunction(out, overload);
+            }
+        }
+
+        private void writeClassMembers(BinaryOutput out, ClassInterface clazz) throws IOException {
+            ClassFieldInterface[] fields = clazz.getFields();
+            out.writeVarInt(fields.length);
+            for (ClassFieldInterface field : fields) {
+                writeField(out, field);
+            }
+
+            ClassPropertyInterface[] properties = clazz.getProperties();
+            out.writeVarInt(properties.length);
+            for (ClassPropertyInterface property : properties) {
+                writeField(out, property);
+                writeFunctionReference(out, property.getReadFunction());
+                writeFunctionReference(out, property.getWriteFunction());
+            }
+
+            FunctionInterface[] functions = clazz.getFunctions();
+            Arrays.sort(functions, BY_NAME);
+            out.writeVarInt(functions.length);
+            for (FunctionInterface function : functions) {
+                writeFunctionReference(out, function);
+            }
+
+            ClassInterface[] parents = clazz.getParents();
+            Arrays.sort(parents, BY_NAME);
+            out.writeVarInt(parents.length);
+            for (ClassInterface parent : parents) {
+                writeClassReference(out, parent);
+            }
+        }
+
+        private void writeField(BinaryOutput out, ClassFieldInterface field) throws IOException {
+            writeString(out, field.getName());
+            writeString(out, field.getType());
+            out.writeSignedVarInt(field.getVisibility());
+            out.writeBoolean(field.getParent() != null);
+        }
+
+        private void writeFunctionReference(BinaryOutput out, FunctionInterface function) throws IOException {
+            if (function == null) {
+                out.writeVarInt(REFERENCE_NULL);
+                return;
+            }
+            Integer index = functionIndexes.get(function);
+            if (index != null) {
+                out.writeVarInt((index << REFERENCE_KIND_BITS) | REFERENCE_LOCAL);
+                return;
+            }
+            out.writeVarInt(REFERENCE_EXTERNAL);
+            writeString(out, function.getUnit() == null ? null : function.getUnit().getName());
+            writeString(out, function.getName());
+        }
+
+        private void writeClassReference(BinaryOutput out, ClassInterface clazz) throws IOException {
+            if (clazz == null) {
+                out.writeVarInt(REFERENCE_NULL);
+                return;
+            }
+            Integer index = classIndexes.get(clazz);
+            if (index != null) {
+                out.writeVarInt((index << REFERENCE_KIND_BITS) | REFERENCE_LOCAL);
+                return;
+            }
+            out.writeVarInt(REFERENCE_EXTERNAL);
+            writeString(out, clazz.getFileName());
+            writeString(out, clazz.getName());
+        }
+
+        private void writeString(BinaryOutput out, String value) throws IOException {
+            out.writeVarInt(strings.reference(value));
+        }
+    }
+
+}
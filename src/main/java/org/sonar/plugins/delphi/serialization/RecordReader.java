@@ -0,0 +1,95 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads records of a file written by a {@link RecordWriter}, one at a time
+ */
+abstract class RecordReader implements Closeable {
+
+    private final BinaryInput in;
+    private boolean ended = false;
+
+    protected RecordReader(InputStream stream, int magic, int version) throws IOException {
+        in = new BinaryInput(stream);
+        int fileMagic = 0;
+        for (int i = 0; i < 4; ++i) {
+            fileMagic = (fileMagic << 8) | in.readByte();
+        }
+        if (fileMagic != magic) {
+            throw new IOException("Unknown file format");
+        }
+        int fileVersion = in.readVarInt();
+        if (fileVersion != version) {
+            throw new IOException("Unsupported format version " + fileVersion + ", expected " + version);
+        }
+    }
+
+    /**
+     * Reads the next record
+     * 
+     * @return record input, null at the end of file
+     */
+    protected BinaryInput nextRecord() throws IOException {
+        int length = nextLength();
+        if (length == 0) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        return new BinaryInput(new ByteArrayInputStream(record));
+    }
+
+    /**
+     * Skips the next record without decoding it
+     * 
+     * @return false at the end of file
+     */
+    public boolean skip() throws IOException {
+        int length = nextLength();
+        in.skip(length);
+        return length != 0;
+    }
+
+    private int nextLength() throws IOException {
+        if (ended) {
+            return 0;
+        }
+        int length = in.readVarInt();
+        ended = length == 0;
+        return length;
+    }
+
+    /**
+     * Closes the stream
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
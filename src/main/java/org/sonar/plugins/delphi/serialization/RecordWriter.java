@@ -0,0 +1,70 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a binary file made of a header (magic number and format version)
+ * and a sequence of records. A record is prefixed by its length, so readers
+ * can skip it without decoding it, and starts with its own string table, so
+ * it can be decoded without the records before it. The file ends with an
+ * empty record.
+ */
+abstract class RecordWriter implements Closeable {
+
+    private final BinaryOutput out;
+
+    protected RecordWriter(OutputStream stream, int magic, int version) throws IOException {
+        out = new BinaryOutput(stream);
+        out.writeRaw(new byte[] {(byte) (magic >>> 24), (byte) (magic >>> 16), (byte) (magic >>> 8), (byte) magic});
+        out.writeVarInt(version);
+    }
+
+    /**
+     * Writes a record
+     * 
+     * @param strings strings referenced by the record body
+     * @param body record body
+     */
+    protected void writeRecord(StringTable strings, ByteArrayOutputStream body) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.size() + 64);
+        BinaryOutput recordOut = new BinaryOutput(record);
+        strings.write(recordOut);
+        body.writeTo(record);
+        out.writeBytes(record.toByteArray());
+    }
+
+    /**
+     * Writes the end of file and closes the stream
+     */
+    public void close() throws IOException {
+        out.writeVarInt(0);
+        out.flush();
+        out.close();
+    }
+
+}
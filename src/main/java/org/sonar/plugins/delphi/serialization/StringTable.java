@@ -0,0 +1,101 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strings of a record, written once at its start and then referenced by
+ * index. Reference 0 stands for null.
+ */
+class StringTable {
+
+    private final List<String> strings;
+    private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+    /**
+     * ctor, for writing
+     */
+    StringTable() {
+        this.strings = new ArrayList<String>();
+    }
+
+    private StringTable(List<String> strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Adds a string to the table, if it is not there yet
+     * 
+     * @param value string, can be null
+     * @return reference of the string
+     */
+    int reference(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer reference = references.get(value);
+        if (reference == null) {
+            strings.add(value);
+            reference = strings.size();
+            references.put(value, reference);
+        }
+        return reference;
+    }
+
+    /**
+     * @param reference string reference
+     * @return referenced string
+     * @throws IOException if there is no such string
+     */
+    String get(int reference) throws IOException {
+        if (reference == 0) {
+            return null;
+        }
+        if (reference < 0 || reference > strings.size()) {
+            throw new IOException("Invalid string reference " + reference);
+        }
+        return strings.get(reference - 1);
+    }
+
+    void write(BinaryOutput out) throws IOException {
+        out.writeVarInt(strings.size());
+        for (String value : strings) {
+            out.writeString(value);
+        }
+    }
+
+    static StringTable read(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; ++i) {
+            strings.add(in.readString());
+        }
+        return new StringTable(strings);
+    }
+
+}
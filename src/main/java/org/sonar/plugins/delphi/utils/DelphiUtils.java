@@ -24,10 +24,11 @@ package org.sonar.plugins.delphi.utils;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -335,10 +336,11 @@ public final class DelphiUtils {
     }
 
     /**
-     * Reads file contents to string, transform it to lowercase
+     * Reads file contents to string, see {@link SourceFileReader}
      * 
-     * @param fileName File name
-     * @param encoding File encoding
+     * @param f File
+     * @param encoding File encoding used if the file has no byte order mark,
+     *            null for the platform default
      * @return File content readed to a string
      * @throws IOException When file not found
      */
@@ -347,26 +349,40 @@ public final class DelphiUtils {
         if (f == null || !f.exists()) {
             throw new IOException();
         }
-        String fileString = null;
-        int size = (int) f.length();
-
-        InputStreamReader isr;
-        FileInputStream fis = new FileInputStream(f);
-        if (encoding != null) {
-            isr = new InputStreamReader(fis, encoding);
-        } else {
-            isr = new InputStreamReader(fis);
-        }
+        return SourceFileReader.read(f, encoding);
+    }
 
+    /**
+     * Computes the SHA-1 digest of a text
+     * 
+     * @param text Text, encoded in UTF-8
+     * @return Digest as a hexadecimal string
+     */
+    public static String sha1(String text) {
         try {
-            char fileData[] = new char[size];
-            isr.read(fileData);
-            fileString = new String(fileData);
-        } finally {
-            isr.close();
+            return sha1(text.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        return fileString;
+    /**
+     * Computes the SHA-1 digest of data
+     * 
+     * @param data Data
+     * @return Digest as a hexadecimal string
+     */
+    public static String sha1(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public static String getRelativePath(File file, List<File> dirs) {
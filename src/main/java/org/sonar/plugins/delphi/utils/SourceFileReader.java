@@ -0,0 +1,184 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Reads source files into strings. A UTF-8 or UTF-16 byte order mark selects
+ * the charset (and is dropped), otherwise the given encoding is used. Files
+ * are read with plain channel reads into a byte buffer reused by the thread,
+ * and decoding goes through a reused char buffer, so the only allocation per
+ * file is the resulting string. Buffers of large files are not kept, and
+ * files are not memory mapped: a mapping is only released when its buffer is
+ * garbage collected, keeping the file open (and locked on Windows) until
+ * then. Malformed input is replaced, as done by an InputStreamReader.
+ */
+public final class SourceFileReader {
+
+    static final int REUSE_THRESHOLD = 256 * 1024; // bytes
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+    private static final ThreadLocal<ByteBuffer> BYTES = new ThreadLocal<ByteBuffer>();
+    private static final ThreadLocal<CharBuffer> CHARS = new ThreadLocal<CharBuffer>();
+
+    private SourceFileReader() {
+    }
+
+    /**
+     * Reads a source file
+     * 
+     * @param file File to read
+     * @param encoding Encoding of files without byte order mark, null for the
+     *            platform default
+     * @return File content
+     * @throws IOException When file could not be read
+     */
+    public static String read(File file, String encoding) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file.getAbsolutePath());
+            }
+            return decode(readFully(channel, (int) size), encoding);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes file bytes, detecting a byte order mark
+     * 
+     * @param bytes File bytes, from the buffer position to its limit
+     * @param encoding Encoding of content without byte order mark, null for
+     *            the platform default
+     * @return Decoded content
+     * @throws CharacterCodingException Never, malformed input is replaced
+     */
+    static String decode(ByteBuffer bytes, String encoding) throws CharacterCodingException {
+        Charset charset = detectByteOrderMark(bytes);
+        if (charset == null) {
+            charset = StringUtils.isEmpty(encoding) ? Charset.defaultCharset() : Charset.forName(encoding);
+        }
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        CharBuffer chars = charBuffer((int) (bytes.remaining() * (double) decoder.averageCharsPerByte()) + 16);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(chars);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                chars = grow(chars);
+            } else {
+                result.throwException();
+            }
+        }
+        chars.flip();
+        return chars.toString();
+    }
+
+    /**
+     * Skips a byte order mark
+     * 
+     * @return Charset of the byte order mark, null if there is none
+     */
+    private static Charset detectByteOrderMark(ByteBuffer bytes) {
+        int pos = bytes.position();
+        int remaining = bytes.remaining();
+        if (remaining >= 3 && bytes.get(pos) == (byte) 0xEF && bytes.get(pos + 1) == (byte) 0xBB
+                && bytes.get(pos + 2) == (byte) 0xBF) {
+            bytes.position(pos + 3);
+            return UTF_8;
+        }
+        if (remaining >= 2 && bytes.get(pos) == (byte) 0xFE && bytes.get(pos + 1) == (byte) 0xFF) {
+            bytes.position(pos + 2);
+            return UTF_16BE;
+        }
+        if (remaining >= 2 && bytes.get(pos) == (byte) 0xFF && bytes.get(pos + 1) == (byte) 0xFE) {
+            bytes.position(pos + 2);
+            return UTF_16LE;
+        }
+        return null;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer bytes = BYTES.get();
+        if (bytes == null || bytes.capacity() < size) {
+            bytes = ByteBuffer.allocate(Math.max(size, 8 * 1024));
+            if (size <= REUSE_THRESHOLD) {
+                BYTES.set(bytes); // do not keep the buffers of large files
+            }
+        }
+        bytes.clear();
+        bytes.limit(size);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) == -1) {
+                break; // file truncated while reading
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private static CharBuffer charBuffer(int capacity) {
+        CharBuffer chars = CHARS.get();
+        if (chars == null || chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(Math.max(capacity, 8 * 1024));
+            if (capacity <= REUSE_THRESHOLD) {
+                CHARS.set(chars); // do not keep the buffers of large files
+            }
+        }
+        chars.clear();
+        return chars;
+    }
+
+    private static CharBuffer grow(CharBuffer chars) {
+        CharBuffer grown = CharBuffer.allocate(chars.capacity() * 2);
+        chars.flip();
+        grown.put(chars);
+        return grown;
+    }
+
+}
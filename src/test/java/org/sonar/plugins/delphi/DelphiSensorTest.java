@@ -34,7 +34,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.fs.InputFile;
@@ -44,6 +46,8 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
 import org.sonar.api.rules.RuleFinder;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.debug.DebugSensorContext;
 import org.sonar.plugins.delphi.debug.ProjectMetricsXMLParser;
@@ -60,6 +64,9 @@ public class DelphiSensorTest {
     private RuleFinder ruleFinder;
     private ResourcePerspectives perspectives;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static final String ROOT_NAME = "/org/sonar/plugins/delphi/SimpleDelphiProject";
 
     @Before
@@ -131,7 +138,8 @@ public class DelphiSensorTest {
 
         ruleFinder = mock(RuleFinder.class);
 
-        sensor = new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives);
+        sensor = new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives, new DelphiASTCache(0),
+                new DelphiAnalysisCache((File) null));
     }
 
     @Test
@@ -190,6 +198,72 @@ public class DelphiSensorTest {
         }
     }
 
+    @Test
+    public void analyseWorkgroupProjectsConcurrentlyTest() {
+        DebugSensorContext sequentialContext = new DebugSensorContext();
+        sensor.analyse(project, sequentialContext);
+
+        List<File> files = delphiProjectHelper.getWorkgroupProjects().get(0).getSourceFiles();
+        DelphiProject first = new DelphiProject("First Project");
+        first.getSourceFiles().addAll(files.subList(0, files.size() / 2));
+        DelphiProject second = new DelphiProject("Second Project");
+        second.getSourceFiles().addAll(files.subList(files.size() / 2, files.size()));
+        when(delphiProjectHelper.getWorkgroupProjects()).thenReturn(Arrays.asList(first, second));
+        when(delphiProjectHelper.getAnalysisThreads()).thenReturn(4);
+
+        DelphiSensor workgroupSensor = new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives,
+                new DelphiASTCache(0), new DelphiAnalysisCache((File) null));
+        DebugSensorContext workgroupContext = new DebugSensorContext();
+        workgroupSensor.analyse(project, workgroupContext);
+
+        assertEquals(sensor.getProcessedFilesCount(), workgroupSensor.getProcessedFilesCount());
+        assertEquals(sequentialContext.getMeasuresKeys().size(), workgroupContext.getMeasuresKeys().size());
+    }
+
+    @Test
+    public void analyseInParallelTest() {
+        DebugSensorContext sequentialContext = new DebugSensorContext();
+        sensor.analyse(project, sequentialContext);
+
+        when(delphiProjectHelper.getAnalysisThreads()).thenReturn(3);
+        DebugSensorContext parallelContext = new DebugSensorContext();
+        new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives, new DelphiASTCache(0),
+                new DelphiAnalysisCache((File) null)).analyse(project, parallelContext);
+
+        assertEquals(sequentialContext.getMeasuresKeys(), parallelContext.getMeasuresKeys());
+        for (String key : sequentialContext.getMeasuresKeys()) {
+            assertEquals(key, sequentialContext.getMeasure(key).getValue(), parallelContext.getMeasure(key)
+                    .getValue());
+        }
+    }
+
+    @Test
+    public void analyseFromCacheTest() {
+        File cacheDir = new File(folder.getRoot(), "analysis-cache");
+        DelphiASTCache coldAstCache = new DelphiASTCache(0);
+        DelphiAnalysisCache coldCache = new DelphiAnalysisCache(cacheDir);
+        DebugSensorContext coldContext = new DebugSensorContext();
+        new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives, coldAstCache, coldCache).analyse(project,
+                coldContext);
+        assertEquals(0, coldCache.getHits());
+        assertTrue(coldAstCache.getMisses() > 0);
+
+        DelphiASTCache warmAstCache = new DelphiASTCache(0);
+        DelphiAnalysisCache warmCache = new DelphiAnalysisCache(cacheDir);
+        DebugSensorContext warmContext = new DebugSensorContext();
+        DelphiSensor warmSensor = new DelphiSensor(delphiProjectHelper, ruleFinder, perspectives, warmAstCache,
+                warmCache);
+        warmSensor.analyse(project, warmContext);
+
+        assertEquals(0, warmAstCache.getMisses()); // nothing parsed
+        assertTrue(warmCache.getHits() > 0);
+        assertEquals(coldCache.getMisses(), warmCache.getHits());
+        assertEquals(coldContext.getMeasuresKeys(), warmContext.getMeasuresKeys());
+        for (String key : coldContext.getMeasuresKeys()) {
+            assertEquals(key, coldContext.getMeasure(key).getValue(), warmContext.getMeasure(key).getValue());
+        }
+    }
+
     private void createKeyMetricIndexMap() {
         keyMetricIndex = new HashMap<String, Integer>();
         keyMetricIndex.put("lcom4", 0);
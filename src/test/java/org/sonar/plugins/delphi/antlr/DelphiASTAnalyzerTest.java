@@ -33,7 +33,6 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.sonar.plugins.delphi.DelphiTestUtils;
 import org.sonar.plugins.delphi.antlr.analyzer.ASTAnalyzer;
-import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCacheResults;
 import org.sonar.plugins.delphi.antlr.analyzer.DelphiASTAnalyzer;
 import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
 import org.sonar.plugins.delphi.core.language.ClassFieldInterface;
@@ -50,7 +49,6 @@ public class DelphiASTAnalyzerTest {
     @BeforeClass
     public static void setUp() throws Exception {
         fileComplexity = 0;
-        CodeAnalysisCacheResults.resetCache();
         analyser = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
     }
 
@@ -59,6 +57,7 @@ public class DelphiASTAnalyzerTest {
         File file = DelphiUtils.getResource(FILE_NAME);
         DelphiAST ast = new DelphiAST(file);
         analyser.analyze(ast);
+        analyser.link();
         testFunctions();
         testClasses();
         testFile();
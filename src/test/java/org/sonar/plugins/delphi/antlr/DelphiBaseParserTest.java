@@ -0,0 +1,93 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.antlr.runtime.TokenRewriteStream;
+import org.antlr.runtime.tree.CommonTree;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.sanitizer.DelphiSourceSanitizer;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiBaseParserTest {
+
+    private static final String FILE_NAME = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+    private File file = null;
+
+    @Before
+    public void init() {
+        file = DelphiUtils.getResource(FILE_NAME);
+    }
+
+    private DelphiParser createParser() throws Exception {
+        return new DelphiParser(new TokenRewriteStream(new DelphiLexer(new DelphiSourceSanitizer(
+                file.getAbsolutePath()))));
+    }
+
+    @Test
+    public void countsMemoization() throws Exception {
+        DelphiParser parser = createParser();
+        parser.file();
+        ParserStatistics statistics = parser.getStatistics();
+
+        assertEquals(0, parser.getNumberOfSyntaxErrors());
+        assertTrue(statistics.getHits() > 0);
+        assertTrue(statistics.getLookups() > statistics.getHits());
+        assertEquals(statistics.getLookups(), statistics.getStores());
+        assertEquals(0, statistics.getResets());
+        assertTrue(statistics.getHits("designator") > 0);
+        assertEquals(0, statistics.getLookups("qualifiedIdent")); // not memoized
+        assertEquals(statistics.getPeakSize(), parser.getRuleMemoizationCacheSize());
+    }
+
+    @Test
+    public void sameTreeWithBoundedMemoization() throws Exception {
+        DelphiParser parser = createParser();
+        String tree = ((CommonTree) parser.file().getTree()).toStringTree();
+
+        DelphiParser bounded = createParser();
+        bounded.setMemoCapacity(10);
+        assertEquals(tree, ((CommonTree) bounded.file().getTree()).toStringTree());
+        assertTrue(bounded.getStatistics().getResets() > 0);
+        assertTrue(bounded.getRuleMemoizationCacheSize() <= 10);
+    }
+
+    @Test
+    public void addsStatistics() throws Exception {
+        DelphiParser parser = createParser();
+        parser.file();
+        ParserStatistics total = new ParserStatistics();
+        total.add(parser.getStatistics());
+        total.add(parser.getStatistics());
+
+        assertEquals(2 * parser.getStatistics().getLookups(), total.getLookups());
+        assertEquals(2 * parser.getStatistics().getHits("designator"), total.getHits("designator"));
+        assertEquals(parser.getStatistics().getPeakSize(), total.getPeakSize());
+        assertTrue(total.describeRules(3).get(0).startsWith("namespacedQualifiedIdent: "));
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.antlr.sanitizer.SourceScan;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+/**
+ * Measures the parse time and the allocated memory of the grammar on the
+ * grammar test resources and on a large synthetic unit. Files are read and
+ * scanned for compiler directives once, so the time is spent preprocessing,
+ * lexing and parsing. Times are CPU times of the parsing thread, so they do
+ * not include the garbage collection and compilation threads. Run with
+ * main, before and after a grammar change.
+ */
+public final class DelphiParserBenchmark {
+
+    private static final String GRAMMAR_TEST = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+    private static final int WARMUP_RUNS = 10;
+    private static final int RUNS = 20;
+    private static final int SYNTHETIC_CLASSES = 200;
+
+    private DelphiParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<SourceScan> resources = new ArrayList<SourceScan>();
+        // every test resource, next to the grammar test resources
+        readResources(DelphiUtils.getResource(GRAMMAR_TEST).getParentFile().getParentFile(), resources);
+        List<SourceScan> synthetic = new ArrayList<SourceScan>();
+        synthetic.add(new SourceScan("Synthetic.pas", createSyntheticUnit(SYNTHETIC_CLASSES)));
+
+        System.out.println("corpus\tfiles\tchars\tCPU ms/run\tKB allocated/run");
+        run("resources", resources);
+        run("synthetic", synthetic);
+    }
+
+    private static void run(String name, List<SourceScan> corpus) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long chars = 0;
+        for (SourceScan scan : corpus) {
+            chars += scan.getText().length();
+        }
+        for (int run = 0; run < WARMUP_RUNS; ++run) {
+            parse(corpus);
+        }
+        long time = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long allocatedBefore = getAllocatedBytes();
+            long start = threads.getCurrentThreadCpuTime();
+            parse(corpus);
+            time = Math.min(time, threads.getCurrentThreadCpuTime() - start);
+            allocated = Math.min(allocated, getAllocatedBytes() - allocatedBefore);
+        }
+        System.out.println(name + "\t" + corpus.size() + "\t" + chars + "\t" + time / 1000000 + "\t"
+                + (allocated < 0 ? "n/a" : String.valueOf(allocated / 1024)));
+    }
+
+    private static void parse(List<SourceScan> corpus) {
+        for (SourceScan scan : corpus) {
+            DelphiAST ast = new DelphiAST(new File(scan.getFileName()), new PreprocessorContext(), scan);
+            if (ast.getChildCount() == 0) {
+                throw new IllegalStateException("Nothing parsed in " + scan.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread, negative if not supported
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread()
+                    .getId());
+        }
+        return -1;
+    }
+
+    private static void readResources(File file, List<SourceScan> corpus) throws IOException {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                readResources(child, corpus);
+            }
+            return;
+        }
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".pas") || name.endsWith(".dpr") || name.endsWith(".dpk")) {
+            corpus.add(SourceScan.read(file.getAbsolutePath(), null));
+        }
+    }
+
+    /**
+     * Unit with classes having fields, properties and methods whose bodies
+     * use the common statements and expressions
+     */
+    private static String createSyntheticUnit(int classes) {
+        StringBuilder unit = new StringBuilder();
+        unit.append("unit Synthetic;\n\ninterface\n\nuses\n  SysUtils, Classes;\n\ntype\n");
+        for (int i = 0; i < classes; ++i) {
+            unit.append("  TItem").append(i).append(" = class(TObject)\n");
+            unit.append("  private\n    FValue: Integer;\n    FName: string;\n    FItems: array of Integer;\n");
+            unit.append("  public\n    constructor Create(AValue: Integer; const AName: string);\n");
+            unit.append("    function Compute(A, B: Integer): Integer; virtual;\n");
+            unit.append("    procedure Update(Sender: TObject);\n");
+            unit.append("    property Value: Integer read FValue write FValue;\n  end;\n\n");
+        }
+        unit.append("implementation\n\n");
+        for (int i = 0; i < classes; ++i) {
+            String type = "TItem" + i;
+            unit.append("constructor ").append(type).append(".Create(AValue: Integer; const AName: string);\n");
+            unit.append("begin\n  inherited Create;\n  FValue := AValue;\n  FName := AName + '_' + IntToStr(")
+                    .append(i).append(");\n  SetLength(FItems, 10);\nend;\n\n");
+            unit.append("function ").append(type).append(".Compute(A, B: Integer): Integer;\n");
+            unit.append("var\n  I, Total: Integer;\nbegin\n  Total := 0;\n");
+            unit.append("  for I := Low(FItems) to High(FItems) do\n  begin\n");
+            unit.append("    if (A > B) and not (I in [1, 3, 5]) then\n      Total := Total + FItems[I] * (A - B)\n");
+            unit.append("    else\n      Total := Total - (FItems[I] div 2) mod 7;\n  end;\n");
+            unit.append("  case A of\n    0: Result := Total;\n    1, 2: Result := Total * 2;\n");
+            unit.append("  else\n    Result := Compute(A - 1, B) + FValue;\n  end;\nend;\n\n");
+            unit.append("procedure ").append(type).append(".Update(Sender: TObject);\n");
+            unit.append("var\n  List: TStringList;\nbegin\n  List := TStringList.Create;\n  try\n");
+            unit.append("    while List.Count < FValue do\n      List.Add(Format('%d: %s', [List.Count, FName]));\n");
+            unit.append("    if Sender is ").append(type).append(" then\n      ").append(type)
+                    .append("(Sender).Value := Compute(List.Count, FValue);\n");
+            unit.append("    with List do\n      Sort;\n  finally\n    List.Free;\n  end;\nend;\n\n");
+        }
+        unit.append("end.\n");
+        return unit.toString();
+    }
+
+}
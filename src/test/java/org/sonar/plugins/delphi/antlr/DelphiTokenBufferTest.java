@@ -0,0 +1,115 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.junit.Test;
+
+public class DelphiTokenBufferTest {
+
+    private static final String SOURCE = "x := y; // set\n  x := x + 1;";
+
+    @Test
+    public void lexesAllTokens() {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(SOURCE));
+
+        assertEquals(20, tokens.size());
+        assertEquals(DelphiLexer.TkIdentifier, tokens.getType(0));
+        assertEquals(DelphiLexer.WS, tokens.getType(1));
+        assertEquals(Token.HIDDEN_CHANNEL, tokens.getChannel(1));
+        assertEquals(DelphiLexer.ASSIGN, tokens.getType(2));
+        assertEquals(Token.DEFAULT_CHANNEL, tokens.getChannel(2));
+        assertEquals(DelphiLexer.COMMENT, tokens.getType(7));
+        assertEquals(Token.EOF, tokens.getType(19));
+    }
+
+    @Test
+    public void keepsPositionsAndText() {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(SOURCE));
+
+        assertEquals(":=", tokens.getText(2));
+        assertEquals(2, tokens.getStartIndex(2));
+        assertEquals(3, tokens.getStopIndex(2));
+        assertEquals("// set\n", tokens.getText(7));
+        assertEquals(1, tokens.getLine(7));
+        assertEquals(2, tokens.getLine(9));
+        assertEquals(2, tokens.getColumn(9));
+        assertEquals("<EOF>", tokens.getText(19));
+    }
+
+    @Test
+    public void internsIdentifiers() {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(SOURCE));
+
+        assertEquals("x", tokens.getText(9));
+        assertSame(tokens.getText(0), tokens.getText(9));
+        assertSame(tokens.getText(0), tokens.getText(13));
+    }
+
+    @Test
+    public void createsReadOnlyTokens() {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(SOURCE));
+        List<Token> list = tokens.getTokens();
+
+        assertEquals(tokens.size(), list.size());
+        Token token = list.get(9);
+        assertEquals(DelphiLexer.TkIdentifier, token.getType());
+        assertEquals("x", token.getText());
+        assertEquals(2, token.getLine());
+        assertEquals(2, token.getCharPositionInLine());
+        assertEquals(9, token.getTokenIndex());
+        try {
+            token.setType(DelphiLexer.ASSIGN);
+            fail("Token should be read only");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(DelphiLexer.TkIdentifier, token.getType());
+        }
+    }
+
+    @Test
+    public void findsIndexOfItsTokens() {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new ANTLRStringStream(SOURCE));
+        Token identifier = tokens.getToken(9);
+        Token changed = tokens.getToken(2);
+        changed.setText("=");
+
+        assertEquals(9, tokens.indexOf(identifier));
+        identifier.getText();
+        assertEquals(9, tokens.indexOf(identifier));
+        assertEquals(-1, tokens.indexOf(changed));
+        assertEquals(-1, tokens.indexOf(new CommonToken(DelphiLexer.TkIdentifier, "x")));
+        assertEquals(-1, new DelphiTokenBuffer(new ANTLRStringStream(SOURCE)).indexOf(identifier));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void checksIndex() {
+        new DelphiTokenBuffer(new ANTLRStringStream(SOURCE)).getType(20);
+    }
+
+}
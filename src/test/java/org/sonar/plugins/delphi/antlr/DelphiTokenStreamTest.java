@@ -0,0 +1,93 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import static org.junit.Assert.*;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelphiTokenStreamTest {
+
+    private DelphiTokenStream stream;
+
+    @Before
+    public void init() {
+        stream = new DelphiTokenStream(new DelphiTokenBuffer(new ANTLRStringStream("  x := y; { set }\n  z")));
+    }
+
+    @Test
+    public void skipsHiddenTokens() {
+        assertEquals(1, stream.index());
+        assertEquals(DelphiLexer.TkIdentifier, stream.LA(1));
+        assertEquals(DelphiLexer.ASSIGN, stream.LA(2));
+        assertEquals("y", stream.LT(3).getText());
+        assertEquals(DelphiLexer.SEMI, stream.LA(4));
+        assertEquals("z", stream.LT(5).getText());
+        assertEquals(Token.EOF, stream.LA(6));
+        assertEquals(Token.EOF, stream.LA(7));
+    }
+
+    @Test
+    public void consumes() {
+        stream.consume();
+        assertEquals(3, stream.index());
+        assertEquals(DelphiLexer.ASSIGN, stream.LA(1));
+        assertEquals("x", stream.LT(-1).getText());
+        for (int i = 0; i < 10; ++i) {
+            stream.consume();
+        }
+        assertEquals(Token.EOF, stream.LA(1));
+        assertEquals("z", stream.LT(-1).getText());
+    }
+
+    @Test
+    public void rewinds() {
+        int marker = stream.mark();
+        stream.consume();
+        stream.consume();
+        assertEquals("y", stream.LT(1).getText());
+        stream.rewind(marker);
+        assertEquals("x", stream.LT(1).getText());
+        stream.seek(5);
+        assertEquals("y", stream.LT(1).getText());
+    }
+
+    @Test
+    public void reusesTokens() {
+        Token token = stream.LT(1);
+        stream.consume();
+        assertSame(token, stream.LT(-1));
+        assertEquals(1, token.getTokenIndex());
+    }
+
+    @Test
+    public void getsText() {
+        assertEquals("x := y; { set }\n  z", stream.toString(1, 100));
+        assertEquals(":= y", stream.toString(stream.LT(2), stream.LT(3)));
+        assertNull(stream.toString(null, stream.LT(3)));
+    }
+
+}
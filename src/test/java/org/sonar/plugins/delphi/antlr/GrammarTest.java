@@ -26,6 +26,7 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 
+import org.antlr.runtime.tree.Tree;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
@@ -34,6 +35,9 @@ import org.sonar.plugins.delphi.utils.DelphiUtils;
 public class GrammarTest {
 
     private static final String FILE_NAME = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+    private static final String NEW_FILE_NAME = "/org/sonar/plugins/delphi/grammar/NewStatementTest.pas";
+    // tree of the grammar with the newStatement rule
+    private static final String NEW_BODY = "(begin x := new ( TObject ) ; x := new ( TList 10 ) ; new ( x ) ; end)";
     private File file = null;
 
     @Before
@@ -47,4 +51,19 @@ public class GrammarTest {
         assertEquals(false, ast.isError());
     }
 
+    @Test
+    public void parsesNewAsCall() throws Exception {
+        DelphiAST ast = new DelphiAST(DelphiUtils.getResource(NEW_FILE_NAME));
+        assertEquals(false, ast.isError());
+
+        Tree implementation = ast.getChild(2);
+        Tree body = implementation.getChild(implementation.getChildCount() - 1);
+        assertEquals(NEW_BODY, body.toStringTree());
+        for (int i = 0; i < body.getChildCount(); ++i) {
+            if ("new".equals(body.getChild(i).getText())) {
+                assertEquals(DelphiLexer.TkIdentifier, body.getChild(i).getType());
+            }
+        }
+    }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr;
+
+import static org.junit.Assert.*;
+
+import org.antlr.runtime.BaseRecognizer;
+import org.junit.Test;
+
+public class RuleMemoTest {
+
+    @Test
+    public void memoizesStopIndex() {
+        RuleMemo memo = new RuleMemo(100);
+        assertTrue(memo.put(3, 10, 20));
+        assertTrue(memo.put(4, 10, BaseRecognizer.MEMO_RULE_FAILED));
+
+        assertEquals(20, memo.get(3, 10));
+        assertEquals(BaseRecognizer.MEMO_RULE_FAILED, memo.get(4, 10));
+        assertEquals(BaseRecognizer.MEMO_RULE_UNKNOWN, memo.get(3, 11));
+        assertEquals(BaseRecognizer.MEMO_RULE_UNKNOWN, memo.get(5, 10));
+        assertEquals(2, memo.size());
+    }
+
+    @Test
+    public void replacesStopIndex() {
+        RuleMemo memo = new RuleMemo(100);
+        memo.put(3, 10, 20);
+        memo.put(3, 10, 25);
+
+        assertEquals(25, memo.get(3, 10));
+        assertEquals(1, memo.size());
+    }
+
+    @Test
+    public void growsUpToCapacity() {
+        RuleMemo memo = new RuleMemo(10000);
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(memo.put(i % 7, i, i + 1));
+        }
+        assertEquals(10000, memo.size());
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i + 1, memo.get(i % 7, i));
+        }
+    }
+
+    @Test
+    public void emptiedWhenFull() {
+        RuleMemo memo = new RuleMemo(2);
+        assertTrue(memo.put(1, 1, 2));
+        assertTrue(memo.put(1, 2, 3));
+        assertFalse(memo.put(1, 3, 4));
+
+        assertEquals(1, memo.size());
+        assertEquals(4, memo.get(1, 3));
+        assertEquals(BaseRecognizer.MEMO_RULE_UNKNOWN, memo.get(1, 1));
+    }
+
+}
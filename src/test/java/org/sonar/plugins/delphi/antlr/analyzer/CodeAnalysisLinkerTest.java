@@ -0,0 +1,114 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.analyzer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.DelphiClass;
+import org.sonar.plugins.delphi.core.language.impl.DelphiFunction;
+import org.sonar.plugins.delphi.core.language.impl.DelphiUnit;
+import org.sonar.plugins.delphi.core.language.impl.UnresolvedFunctionCall;
+
+public class CodeAnalysisLinkerTest {
+
+    private CodeAnalysisCache cache;
+    private UnitInterface unitA;
+    private UnitInterface unitB;
+
+    @Before
+    public void init() {
+        cache = new CodeAnalysisCache();
+
+        unitA = new DelphiUnit("unitA");
+        unitA.setPath("unitA.pas");
+        unitA.addIncludes("unitB");
+
+        unitB = new DelphiUnit("unitB");
+        unitB.setPath("unitB.pas");
+    }
+
+    @Test
+    public void resolvesCallsToIncludedUnits() {
+        FunctionInterface caller = new DelphiFunction("caller");
+        FunctionInterface called = new DelphiFunction("called");
+        unitA.addFunction(caller);
+        unitB.addFunction(called);
+
+        // call recorded before the called unit was analysed
+        cache.getUnresolvedCalls().add(new UnresolvedFunctionCall(caller, new DelphiFunction("called"), unitA));
+        cache.getUnresolvedCalls().add(new UnresolvedFunctionCall(caller, new DelphiFunction("writeln"), unitA));
+        cache.getUnits().add(unitA);
+        cache.getUnits().add(unitB);
+
+        new CodeAnalysisLinker(cache).link();
+
+        assertArrayEquals(new FunctionInterface[] {called}, caller.getCalledFunctions());
+        assertEquals(1, cache.getUnresolvedCalls().size());
+        assertEquals("writeln", cache.getUnresolvedCalls().get(0).getCalled().getName());
+    }
+
+    @Test
+    public void doesNotResolveCallsToOtherUnits() {
+        FunctionInterface caller = new DelphiFunction("caller");
+        FunctionInterface called = new DelphiFunction("called");
+        unitB.addFunction(caller);
+        unitA.addFunction(called);
+
+        cache.getUnresolvedCalls().add(new UnresolvedFunctionCall(caller, new DelphiFunction("called"), unitB));
+        cache.getUnits().add(unitA);
+        cache.getUnits().add(unitB);
+
+        new CodeAnalysisLinker(cache).link();
+
+        assertEquals(0, caller.getCalledFunctions().length);
+    }
+
+    @Test
+    public void resolvesParentsFromIncludedUnits() {
+        ClassInterface child = new DelphiClass("tchild");
+        ClassInterface placeholder = new DelphiClass("tparent");
+        child.addParent(placeholder);
+        unitA.addClass(child);
+
+        ClassInterface grandParent = new DelphiClass("tgrandparent");
+        ClassInterface parent = new DelphiClass("tparent");
+        parent.addParent(grandParent);
+        unitB.addClass(parent);
+        unitB.addClass(grandParent);
+
+        cache.getUnits().add(unitA);
+        cache.getUnits().add(unitB);
+
+        new CodeAnalysisLinker(cache).link();
+
+        assertSame(parent, child.getParents()[0]);
+        assertEquals(2, child.getDit());
+        assertArrayEquals(new ClassInterface[] {child}, parent.getChildren());
+    }
+
+}
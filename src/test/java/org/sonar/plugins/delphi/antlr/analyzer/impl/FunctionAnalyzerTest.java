@@ -31,7 +31,6 @@ import java.util.Arrays;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.runtime.tree.Tree;
 import org.junit.Test;
-import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCacheResults;
 import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
 import org.sonar.plugins.delphi.antlr.analyzer.CodeNode;
 import org.sonar.plugins.delphi.antlr.analyzer.CodeTree;
@@ -67,7 +66,6 @@ public class FunctionAnalyzerTest extends FileTestsCommon {
                 LexerMetrics.CONSTRUCTOR,
                 LexerMetrics.DESTRUCTOR));
 
-        CodeAnalysisCacheResults.resetCache();
     }
 
     @Test
@@ -0,0 +1,163 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.ast;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiASTCacheTest {
+
+    private static final String TEST_FILE = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+    private static final String OTHER_FILE = "/org/sonar/plugins/delphi/PMDTest/smallpmd.pas";
+
+    private File testFile;
+
+    @Before
+    public void setup() {
+        testFile = DelphiUtils.getResource(TEST_FILE);
+    }
+
+    @Test
+    public void parsesFileOnlyOnce() {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        DelphiAST ast = cache.getAST(testFile);
+
+        assertSame(ast, cache.getAST(testFile));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertFalse(ast.getTokens().isEmpty());
+        assertTrue(cache.getParserStatistics().getLookups() > 0);
+    }
+
+    @Test
+    public void parsesAgainWithOtherDefinitions() {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        DelphiAST ast = cache.getAST(testFile, new PreprocessorContext());
+        PreprocessorContext debug = new PreprocessorContext(Collections.<File> emptyList(), Arrays.asList("DEBUG"));
+
+        assertNotSame(ast, cache.getAST(testFile, debug));
+        assertSame(ast, cache.getAST(testFile, new PreprocessorContext()));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void reusesLastContextOfFile() {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        PreprocessorContext debug = new PreprocessorContext(Collections.<File> emptyList(), Arrays.asList("DEBUG"));
+        DelphiAST ast = cache.getAST(testFile, debug);
+
+        assertSame(ast, cache.getAST(testFile));
+    }
+
+    @Test
+    public void parsesEveryConfiguration() {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        PreprocessorContext release = new PreprocessorContext();
+        PreprocessorContext debug = new PreprocessorContext(Collections.<File> emptyList(), Arrays.asList("DEBUG"));
+        DelphiAST ast = cache.getAST(testFile, debug);
+
+        List<DelphiAST> asts = cache.getASTs(testFile, Arrays.asList(release, debug));
+        assertEquals(2, asts.size());
+        assertSame(ast, asts.get(1));
+        assertEquals(new DelphiAST(testFile, release).getFileSource(), asts.get(0).getFileSource());
+        assertSame(asts.get(0), cache.getAST(testFile));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        DelphiASTCache cache = new DelphiASTCache(1);
+        DelphiAST ast = cache.getAST(testFile);
+        cache.getAST(DelphiUtils.getResource(OTHER_FILE));
+
+        assertEquals(1, cache.size());
+        assertNotSame(ast, cache.getAST(testFile));
+    }
+
+    @Test
+    public void evict() {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        cache.getAST(testFile);
+        cache.evict(testFile);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void contentKeyOfCopies() throws IOException {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        File otherFile = DelphiUtils.getResource(OTHER_FILE);
+        File copy = new File("target/content-key/smallpmd.pas");
+        FileUtils.copyFile(otherFile, copy);
+        List<PreprocessorContext> contexts = Arrays.asList(new PreprocessorContext());
+        List<PreprocessorContext> debug = Arrays.asList(new PreprocessorContext(Collections.<File> emptyList(),
+                Arrays.asList("DEBUG")));
+
+        assertEquals(cache.getContentKey(otherFile, contexts), cache.getContentKey(copy, contexts));
+        assertNotEquals(cache.getContentKey(otherFile, contexts), cache.getContentKey(otherFile, debug));
+        assertNotEquals(cache.getContentKey(otherFile, contexts), cache.getContentKey(testFile, contexts));
+        assertNull(cache.getContentKey(new File("target/content-key/missing.pas"), contexts));
+    }
+
+    @Test
+    public void contentKeyOfCopiesIncludingFiles() throws IOException {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        File copy = new File("target/content-key/GrammarTest.pas");
+        FileUtils.copyFile(testFile, copy);
+        List<PreprocessorContext> contexts = Arrays.asList(new PreprocessorContext());
+
+        assertNotEquals(cache.getContentKey(testFile, contexts), cache.getContentKey(copy, contexts));
+    }
+
+    @Test
+    public void readsFileOnceForContentKeyAndParsing() throws IOException {
+        DelphiASTCache cache = new DelphiASTCache(10);
+        File otherFile = DelphiUtils.getResource(OTHER_FILE);
+        File keyedFirst = new File("target/content-key/keyedFirst.pas");
+        File parsedFirst = new File("target/content-key/parsedFirst.pas");
+        FileUtils.copyFile(otherFile, keyedFirst);
+        FileUtils.copyFile(otherFile, parsedFirst);
+        List<PreprocessorContext> contexts = Arrays.asList(new PreprocessorContext());
+        String key = cache.getContentKey(otherFile, contexts);
+
+        assertEquals(key, cache.getContentKey(keyedFirst, contexts));
+        assertTrue(keyedFirst.delete());
+        assertFalse(cache.getAST(keyedFirst, new PreprocessorContext()).isError());
+
+        cache.getAST(parsedFirst, new PreprocessorContext());
+        assertTrue(parsedFirst.delete());
+        assertEquals(key, cache.getContentKey(parsedFirst, contexts));
+    }
+
+}
@@ -32,6 +32,8 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
@@ -65,4 +67,22 @@ public class DelphiASTTest {
 
     }
 
+    @Test
+    public void keepsOriginalLinesOfCutCode() throws IOException {
+        File file = File.createTempFile("Lines", ".pas");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "unit Lines;\n{$ifdef DEBUG}\nuses\n  Debug;\n{$endif}\ninterface\n"
+                + "implementation\nend.\n");
+
+        DelphiAST lines = new DelphiAST(file);
+        assertFalse(lines.isError());
+        for (Token token : lines.getTokens()) {
+            if ("interface".equals(token.getText())) {
+                assertEquals(6, token.getLine());
+            }
+        }
+        assertEquals("interface", lines.getFileSourceLine(6));
+        assertEquals("", lines.getFileSourceLine(3));
+    }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.ast;
+
+import static org.junit.Assert.*;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.DelphiParser;
+import org.sonar.plugins.delphi.antlr.DelphiTokenBuffer;
+import org.sonar.plugins.delphi.antlr.DelphiTokenStream;
+import org.sonar.plugins.delphi.antlr.sanitizer.DelphiSourceSanitizer;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiTreeBufferTest {
+
+    private static final String FILE_NAME = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+
+    private CommonTree parsed;
+    private DelphiTreeBuffer buffer;
+
+    @Before
+    public void init() throws Exception {
+        DelphiTokenBuffer tokens = new DelphiTokenBuffer(new DelphiSourceSanitizer(DelphiUtils.getResource(FILE_NAME)
+                .getAbsolutePath()));
+        DelphiParser parser = new DelphiParser(new DelphiTokenStream(tokens));
+        parser.setTreeAdaptor(new DelphiTreeAdaptor(null, parser));
+        parsed = (CommonTree) parser.file().getTree();
+        buffer = new DelphiTreeBuffer(parsed, tokens, null);
+    }
+
+    @Test
+    public void keepsParsedTree() {
+        Tree root = buffer.getNode(0);
+
+        assertTrue(buffer.size() > 100);
+        assertEquals(parsed.toStringTree(), root.toStringTree());
+        assertNull(root.getParent());
+        assertSameNodes(parsed, root);
+    }
+
+    private void assertSameNodes(Tree expected, Tree node) {
+        assertEquals(expected.getType(), node.getType());
+        assertEquals(expected.getText(), node.getText());
+        assertEquals(expected.getLine(), node.getLine());
+        assertEquals(expected.getCharPositionInLine(), node.getCharPositionInLine());
+        assertEquals(expected.getChildIndex(), node.getChildIndex());
+        assertEquals(expected.isNil(), node.isNil());
+        assertEquals(expected.getChildCount(), node.getChildCount());
+        for (int i = 0; i < node.getChildCount(); ++i) {
+            assertSame(node, node.getChild(i).getParent());
+            assertSameNodes(expected.getChild(i), node.getChild(i));
+        }
+    }
+
+    @Test
+    public void createsOneViewPerNode() {
+        Tree node = buffer.getNode(0).getChild(1);
+
+        assertSame(node, buffer.getNode(0).getChild(1));
+        assertSame(node, node.getChild(0).getParent());
+        assertSame(node.getChild(1), ((CommonTree) node).getChildren().get(1));
+        assertSame(node.getChild(0), ((CommonTree) node).getFirstChildWithType(node.getChild(0).getType()));
+    }
+
+    @Test
+    public void readsChildrenLikeBaseTree() {
+        Tree node = buffer.getNode(0).getChild(1);
+        Tree leaf = node.getChild(0);
+        while (leaf.getChildCount() > 0) {
+            leaf = leaf.getChild(0);
+        }
+
+        assertNull(node.getChild(node.getChildCount()));
+        assertNull(leaf.getChild(-1));
+        assertNull(((CommonTree) leaf).getChildren());
+        assertEquals(-1, ((DelphiNode) leaf).getChildType(0));
+    }
+
+    @Test
+    public void keepsCreatedTokens() {
+        boolean imaginary = false;
+        for (int i = 0; i < buffer.size(); ++i) {
+            if (buffer.getType(i) == DelphiLexer.TkFunctionName) {
+                imaginary = true;
+                assertEquals("TkFunctionName", buffer.getText(i));
+                assertTrue(buffer.getToken(i) instanceof CommonToken);
+            }
+        }
+        assertTrue(imaginary);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void nodesAreReadOnly() {
+        buffer.getNode(0).addChild(new CommonTree(new CommonToken(DelphiLexer.TkIdentifier, "x")));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+/**
+ * Measures the preprocessor on the workload the sub range lookups of the
+ * former ExcludeResolver were quadratic on: many comments, strings and
+ * compiler directives in one file, with directives inside comments and
+ * strings. Run with main, the time per block should stay flat as the file
+ * grows.
+ */
+public final class DelphiPreprocessorBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 10;
+    private static final int MAX_BLOCKS = 32000;
+
+    private DelphiPreprocessorBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        String warmup = createSource(MAX_BLOCKS);
+        for (int run = 0; run < WARMUP_RUNS; ++run) {
+            run(warmup);
+        }
+        System.out.println("blocks\tchars\tns/block");
+        for (int count = 1000; count <= MAX_BLOCKS; count *= 2) {
+            String text = createSource(count);
+            long time = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; ++run) {
+                time = Math.min(time, run(text));
+            }
+            System.out.println(count + "\t" + text.length() + "\t" + time / count);
+        }
+    }
+
+    private static long run(String text) {
+        long start = System.nanoTime();
+        char[] output = new DelphiPreprocessor(new PreprocessorContext()).processSource("Benchmark.pas", text);
+        long time = System.nanoTime() - start;
+        if (output.length == 0) {
+            throw new IllegalStateException("Nothing preprocessed");
+        }
+        return time;
+    }
+
+    /**
+     * One block has a comment of each kind and a string hiding a directive,
+     * and a conditional block with an else branch
+     */
+    private static String createSource(int blocks) {
+        StringBuilder source = new StringBuilder("unit Benchmark;\n\ninterface\n\nimplementation\n\n");
+        for (int i = 0; i < blocks; ++i) {
+            source.append("procedure P").append(i).append(";\nbegin\n");
+            source.append("  { comment ").append(i).append(" }\n");
+            source.append("  (* hidden {$DEFINE HIDDEN").append(i).append("} *)\n");
+            source.append("  // hidden {$UNDEF DEBUG}\n");
+            source.append("  Writeln('{$DEFINE HIDDEN}');\n");
+            source.append("  {$IFDEF DEBUG}\n  Writeln(").append(i).append(");\n  {$ELSE}\n  Writeln(0);\n");
+            source.append("  {$ENDIF}\nend;\n\n");
+        }
+        source.append("end.\n");
+        return source.toString();
+    }
+
+}
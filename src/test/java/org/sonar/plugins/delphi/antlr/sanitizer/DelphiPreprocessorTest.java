@@ -0,0 +1,122 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiPreprocessorTest {
+
+    private static final String DIRECTIVES_FILE = "/org/sonar/plugins/delphi/directives/FileWithDirectives.pas";
+    private static final String GRAMMAR_FILE = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+    private static final String INCLUDE_FILE = "/org/sonar/plugins/delphi/grammar/info.inc";
+    // outputs of the former resolver chain, with any of the definitions
+    private static final String PREPROCESSED_DIR = "/org/sonar/plugins/delphi/preprocessor/";
+    private static final String FILE_NAME = "/tmp/Unit.pas";
+
+    @Test
+    public void sameOutputAsResolverChain() throws IOException {
+        for (String fileName : new String[] {DIRECTIVES_FILE, GRAMMAR_FILE, INCLUDE_FILE}) {
+            File file = DelphiUtils.getResource(fileName);
+            String text = DelphiUtils.readFileContent(file, null);
+            String expected = DelphiUtils.readFileContent(
+                    DelphiUtils.getResource(PREPROCESSED_DIR + file.getName() + ".txt"), "UTF-8");
+            for (String[] definitions : new String[][] { {}, {"TEST"}, {"DEBUG", "TEST"}}) {
+                assertEquals(fileName + " " + Arrays.toString(definitions), expected,
+                        preprocess(file.getAbsolutePath(), text, definitions));
+            }
+        }
+    }
+
+    @Test
+    public void sharedScan() throws IOException {
+        File file = DelphiUtils.getResource(DIRECTIVES_FILE);
+        String text = DelphiUtils.readFileContent(file, null);
+        SourceScan scan = new SourceScan(file.getAbsolutePath(), text);
+        for (String[] definitions : new String[][] { {}, {"TEST"}, {"DEBUG", "TEST"}}) {
+            PreprocessorContext context = new PreprocessorContext(new ArrayList<File>(), Arrays.asList(definitions));
+            assertEquals(Arrays.toString(definitions), preprocess(file.getAbsolutePath(), text, definitions),
+                    new String(new DelphiPreprocessor(context).process(scan)));
+        }
+    }
+
+    @Test
+    public void includedFiles() throws IOException {
+        File file = DelphiUtils.getResource(GRAMMAR_FILE);
+        DelphiPreprocessor preprocessor = new DelphiPreprocessor(new PreprocessorContext());
+        preprocessor.process(file.getAbsolutePath(), null);
+
+        String info = DelphiUtils.getResource(INCLUDE_FILE).getAbsolutePath();
+        String info2 = new File(file.getParentFile(), "info2.inc").getAbsolutePath();
+        assertEquals(Arrays.asList(info, info2, info, info2), preprocessor.getIncludedFiles());
+    }
+
+    @Test
+    public void conditionalDirectives() {
+        assertPreprocessed("AC\n", "A{$ifdef X}B{$endif}C");
+        assertPreprocessed("AC\n", "A{$ifdef X}B{$endif}C", "X");
+        assertPreprocessed("A{$ifdef X}BC\n", "A{$ifdef X}B{$else}D{$endif}C");
+        assertPreprocessed("AD{$endif}C\n", "A{$ifdef X}B{$else}D{$endif}C", "X");
+        assertPreprocessed("AD{$endif}C\n", "A{$ifndef X}B{$else}D{$endif}C");
+        assertPreprocessed("A{$ifdef X}B{$else}CE\n", "A{$ifdef X}B{$else}C{$else}D{$endif}E");
+        assertPreprocessed("AE\n", "A{$if X}B{$ifend}C{$endif}E");
+        assertPreprocessed("A{$define X}C\n", "A{$define X}{$ifdef X}B{$endif}C");
+        assertPreprocessed("AC{$endif}D\n", "A{$ifdef X}B{$endif}C{$endif}D");
+    }
+
+    @Test
+    public void unmatchedDirectives() {
+        assertPreprocessed("A{$ifdef X}B\n", "A{$ifdef X}B");
+        assertPreprocessed("A{$ifdef X}B{$endif}{$C\n", "A{$ifdef X}B{$endif}{$C");
+    }
+
+    @Test
+    public void excludedDirectives() {
+        assertPreprocessed("AC\n", "A{$ifdef X}B// {$else}\n{$endif}C");
+        assertPreprocessed("AC\n", "A{$ifdef X}B(* {$endif} *) {$endif}C");
+        assertPreprocessed("A{$ifdef X}B{ c }{$endif}C\n", "A{$ifdef X}B{ c }{$endif}C");
+        assertPreprocessed("AC\n\n", "A{$ifdef X}B'{$endif}' {$endif}C\n");
+    }
+
+    @Test
+    public void fixSource() {
+        assertPreprocessed("a :b .. c 'x :y' {c :d} .. .\n", "a:b..c 'x:y' {c:d}...");
+    }
+
+    private void assertPreprocessed(String expected, String text, String... definitions) {
+        assertEquals(expected, preprocess(FILE_NAME, text, definitions));
+    }
+
+    private String preprocess(String fileName, String text, String... definitions) {
+        PreprocessorContext context = new PreprocessorContext(new ArrayList<File>(), Arrays.asList(definitions));
+        return new String(new DelphiPreprocessor(context).processSource(fileName, text));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.delphi.antlr.directives.CompilerDirectiveType;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class IncludeFileCacheTest {
+
+    private static final String GRAMMAR_FILE = "/org/sonar/plugins/delphi/grammar/GrammarTest.pas";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final IncludeFileCache cache = new IncludeFileCache();
+
+    @Test
+    public void readOnce() throws IOException {
+        File file = write(folder.newFile("defines.inc"), "{$define A}\n// {$include a.inc}\n{$I b.inc}\n");
+
+        IncludeFile include = cache.get(file);
+        assertEquals(file.getAbsolutePath(), include.getPath());
+        assertEquals(2, include.getDirectives().size());
+        assertEquals(CompilerDirectiveType.DEFINE, include.getDirectives().get(0).getType());
+        assertEquals(CompilerDirectiveType.INCLUDE, include.getDirectives().get(1).getType());
+        assertEquals("b.inc", include.getDirectives().get(1).getItem());
+
+        assertSame(include, cache.get(file));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void reloadModifiedFile() throws IOException {
+        File file = write(folder.newFile("defines.inc"), "{$define A}\n");
+        cache.get(file);
+
+        write(file, "{$define A}\n{$define B}\n");
+        assertEquals(2, cache.get(file).getDirectives().size());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void sharedByPreprocessors() throws IOException {
+        File file = DelphiUtils.getResource(GRAMMAR_FILE);
+        PreprocessorContext context = new PreprocessorContext(new ArrayList<File>(), new ArrayList<String>(), cache);
+        new DelphiPreprocessor(context).process(file.getAbsolutePath(), null);
+        new DelphiPreprocessor(context).process(file.getAbsolutePath(), null);
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(6, cache.getHits());
+    }
+
+    private File write(File file, String content) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(content.getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncludeFileIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final IncludeFileIndex index = new IncludeFileIndex();
+    private File first;
+    private File second;
+
+    @Before
+    public void setup() throws IOException {
+        first = folder.newFolder("First");
+        second = folder.newFolder("Second");
+        new File(first, "Sub").mkdir();
+        new File(first, "Sub/Defines.INC").createNewFile();
+        new File(second, "compilers.inc").createNewFile();
+        new File(second, "Defines.inc").createNewFile();
+    }
+
+    @Test
+    public void findIgnoringCase() {
+        assertEquals(new File(first, "Sub/Defines.INC"), index.find(first, "sub\\defines.inc"));
+        assertEquals(new File(first, "Sub/Defines.INC"), index.find(first, "./SUB/DEFINES.inc"));
+        assertEquals(new File(second, "compilers.inc"), index.find(new File(first, "Sub"), "..\\..\\second\\Compilers.inc"));
+        assertNull(index.find(first, "sub"));
+    }
+
+    @Test
+    public void findInFirstDirectory() {
+        assertEquals(new File(second, "compilers.inc"), index.find(Arrays.asList(first, second), "compilers.inc"));
+        assertEquals(new File(first, "Sub/Defines.INC"),
+                index.find(Arrays.asList(new File(first, "Sub"), second), "defines.inc"));
+        assertEquals(new File(second, "Defines.inc"), index.find(Arrays.asList(second, first), "defines.inc"));
+        assertEquals(new File(first, "Sub/Defines.INC"), index.find(Arrays.asList(second, first), "Sub/defines.inc"));
+    }
+
+    @Test
+    public void rememberMissingFiles() throws IOException {
+        assertNull(index.find(Arrays.asList(first, second), "missing.inc"));
+        new File(second, "missing.inc").createNewFile();
+        assertNull(index.find(Arrays.asList(first, second), "missing.inc"));
+
+        index.clear();
+        assertEquals(new File(second, "missing.inc"), index.find(Arrays.asList(first, second), "missing.inc"));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.antlr.sanitizer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SourceMapTest {
+
+    @Test
+    public void identity() {
+        SourceMap map = new SourceMap();
+        assertEquals(1, map.size());
+        assertEquals(1, map.getOriginalLine(0, 1));
+        assertEquals(7, map.getOriginalLine(100, 7));
+    }
+
+    @Test
+    public void mapsPieces() {
+        SourceMap map = new SourceMap();
+        map.add(10, 2, 5);
+        map.add(10, 2, 6); // replaces the empty piece
+        map.add(20, 3, 7); // same shift, not a new piece
+        map.add(30, 4, 9);
+
+        assertEquals(3, map.size());
+        assertEquals(2, map.getOriginalLine(9, 2));
+        assertEquals(6, map.getOriginalLine(10, 2));
+        assertEquals(7, map.getOriginalLine(25, 3));
+        assertEquals(9, map.getOriginalLine(30, 4));
+        assertEquals(10, map.getOriginalLine(40, 5));
+    }
+
+    @Test
+    public void mapsPreprocessedFile() {
+        String text = "a\n{$ifdef X}\nb\nc\n{$endif}\nd {$ifdef X}e\nf{$endif} g\nh\n";
+        DelphiPreprocessor preprocessor = new DelphiPreprocessor(new PreprocessorContext());
+        String preprocessed = new String(preprocessor.processSource("/tmp/Unit.pas", text));
+        SourceMap map = preprocessor.getSourceMap();
+
+        assertEquals("a\n\nd  g\nh\n\n", preprocessed);
+        assertEquals(1, originalLine(map, preprocessed, "a"));
+        assertEquals(6, originalLine(map, preprocessed, "d"));
+        assertEquals(7, originalLine(map, preprocessed, "g"));
+        assertEquals(8, originalLine(map, preprocessed, "h"));
+    }
+
+    private static int originalLine(SourceMap map, String preprocessed, String word) {
+        int offset = preprocessed.indexOf(word);
+        int line = 1;
+        for (int i = 0; i < offset; ++i) {
+            if (preprocessed.charAt(i) == '\n') {
+                ++line;
+            }
+        }
+        return map.getOriginalLine(offset, line);
+    }
+
+}
@@ -148,6 +148,24 @@ public class CompilerDirectiveFactoryTest extends FileTestsCommon {
         assertEquals(7, directive.getLastCharPosition());
     }
 
+    @Test
+    public void createAtBoundsTest() {
+        String data = "begin {$ifndef DEBUG } end {$mode delphi}";
+        directive = factory.createAt(data, 6, 21);
+        assertEquals(CompilerDirectiveType.IFDEF, directive.getType());
+        assertEquals("ifndef", directive.getName());
+        assertEquals("DEBUG", directive.getItem());
+        assertEquals(6, directive.getFirstCharPosition());
+        assertEquals(21, directive.getLastCharPosition());
+
+        assertNull(factory.createAt(data, 27, 40));
+    }
+
+    @Test(expected = CompilerDirectiveFactorySyntaxException.class)
+    public void noClosingBracketTest() throws CompilerDirectiveFactorySyntaxException {
+        factory.produce("{$define A} {$define B");
+    }
+
     @Test
     public void produceTest() throws IOException, CompilerDirectiveFactorySyntaxException {
         loadFile(TEST_FILE);
@@ -0,0 +1,131 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.cache;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.delphi.antlr.sanitizer.IncludeFileCache;
+import org.sonar.plugins.delphi.antlr.sanitizer.PreprocessorContext;
+
+public class DelphiAnalysisCacheTest {
+
+    private static final String SECTION = "test";
+    private static final byte[] PAYLOAD = {1, 2, 3};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File sourceFile;
+    private File includeFile;
+    private PreprocessorContext context;
+
+    @Before
+    public void setup() throws Exception {
+        sourceFile = folder.newFile("unit.pas");
+        includeFile = folder.newFile("include.inc");
+        FileUtils.writeStringToFile(sourceFile, "unit Unit1; {$I include.inc}");
+        FileUtils.writeStringToFile(includeFile, "interface implementation end.");
+        context = new PreprocessorContext(new ArrayList<File>(), Arrays.asList("DEBUG"));
+    }
+
+    private DelphiAnalysisCache newCache() {
+        return new DelphiAnalysisCache(new File(folder.getRoot(), "cache"));
+    }
+
+    private void store() {
+        newCache().store(SECTION, sourceFile, context, Collections.singletonList(includeFile.getAbsolutePath()),
+                PAYLOAD);
+    }
+
+    @Test
+    public void disabledCacheTest() {
+        DelphiAnalysisCache cache = new DelphiAnalysisCache((File) null);
+        assertFalse(cache.isEnabled());
+        cache.store(SECTION, sourceFile, context, Collections.<String> emptyList(), PAYLOAD);
+        assertThat(cache.load(SECTION, sourceFile, context), nullValue());
+        assertThat(cache.getMisses(), is(0));
+    }
+
+    @Test
+    public void storeAndLoadTest() {
+        store();
+        DelphiAnalysisCache cache = newCache();
+        assertThat(cache.load(SECTION, sourceFile, context), is(PAYLOAD));
+        assertThat(cache.load("other", sourceFile, context), nullValue());
+        assertThat(cache.getHits(), is(1));
+        assertThat(cache.getMisses(), is(1));
+    }
+
+    @Test
+    public void changedFileTest() throws Exception {
+        store();
+        FileUtils.writeStringToFile(sourceFile, "unit Unit2; {$I include.inc}");
+        assertThat(newCache().load(SECTION, sourceFile, context), nullValue());
+    }
+
+    @Test
+    public void changedIncludeTest() throws Exception {
+        store();
+        FileUtils.writeStringToFile(includeFile, "interface uses Unit3; implementation end.");
+        assertThat(newCache().load(SECTION, sourceFile, context), nullValue());
+    }
+
+    @Test
+    public void deletedIncludeTest() {
+        store();
+        assertThat(includeFile.delete(), is(true));
+        assertThat(newCache().load(SECTION, sourceFile, context), nullValue());
+    }
+
+    @Test
+    public void changedContextTest() {
+        store();
+        List<String> definitions = Arrays.asList("DEBUG", "MSWINDOWS");
+        PreprocessorContext otherContext = new PreprocessorContext(new ArrayList<File>(), definitions);
+        assertThat(newCache().load(SECTION, sourceFile, otherContext), nullValue());
+        assertThat(newCache().load(SECTION, sourceFile, context), is(PAYLOAD));
+    }
+
+    @Test
+    public void changedEncodingTest() {
+        store();
+        PreprocessorContext utf16Context = new PreprocessorContext(new ArrayList<File>(), Arrays.asList("DEBUG"),
+                new IncludeFileCache("UTF-16"));
+        assertThat(newCache().load(SECTION, sourceFile, utf16Context), nullValue());
+    }
+
+}
@@ -29,7 +29,6 @@ import java.io.File;
 import org.junit.Test;
 import org.sonar.plugins.delphi.DelphiTestUtils;
 import org.sonar.plugins.delphi.antlr.analyzer.ASTAnalyzer;
-import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCacheResults;
 import org.sonar.plugins.delphi.antlr.analyzer.DelphiASTAnalyzer;
 import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
 import org.sonar.plugins.delphi.utils.DelphiUtils;
@@ -42,9 +41,9 @@ public class ComplexityMetricsTest {
     public void analyseTest() throws Exception {
         // init
         File testFile = DelphiUtils.getResource(FILE_NAME);
-        CodeAnalysisCacheResults.resetCache();
         ASTAnalyzer analyzer = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
         analyzer.analyze(new DelphiAST(testFile));
+        analyzer.link();
 
         // processing
         ComplexityMetrics metrics = new ComplexityMetrics(null);
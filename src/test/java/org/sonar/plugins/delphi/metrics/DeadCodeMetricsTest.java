@@ -170,6 +170,7 @@ public class DeadCodeMetricsTest {
         ASTAnalyzer analyser = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
         assertFalse("Grammar error", ast.isError());
         analyser.analyze(ast);
+        analyser.link();
         metrics.analyse(null, context, analyser.getResults().getClasses(), analyser.getResults().getFunctions(),
                 analyser.getResults()
                         .getCachedUnitsAsList());
@@ -34,12 +34,14 @@ import org.sonar.plugins.delphi.utils.DelphiUtils;
 public class LCOM4MetricsTest {
 
     private final static String FILE_NAME = "/org/sonar/plugins/delphi/metrics/LCOM4MetricsTest.pas";
+    private final static String CASE_FILE_NAME = "/org/sonar/plugins/delphi/metrics/LCOM4CaseTest.pas";
 
     @Test
     public void analyseTest() throws Exception {
         DelphiAST ast = new DelphiAST(DelphiUtils.getResource(FILE_NAME));
         ASTAnalyzer analyzer = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
         analyzer.analyze(ast);
+        analyzer.link();
 
         LCOM4Metrics metric = new LCOM4Metrics(null);
         metric.analyse(null, null, analyzer.getResults().getClasses(), analyzer.getResults().getFunctions(), null);
@@ -47,4 +49,18 @@ public class LCOM4MetricsTest {
         double LOC4 = metric.getMetric("loc4");
         assertEquals(3.0, LOC4, 0.0);
     }
+
+    @Test
+    public void fieldsMatchIgnoringCaseTest() throws Exception {
+        DelphiAST ast = new DelphiAST(DelphiUtils.getResource(CASE_FILE_NAME));
+        ASTAnalyzer analyzer = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
+        analyzer.analyze(ast);
+        analyzer.link();
+
+        LCOM4Metrics metric = new LCOM4Metrics(null);
+        metric.analyse(null, null, analyzer.getResults().getClasses(), analyzer.getResults().getFunctions(), null);
+
+        // both procedures use Field1, spelled differently
+        assertEquals(1.0, metric.getMetric("loc4"), 0.0);
+    }
 }
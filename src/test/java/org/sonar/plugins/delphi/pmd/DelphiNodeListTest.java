@@ -0,0 +1,115 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sourceforge.pmd.ast.CompilationUnit;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiNodeListTest {
+
+    private static final String TEST_FILE = "/org/sonar/plugins/delphi/PMDTest/pmd.pas";
+
+    private static void addNodes(Tree node, List<Tree> nodes) {
+        for (int i = 0; i < node.getChildCount(); ++i) {
+            nodes.add(node.getChild(i));
+            addNodes(node.getChild(i), nodes);
+        }
+    }
+
+    @Test
+    public void walksTreeInDocumentOrder() {
+        DelphiAST ast = new DelphiAST(DelphiUtils.getResource(TEST_FILE));
+        List<Tree> expected = new ArrayList<Tree>();
+        addNodes(ast, expected);
+        List<CompilationUnit> nodes = new DelphiNodeList(ast);
+
+        assertEquals(expected.size(), nodes.size());
+        int index = 0;
+        for (CompilationUnit node : nodes) {
+            assertSame(expected.get(index++), node);
+        }
+        assertEquals(expected.size(), index);
+        assertSame(expected.get(0), nodes.get(0));
+        assertSame(expected.get(10), nodes.get(10));
+        assertSame(expected.get(11), nodes.get(11));
+        assertSame(expected.get(5), nodes.get(5));
+    }
+
+    @Test
+    public void wrapsNodesOfTreesBuiltByHand() {
+        DelphiAST ast = new DelphiAST();
+        CommonTree first = new CommonTree(new CommonToken(1, "first"));
+        first.addChild(new CommonTree(new CommonToken(2, "child")));
+        ast.addChild(first);
+        ast.addChild(new CommonTree(new CommonToken(3, "second")));
+        List<CompilationUnit> nodes = new DelphiNodeList(ast);
+
+        assertEquals(3, nodes.size());
+        StringBuilder texts = new StringBuilder();
+        for (CompilationUnit node : nodes) {
+            texts.append(((DelphiPMDNode) node).getText()).append(' ');
+        }
+        assertEquals("first child second ", texts.toString());
+    }
+
+    @Test
+    public void emptyTree() {
+        List<CompilationUnit> nodes = new DelphiNodeList(new DelphiAST());
+
+        assertTrue(nodes.isEmpty());
+        assertEquals(0, nodes.size());
+        assertFalse(nodes.iterator().hasNext());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void checksIndex() {
+        DelphiAST ast = new DelphiAST();
+        ast.addChild(new CommonTree(new CommonToken(1, "node")));
+
+        new DelphiNodeList(ast).get(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void isReadOnly() {
+        DelphiAST ast = new DelphiAST();
+        ast.addChild(new CommonTree(new CommonToken(1, "node")));
+        Iterator<CompilationUnit> nodes = new DelphiNodeList(ast).iterator();
+        nodes.next();
+
+        nodes.remove();
+    }
+
+}
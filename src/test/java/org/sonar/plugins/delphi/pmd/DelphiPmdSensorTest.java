@@ -28,12 +28,17 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -45,6 +50,8 @@ import org.sonar.api.issue.Issue;
 import org.sonar.api.resources.Project;
 import org.sonar.plugins.delphi.DelphiTestUtils;
 import org.sonar.plugins.delphi.StubIssueBuilder;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.debug.DebugSensorContext;
 import org.sonar.plugins.delphi.project.DelphiProject;
@@ -62,6 +69,9 @@ public class DelphiPmdSensorTest {
     private Issuable issuable;
     private List<Issue> issues = new LinkedList<Issue>();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void init() {
         project = mock(Project.class);
@@ -107,7 +117,8 @@ public class DelphiPmdSensorTest {
             }
         });
 
-        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives);
+        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives, new DelphiASTCache(0),
+                new DelphiAnalysisCache((File) null));
     }
 
     @Test
@@ -115,6 +126,98 @@ public class DelphiPmdSensorTest {
         assertTrue(sensor.shouldExecuteOnProject(project));
     }
 
+    @Test
+    public void writesXmlReportOnlyWhenEnabled() throws Exception {
+        File report = new File("target", "pmd-report.xml");
+        report.delete();
+
+        sensor.analyse(project, new DebugSensorContext());
+        assertFalse(report.exists());
+
+        when(delphiProjectHelper.isPmdXmlReportEnabled()).thenReturn(true);
+        issues.clear();
+        sensor.analyse(project, new DebugSensorContext());
+
+        String xml = FileUtils.readFileToString(report, "UTF-8");
+        assertThat(StringUtils.countMatches(xml, "<violation "), is(issues.size()));
+        assertThat(xml, containsString("rule=\"Class Name Rule\""));
+    }
+
+    @Test
+    public void analyseInParallelTest() {
+        List<InputFile> sourceFiles = new ArrayList<InputFile>();
+        for (String file : new String[] {TEST_FILE, ROOT_NAME + "/smallpmd.pas", TEST_FILE,
+            ROOT_NAME + "/smallpmd.pas"}) {
+            sourceFiles.add(new DefaultInputFile(ROOT_NAME).setFile(DelphiUtils.getResource(file)));
+        }
+        DelphiProject delphiProject = new DelphiProject("Default Project");
+        delphiProject.setSourceFiles(sourceFiles);
+        when(delphiProjectHelper.getWorkgroupProjects()).thenReturn(Arrays.asList(delphiProject));
+
+        sensor.analyse(project, new DebugSensorContext());
+        List<Issue> sequentialIssues = new ArrayList<Issue>(issues);
+
+        issues.clear();
+        when(delphiProjectHelper.getAnalysisThreads()).thenReturn(3);
+        sensor.analyse(project, new DebugSensorContext());
+
+        assertThat(issues, hasSize(sequentialIssues.size()));
+        for (int i = 0; i < issues.size(); ++i) {
+            assertThat(issues.get(i).ruleKey(), is(sequentialIssues.get(i).ruleKey()));
+            assertThat(issues.get(i).line(), is(sequentialIssues.get(i).line()));
+        }
+    }
+
+    @Test
+    public void analyseFromCacheTest() throws Exception {
+        DelphiAnalysisCache analysisCache = new DelphiAnalysisCache(new File(folder.getRoot(), "analysis-cache"));
+        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives, new DelphiASTCache(0), analysisCache);
+
+        sensor.analyse(project, new DebugSensorContext());
+        List<Issue> analysedIssues = new ArrayList<Issue>(issues);
+        assertThat(analysisCache.getMisses(), is(1));
+
+        issues.clear();
+        sensor.analyse(project, new DebugSensorContext());
+        assertThat(analysisCache.getHits(), is(1));
+
+        assertThat(issues, hasSize(analysedIssues.size()));
+        for (int i = 0; i < issues.size(); ++i) {
+            assertThat(issues.get(i).ruleKey(), is(analysedIssues.get(i).ruleKey()));
+            assertThat(issues.get(i).line(), is(analysedIssues.get(i).line()));
+            assertThat(issues.get(i).message(), is(analysedIssues.get(i).message()));
+        }
+    }
+
+    @Test
+    public void analyseCopiesOnceTest() throws Exception {
+        File copy = new File(folder.newFolder("copies"), "pmd.pas");
+        FileUtils.copyFile(DelphiUtils.getResource(TEST_FILE), copy);
+        DelphiASTCache astCache = new DelphiASTCache(0);
+        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives, astCache, new DelphiAnalysisCache(
+                (File) null));
+
+        sensor.analyse(project, new DebugSensorContext());
+        List<Issue> originalIssues = new ArrayList<Issue>(issues);
+
+        DelphiProject delphiProject = new DelphiProject("Default Project");
+        delphiProject.setSourceFiles(Arrays.<InputFile> asList(
+                new DefaultInputFile(ROOT_NAME).setFile(DelphiUtils.getResource(TEST_FILE)),
+                new DefaultInputFile(ROOT_NAME).setFile(copy)));
+        when(delphiProjectHelper.getWorkgroupProjects()).thenReturn(Arrays.asList(delphiProject));
+        astCache.clear();
+        issues.clear();
+        sensor.analyse(project, new DebugSensorContext());
+
+        assertThat(astCache.getMisses(), is(2));
+        assertThat(issues, hasSize(2 * originalIssues.size()));
+        for (int i = 0; i < originalIssues.size(); ++i) {
+            Issue copyIssue = issues.get(originalIssues.size() + i);
+            assertThat(copyIssue.ruleKey(), is(originalIssues.get(i).ruleKey()));
+            assertThat(copyIssue.line(), is(originalIssues.get(i).line()));
+        }
+    }
+
     @Test
     public void analyseTest() {
         // TODO Create one test per violation
@@ -151,6 +254,7 @@ public class DelphiPmdSensorTest {
                 new RuleData("Assigned And Free Rule", 126),
                 new RuleData("Empty Else Statement Rule", 135),
                 new RuleData("Assigned And Free Rule", 147),
+                new RuleData("Empty Begin Statement Rule", 158),
                 new RuleData("Mixed Names Rule", 163),
                 new RuleData("Mixed Names Rule", 169),
                 new RuleData("Mixed Names Rule", 175),
@@ -170,7 +274,7 @@ public class DelphiPmdSensorTest {
         // violations order
         Arrays.sort(ruleData, RuleData.getComparator());
 
-        assertThat("number of issues", issues, hasSize(42));
+        assertThat("number of issues", issues, hasSize(43));
 
         for (int i = 0; i < issues.size(); ++i) {
             Issue issue = issues.get(i);
@@ -0,0 +1,87 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.ast.CompilationUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.DelphiLexer;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.antlr.ast.DelphiPMDNode;
+import org.sonar.plugins.delphi.pmd.rules.DelphiRule;
+import org.sonar.plugins.delphi.pmd.rules.PublicFieldsRule;
+import org.sonar.plugins.delphi.pmd.rules.WithAfterDoThenRule;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiRuleChainVisitorTest {
+
+    private static final String TEST_FILE = "/org/sonar/plugins/delphi/PMDTest/pmd.pas";
+    private static final int NOSONAR_THEN_LINE = 216;
+
+    private DelphiRuleChainVisitor visitor;
+
+    @Before
+    public void init() {
+        File testFile = DelphiUtils.getResource(TEST_FILE);
+        List<CompilationUnit> nodes = new DelphiPMD().getNodesFromAST(new DelphiAST(testFile));
+
+        RuleContext ctx = new RuleContext();
+        ctx.setSourceCodeFile(testFile);
+        visitor = new DelphiRuleChainVisitor();
+        visitor.visitAll(nodes, ctx);
+    }
+
+    @Test
+    public void indexesNodesByType() {
+        List<DelphiPMDNode> procedures = visitor.getNodes(DelphiLexer.PROCEDURE);
+        assertFalse(procedures.isEmpty());
+        for (DelphiPMDNode node : procedures) {
+            assertEquals(DelphiLexer.PROCEDURE, node.getType());
+        }
+        assertTrue(visitor.getNodes(-1).isEmpty());
+    }
+
+    @Test
+    public void skipsNoSonarLines() {
+        List<DelphiPMDNode> thenNodes = visitor.getNodes(DelphiLexer.THEN);
+        assertFalse(thenNodes.isEmpty());
+        for (DelphiPMDNode node : thenNodes) {
+            assertTrue(node.getLine() != NOSONAR_THEN_LINE);
+        }
+    }
+
+    @Test
+    public void rulesDeclareTheirNodeTypes() {
+        assertFalse(new DelphiRule().usesRuleChain());
+        assertEquals(1, new PublicFieldsRule().getRuleChainTypes().size());
+        assertTrue(new WithAfterDoThenRule().getRuleChainTypes().contains(DelphiLexer.THEN));
+    }
+
+}
@@ -45,6 +45,8 @@ import org.sonar.api.issue.Issue;
 import org.sonar.api.resources.Project;
 import org.sonar.plugins.delphi.DelphiTestUtils;
 import org.sonar.plugins.delphi.StubIssueBuilder;
+import org.sonar.plugins.delphi.antlr.ast.DelphiASTCache;
+import org.sonar.plugins.delphi.cache.DelphiAnalysisCache;
 import org.sonar.plugins.delphi.core.helpers.DelphiProjectHelper;
 import org.sonar.plugins.delphi.debug.DebugSensorContext;
 import org.sonar.plugins.delphi.project.DelphiProject;
@@ -107,7 +109,8 @@ public class TestUnusedArgumentsRule {
             }
         });
 
-        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives);
+        sensor = new DelphiPmdSensor(delphiProjectHelper, perspectives, new DelphiASTCache(0),
+                new DelphiAnalysisCache((File) null));
     }
 
     @Test
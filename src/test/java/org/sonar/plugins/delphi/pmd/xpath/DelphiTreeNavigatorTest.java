@@ -0,0 +1,117 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd.xpath;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.runtime.tree.Tree;
+import org.apache.xpath.XPathAPI;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class DelphiTreeNavigatorTest {
+
+    private static final String TEST_FILE = "/org/sonar/plugins/delphi/PMDTest/pmd.pas";
+
+    private static final String[] RULE_EXPRESSIONS = {
+        "//TkNewType/*/interface[count(following-sibling::*) < 4]",
+        "//procedure/overload[count(following-sibling::*)=0] | //function/overload[count(following-sibling::*)=0]",
+        "//TkNewType/*/interface[parent::*[1][ substring(name(),1,1) != 'I' ] ]",
+        "//TkNewType/*/class[parent::*[1][ substring(name(),1,1) != 'T' ] ]",
+        "//TkNewType/*/record[parent::*[1][ substring(name(),1,1) != 'T' ] ]",
+        "//TkVariableParam/out",
+        "//TkNewType/*/interface[following-sibling::*[2][count(child::*)=0]]",
+        "//else[following-sibling::*[1][name()='end']]",
+        "//begin[count(child::*) < 3]",
+        "//TkNewType/*[count(descendant::*) < 3 and name(descendant::*) != 'class' and name(descendant::*) != 'record'"
+            + " and name(descendant::*) != 'array' and name(descendant::*) != 'set'"
+            + " and name(descendant::*) != 'dash_pointer']" };
+
+    private static DelphiAST ast;
+    private static Document document;
+
+    @BeforeClass
+    public static void init() {
+        File testFile = DelphiUtils.getResource(TEST_FILE);
+        ast = new DelphiAST(testFile);
+        document = ast.generateDocument();
+    }
+
+    @Test
+    public void matchesDocumentEvaluation() throws Exception {
+        for (String expression : RULE_EXPRESSIONS) {
+            assertEquals(expression, evaluateDocument(expression), evaluateTree(expression));
+        }
+    }
+
+    @Test
+    public void navigatesLikeDocument() throws Exception {
+        String[] expressions = { "/file", "count(//*)", "count(/file/*)", "name(//*[@line='9'][1]/..)",
+            "string(//begin[1])", "count(//begin[1]/preceding-sibling::*)", "count(//*[ancestor::TkNewType])" };
+        for (String expression : expressions) {
+            assertEquals(expression, XPathAPI.eval(document, expression).str(),
+                    new DelphiXPath(expression).stringValueOf(ast));
+        }
+    }
+
+    @Test
+    public void skipsInvalidElementNames() {
+        assertTrue(DelphiTreeNavigator.isValidName("begin"));
+        assertTrue(DelphiTreeNavigator.isValidName("_x.y-1"));
+        assertFalse(DelphiTreeNavigator.isValidName(":="));
+        assertFalse(DelphiTreeNavigator.isValidName("5"));
+        assertFalse(DelphiTreeNavigator.isValidName("'text'"));
+        assertFalse(DelphiTreeNavigator.isValidName(""));
+    }
+
+    private List<String> evaluateDocument(String expression) throws Exception {
+        List<String> results = new ArrayList<String>();
+        NodeList nodes = XPathAPI.selectNodeList(document, expression);
+        for (int i = 0; i < nodes.getLength(); ++i) {
+            Node node = nodes.item(i);
+            results.add(node.getAttributes().getNamedItem("line").getTextContent() + ":"
+                + node.getAttributes().getNamedItem("column").getTextContent() + ":" + node.getTextContent());
+        }
+        return results;
+    }
+
+    private List<String> evaluateTree(String expression) throws Exception {
+        List<String> results = new ArrayList<String>();
+        for (Object result : new DelphiXPath(expression).selectNodes(ast)) {
+            Tree node = (Tree) result;
+            results.add(node.getLine() + ":" + node.getCharPositionInLine() + ":"
+                + DelphiTreeNavigator.getInstance().getElementStringValue(node));
+        }
+        return results;
+    }
+
+}
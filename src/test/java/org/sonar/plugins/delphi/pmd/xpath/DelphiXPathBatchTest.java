@@ -0,0 +1,85 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.pmd.xpath;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiXPathBatchTest {
+
+    private static final String TEST_FILE = "/org/sonar/plugins/delphi/PMDTest/pmd.pas";
+
+    private static final String[] EXPRESSIONS = {
+        "//TkNewType/*/interface[count(following-sibling::*) < 4]",
+        "//procedure/overload[count(following-sibling::*)=0] | //function/overload[count(following-sibling::*)=0]",
+        "//TkNewType/*/class[parent::*[1][ substring(name(),1,1) != 'T' ] ]",
+        "//else[following-sibling::*[1][name()='end']]",
+        "//begin[count(child::*) < 3]",
+        "//begin[1]",
+        "//begin/begin | //begin" };
+
+    private static DelphiAST ast;
+
+    @BeforeClass
+    public static void init() {
+        File testFile = DelphiUtils.getResource(TEST_FILE);
+        ast = new DelphiAST(testFile);
+    }
+
+    @Test
+    public void evaluatesLikeSingleExpressions() throws Exception {
+        DelphiXPathBatch<String> batch = new DelphiXPathBatch<String>();
+        for (String expression : EXPRESSIONS) {
+            assertTrue(expression, batch.add(expression, new DelphiXPath(expression)));
+        }
+
+        Map<String, Set<Object>> results = batch.evaluate(ast);
+        for (String expression : EXPRESSIONS) {
+            List<?> selected = new DelphiXPath(expression).selectNodes(ast);
+            Set<Object> expected = new HashSet<Object>(selected);
+            assertEquals(expression, expected, new HashSet<Object>(results.get(expression)));
+        }
+    }
+
+    @Test
+    public void rejectsOtherExpressions() throws Exception {
+        String[] expressions = { "/file/begin", "//*[name()='begin']", "count(//begin)", "//begin | /file",
+            "begin", "//descendant::begin" };
+        for (String expression : expressions) {
+            DelphiXPath xpath = new DelphiXPath(expression);
+            assertFalse(expression, DelphiXPathBatch.canBatch(xpath));
+            assertFalse(expression, new DelphiXPathBatch<String>().add(expression, xpath));
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -110,4 +111,22 @@ public class DelphiProjectTest {
         }
     }
 
+    @Test
+    public void configurationDefinitions() {
+        project.addDefinition("DEF");
+        List<List<String>> expected = new ArrayList<List<String>>();
+        expected.add(Arrays.asList("DEF"));
+        assertEquals(expected, project.getConfigurationDefinitions());
+
+        project.addConfiguration(BuildConfiguration.parse("Debug:DEBUG;LOG"));
+        project.addConfiguration(BuildConfiguration.parse("Release"));
+        project.addConfiguration(BuildConfiguration.parse(" "));
+        assertEquals(2, project.getConfigurations().size());
+        assertEquals("Debug", project.getConfigurations().get(0).getName());
+        expected.clear();
+        expected.add(Arrays.asList("DEF", "DEBUG", "LOG"));
+        expected.add(Arrays.asList("DEF"));
+        assertEquals(expected, project.getConfigurationDefinitions());
+    }
+
 }
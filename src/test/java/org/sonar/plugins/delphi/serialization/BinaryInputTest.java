@@ -0,0 +1,79 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+
+import org.junit.Test;
+
+public class BinaryInputTest {
+
+    private static final int[] VALUES = {0, 1, 63, 64, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, -1, -64, -65,
+        Integer.MIN_VALUE};
+
+    @Test
+    public void readsWrittenValues() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOutput out = new BinaryOutput(bytes);
+        for (int value : VALUES) {
+            out.writeVarInt(value);
+            out.writeSignedVarInt(value);
+        }
+        out.writeBoolean(true);
+        out.writeBoolean(false);
+        out.writeString("TObject żółw");
+        out.writeString("");
+
+        BinaryInput in = new BinaryInput(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : VALUES) {
+            assertEquals(value, in.readVarInt());
+            assertEquals(value, in.readSignedVarInt());
+        }
+        assertTrue(in.readBoolean());
+        assertFalse(in.readBoolean());
+        assertEquals("TObject żółw", in.readString());
+        assertEquals("", in.readString());
+    }
+
+    @Test
+    public void smallValuesTakeOneByte() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOutput out = new BinaryOutput(bytes);
+        out.writeVarInt(127);
+        out.writeSignedVarInt(-64);
+        out.writeSignedVarInt(63);
+        assertEquals(3, bytes.size());
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsAtEndOfStream() throws Exception {
+        new BinaryInput(new ByteArrayInputStream(new byte[] {(byte) 0x80})).readVarInt();
+    }
+
+}
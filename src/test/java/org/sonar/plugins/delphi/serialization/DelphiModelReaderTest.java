@@ -0,0 +1,285 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.delphi.DelphiTestUtils;
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisCache;
+import org.sonar.plugins.delphi.antlr.analyzer.CodeAnalysisResults;
+import org.sonar.plugins.delphi.antlr.analyzer.DelphiASTAnalyzer;
+import org.sonar.plugins.delphi.antlr.ast.DelphiAST;
+import org.sonar.plugins.delphi.core.language.ClassInterface;
+import org.sonar.plugins.delphi.core.language.FunctionInterface;
+import org.sonar.plugins.delphi.core.language.UnitInterface;
+import org.sonar.plugins.delphi.core.language.impl.DelphiClass;
+import org.sonar.plugins.delphi.core.language.impl.DelphiFunction;
+import org.sonar.plugins.delphi.core.language.impl.DelphiUnit;
+import org.sonar.plugins.delphi.utils.DelphiUtils;
+
+public class DelphiModelReaderTest {
+
+    private static final String[] FILES = {"/org/sonar/plugins/delphi/metrics/MetricsTest.pas",
+        "/org/sonar/plugins/delphi/metrics/FunctionMetricsTest.pas",
+        "/org/sonar/plugins/delphi/metrics/DeadCodeMetricsTest.pas",
+        "/org/sonar/plugins/delphi/metrics/LCOM4MetricsTest.pas",
+        "/org/sonar/plugins/delphi/metrics/PropertyTest.pas",
+        "/org/sonar/plugins/delphi/grammar/GrammarTest.pas"};
+
+    private List<UnitInterface> units;
+
+    @Before
+    public void analyse() {
+        CodeAnalysisCache cache = new CodeAnalysisCache();
+        DelphiASTAnalyzer analyzer = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper(), cache);
+        for (String file : FILES) {
+            analyzer.analyze(new DelphiAST(DelphiUtils.getResource(file)));
+        }
+        analyzer.link();
+        units = sortedUnits(cache);
+    }
+
+    private static List<UnitInterface> sortedUnits(CodeAnalysisCache cache) {
+        List<UnitInterface> units = new ArrayList<UnitInterface>(cache.getUnits());
+        Collections.sort(units, new Comparator<UnitInterface>() {
+            public int compare(UnitInterface u1, UnitInterface u2) {
+                return u1.toString().compareTo(u2.toString());
+            }
+        });
+        return units;
+    }
+
+    private static byte[] write(List<UnitInterface> units) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DelphiModelWriter writer = new DelphiModelWriter(bytes);
+        for (UnitInterface unit : units) {
+            writer.write(unit);
+        }
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static DelphiModelReader reader(byte[] bytes) throws IOException {
+        return new DelphiModelReader(new ByteArrayInputStream(bytes), DelphiTestUtils.mockProjectHelper());
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        byte[] bytes = write(units);
+        List<UnitInterface> read = reader(bytes).readAll();
+
+        assertEquals(units.size(), read.size());
+        assertArrayEquals(bytes, write(read));
+        for (int i = 0; i < units.size(); ++i) {
+            UnitInterface unit = units.get(i);
+            UnitInterface readUnit = read.get(i);
+            assertEquals(unit.toString(), readUnit.toString());
+            assertEquals(unit.getLine(), readUnit.getLine());
+            assertEquals(unit.getFunctions().length, readUnit.getFunctions().length);
+            for (ClassInterface clazz : unit.getClasses()) {
+                ClassInterface readClass = readUnit.findClass(clazz.getShortName());
+                assertEquals(clazz.toString(), clazz.getComplexity(), readClass.getComplexity());
+                assertEquals(clazz.toString(), clazz.getDit(), readClass.getDit());
+                assertEquals(clazz.toString(), clazz.getRfc(), readClass.getRfc());
+                assertEquals(clazz.toString(), clazz.getPublicApiCount(), readClass.getPublicApiCount());
+                assertEquals(clazz.toString(), clazz.getAccessorCount(), readClass.getAccessorCount());
+                assertEquals(clazz.toString(), clazz.getChildren().length, readClass.getChildren().length);
+            }
+            for (int f = 0; f < unit.getFunctions().length; ++f) {
+                FunctionInterface function = unit.getFunctions()[f];
+                FunctionInterface readFunction = readUnit.getFunctions()[f];
+                assertEquals(function.getName(), function.getLongName(), readFunction.getLongName());
+                assertEquals(function.getName(), function.getComplexity(), readFunction.getComplexity());
+                assertEquals(function.getName(), function.getOverloadsCount(), readFunction.getOverloadsCount());
+                assertEquals(function.getName(), function.getStatements().toString(), readFunction.getStatements()
+                        .toString());
+                assertEquals(function.getName(), function.hasBody(), readFunction.hasBody());
+                assertSame(readUnit, readFunction.getUnit());
+            }
+        }
+    }
+
+    @Test
+    public void keepsCallGraph() throws Exception {
+        List<UnitInterface> read = reader(write(units)).readAll();
+        int calls = 0;
+        for (UnitInterface unit : read) {
+            for (FunctionInterface function : unit.getAllFunctions()) {
+                for (FunctionInterface called : function.getCalledFunctions()) {
+                    ++calls;
+                    assertNotNull(called.toString(), called.getUnit());
+                    assertTrue(called.toString(), read.contains(called.getUnit()));
+                }
+            }
+        }
+        assertTrue(calls > 0);
+    }
+
+    @Test
+    public void resolvesReferencesToOtherUnits() throws Exception {
+        UnitInterface unitA = new DelphiUnit("unitA");
+        unitA.setPath("unitA.pas");
+        UnitInterface unitB = new DelphiUnit("unitB");
+        unitB.setPath("unitB.pas");
+
+        FunctionInterface caller = new DelphiFunction("caller");
+        caller.setUnit(unitA);
+        unitA.addFunction(caller);
+        FunctionInterface called = new DelphiFunction("called");
+        called.setUnit(unitB);
+        unitB.addFunction(called);
+        caller.addCalledFunction(called);
+
+        ClassInterface parent = new DelphiClass("tparent");
+        parent.setFileName(unitB.getPath());
+        unitB.addClass(parent);
+        ClassInterface child = new DelphiClass("tchild");
+        child.setFileName(unitA.getPath());
+        child.addParent(parent);
+        unitA.addClass(child);
+
+        List<UnitInterface> read = reader(write(Arrays.asList(unitA, unitB))).readAll();
+        FunctionInterface readCaller = read.get(0).getFunctions()[0];
+        assertSame(read.get(1).getFunctions()[0], readCaller.getCalledFunctions()[0]);
+        ClassInterface readChild = read.get(0).getClasses()[0];
+        assertSame(read.get(1).getClasses()[0], readChild.getParents()[0]);
+        assertArrayEquals(new ClassInterface[] {readChild}, read.get(1).getClasses()[0].getChildren());
+    }
+
+    @Test
+    public void readsOneFunction() throws Exception {
+        UnitInterface unit = null;
+        FunctionInterface function = null;
+        for (UnitInterface candidate : units) {
+            for (FunctionInterface candidateFunction : candidate.getFunctions()) {
+                if (candidateFunction.getCalledFunctions().length > 0 && candidateFunction.getParentClass() != null) {
+                    unit = candidate;
+                    function = candidateFunction;
+                }
+            }
+        }
+        assertNotNull(function);
+
+        DelphiModelReader reader = reader(write(units));
+        for (int i = 0; units.get(i) != unit; ++i) {
+            assertTrue(reader.skip());
+        }
+        FunctionInterface read = reader.readFunction(function.getName().toUpperCase());
+        assertEquals(function.getName(), read.getName());
+        assertEquals(function.getComplexity(), read.getComplexity());
+        assertEquals(function.getParentClass().getName(), read.getParentClass().getName());
+        assertEquals(unit.getName(), read.getUnit().getName());
+        assertEquals(function.getCalledFunctions().length, read.getCalledFunctions().length);
+        assertEquals(function.getStatements().size(), read.getStatements().size());
+
+        assertNull(reader.readFunction("nosuchfunction"));
+    }
+
+    @Test
+    public void linksReadResultsLikeAnalysedFiles() throws Exception {
+        CodeAnalysisCache cache = new CodeAnalysisCache();
+        for (String file : FILES) {
+            DelphiASTAnalyzer analyzer = new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper());
+            analyzer.analyze(new DelphiAST(DelphiUtils.getResource(file)));
+            CodeAnalysisResults results = analyzer.getResults();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DelphiModelWriter writer = new DelphiModelWriter(bytes);
+            writer.write(results);
+            writer.close();
+            CodeAnalysisResults read = reader(bytes.toByteArray()).readResults();
+
+            assertEquals(file, results.getClasses().toString(), read.getClasses().toString());
+            assertEquals(file, results.getFunctions().toString(), read.getFunctions().toString());
+            assertEquals(file, results.getUnresolvedCalls().size(), read.getUnresolvedCalls().size());
+            cache.getUnits().addAll(read.getCachedUnits());
+            cache.getUnresolvedCalls().addAll(read.getUnresolvedCalls());
+        }
+        new DelphiASTAnalyzer(DelphiTestUtils.mockProjectHelper(), cache).link();
+
+        assertEquals(describe(units), describe(sortedUnits(cache)));
+    }
+
+    /**
+     * @return units with their functions, calls and classes, written files
+     *         are not compared as overload holders are named after a global
+     *         counter
+     */
+    private static String describe(List<UnitInterface> units) {
+        List<String> description = new ArrayList<String>();
+        for (UnitInterface unit : units) {
+            String[] includes = unit.getIncludes();
+            Arrays.sort(includes);
+            description.add(unit + Arrays.toString(includes));
+            for (FunctionInterface function : unit.getAllFunctions()) {
+                List<String> called = new ArrayList<String>();
+                for (FunctionInterface calledFunction : function.getCalledFunctions()) {
+                    called.add(calledFunction.getName() + "@" + calledFunction.getUnit());
+                }
+                Collections.sort(called);
+                description.add(unit + " " + function.getLongName() + " " + function.getComplexity() + " "
+                        + function.getOverloadsCount() + " " + function.getStatements() + " " + called);
+            }
+            for (ClassInterface clazz : unit.getClasses()) {
+                description.add(unit + " " + clazz.getName() + Arrays.toString(clazz.getParents())
+                        + Arrays.toString(clazz.getFields()) + " " + clazz.getRfc() + " " + clazz.getDit());
+            }
+        }
+        Collections.sort(description);
+        return description.toString();
+    }
+
+    @Test
+    public void readsResultsWithoutUnit() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DelphiModelWriter writer = new DelphiModelWriter(bytes);
+        writer.write(new CodeAnalysisResults());
+        writer.close();
+
+        CodeAnalysisResults read = reader(bytes.toByteArray()).readResults();
+        assertTrue(read.getCachedUnits().isEmpty());
+        assertTrue(read.getFunctions().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnitAsResults() throws Exception {
+        reader(write(units)).readResults();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Sonar Delphi Plugin
+ * Copyright (C) 2011 Sabre Airline Solutions and Fabricio Colombo
+ * Author(s):
+ * Przemyslaw Kociolek (przemyslaw.kociolek@sabre.com)
+ * Michal Wojcik (michal.wojcik@sabre.com)
+ * Fabricio Colombo (fabricio.colombo.mva@gmail.com)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.delphi.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceFileReaderTest {
+
+    private static final String TEXT = "unit Za\u017c\u00f3\u0142\u0107;\n{ g\u0119\u015bl\u0105 ja\u017a\u0144 }\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWithEncoding() throws IOException {
+        assertEquals(TEXT, SourceFileReader.read(write(TEXT.getBytes("windows-1250")), "windows-1250"));
+        assertEquals(TEXT, SourceFileReader.read(write(TEXT.getBytes("UTF-8")), "UTF-8"));
+    }
+
+    @Test
+    public void detectsByteOrderMark() throws IOException {
+        assertEquals(TEXT, SourceFileReader.read(write(bom(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+                TEXT.getBytes("UTF-8"))), "windows-1250"));
+        assertEquals(TEXT, SourceFileReader.read(write(bom(new byte[] {(byte) 0xFF, (byte) 0xFE},
+                TEXT.getBytes("UTF-16LE"))), null));
+        assertEquals(TEXT, SourceFileReader.read(write(bom(new byte[] {(byte) 0xFE, (byte) 0xFF},
+                TEXT.getBytes("UTF-16BE"))), null));
+    }
+
+    @Test
+    public void readsLargeMultiByteFile() throws IOException {
+        String text = StringUtils.repeat(TEXT, SourceFileReader.REUSE_THRESHOLD / TEXT.length() + 1);
+        byte[] bytes = text.getBytes("UTF-8");
+        assertTrue(bytes.length > SourceFileReader.REUSE_THRESHOLD);
+        assertEquals(text, SourceFileReader.read(write(bytes), "UTF-8"));
+        assertEquals(TEXT, SourceFileReader.read(write(TEXT.getBytes("UTF-8")), "UTF-8"));
+    }
+
+    @Test
+    public void readsEmptyFile() throws IOException {
+        assertEquals("", SourceFileReader.read(write(new byte[0]), null));
+    }
+
+    @Test
+    public void replacesMalformedInput() throws IOException {
+        assertEquals("a\ufffdb", SourceFileReader.read(write(new byte[] {'a', (byte) 0xC3, 'b'}), "UTF-8"));
+    }
+
+    private static byte[] bom(byte[] mark, byte[] content) {
+        byte[] bytes = new byte[mark.length + content.length];
+        System.arraycopy(mark, 0, bytes, 0, mark.length);
+        System.arraycopy(content, 0, bytes, mark.length, content.length);
+        return bytes;
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,16 @@
+unit NewStatementTest;
+
+interface
+
+implementation
+
+procedure Allocate;
+var
+  x: TObject;
+begin
+  x := new(TObject);
+  x := new(TList, 10);
+  new(x);
+end;
+
+end.
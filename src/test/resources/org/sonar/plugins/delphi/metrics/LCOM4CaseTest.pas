@@ -0,0 +1,30 @@
+unit CaseForm;
+
+interface
+
+type
+	TCaseType = class
+	public
+		procedure proc_A();
+		procedure proc_B();
+	private
+		Field1: integer;
+	end;
+
+implementation
+
+procedure TCaseType.proc_A();
+var
+	x: integer;
+begin
+	x := Field1;
+end;
+
+procedure TCaseType.proc_B();
+var
+	x: integer;
+begin
+	x := FIELD1;
+end;
+
+end.